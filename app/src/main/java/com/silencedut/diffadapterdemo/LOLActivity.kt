@@ -2,9 +2,7 @@ package com.silencedut.diffadapterdemo
 
 import android.arch.lifecycle.Lifecycle
 import android.os.Bundle
-import android.os.Handler
 import android.support.v7.app.AppCompatActivity
-import android.support.v7.widget.LinearLayoutManager
 import android.support.v7.widget.RecyclerView
 import android.util.Log
 import android.view.View
@@ -15,12 +13,13 @@ import com.silencedut.core.provider.legend.ILegendDateProvider
 import com.silencedut.diffadapter.DiffAdapter
 import com.silencedut.diffadapter.data.BaseMutableData
 import com.silencedut.diffadapter.rvhelper.RvHelper
-import com.silencedut.diffadapter.rvhelper.RvHelper.Companion
 import com.silencedut.diffadapter.utils.DiffModelProvider
 import com.silencedut.diffadapterdemo.adapter.LegendHolder
 import com.silencedut.diffadapterdemo.adapter.LegendViewData
 import com.silencedut.diffadapterdemo.adapter.SkinHolder
 import com.silencedut.diffadapterdemo.adapter.SkinViewData
+import com.silencedut.diffadapterdemo.adapter.StressHolder
+import com.silencedut.diffadapterdemo.stress.StressHarness
 import com.silencedut.taskscheduler.TaskScheduler
 import java.util.*
 import kotlin.collections.ArrayList
@@ -33,9 +32,8 @@ private const val TAG = "LOLActivity"
 private const val MAX_COUNT = 5000
 class LOLActivity : AppCompatActivity(){
     private var mRVTest : RecyclerView? = null
-    private var mTestHandler : Handler?=null
+    private var stressHarness : StressHarness?=null
     private var testStarted = false
-    private var testCount = 0
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -48,6 +46,7 @@ class LOLActivity : AppCompatActivity(){
         //配置支持的Holder类型
         diffAdapter.registerHolder(SkinHolder::class.java, SkinViewData.VIEW_ID)
         diffAdapter.registerHolder(LegendHolder::class.java, LegendViewData.VIEW_ID)
+        diffAdapter.registerHolder(StressHolder::class.java, StressHolder.VIEW_ID)
 
         mRVTest!!.layoutManager = LinearLayoutManagerWrapper(this)
         mRVTest!!.adapter = diffAdapter
@@ -67,6 +66,8 @@ class LOLActivity : AppCompatActivity(){
         }
 
         findViewById<View>(R.id.fetch_data).setOnClickListener {
+            //请求数据的同时预先创建一屏的Holder
+            diffAdapter.preInflate(LegendViewData.VIEW_ID, 8)
             legendViewModel.fetchLegends()
         }
 
@@ -111,100 +112,21 @@ class LOLActivity : AppCompatActivity(){
         }
 
         findViewById<View>(R.id.forcible_crash_test).setOnClickListener { _ ->
+            val harness = stressHarness ?: StressHarness(diffAdapter, StressHarness.Config(StressHolder.VIEW_ID)
+                    .seed(System.currentTimeMillis())
+                    .totalOps(MAX_COUNT)
+                    .synchronousDiff(false)).also { stressHarness = it }
 
             if (!testStarted) {
-                verify(diffAdapter)?.let {
-                    testStarted = true
-                    findViewById<TextView>(R.id.forcible_crash_test).text = "停止"
-                    mTestHandler = Handler()
-
-                    mTestHandler?.let {
-                        it.post(object : Runnable {
-                            override fun run() {
-                                if(verifyCount()) {
-                                    return
-                                }
-                                val oneLegend = Transfer.getImpl(ILegendDateProvider::class.java).fetchOneLegends()
-                                diffAdapter.addData(legendViewModel.convertToAdapterData(oneLegend))
-                                val time = (100 until 130L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-
-                        it.post(object : Runnable {
-                            override fun run() {
-                                if(verifyCount()) {
-                                    return
-                                }
-                                legendViewModel.fetchLegends()
-                                val time = (50 until 200L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-
-                        it.post(object : Runnable {
-                            override fun run() {
-                                if(verifyCount()) {
-                                    return
-                                }
-                                if(diffAdapter.itemCount>0) {
-                                    diffAdapter.deleteData(diffAdapter.datas[(0 until diffAdapter.itemCount).random()])
-
-                                    val insertIndex = (0 until diffAdapter.itemCount).random()
-                                    val insertSize = (0 until diffAdapter.itemCount).random()
-
-                                    val newList = ArrayList(diffAdapter.datas.subList(0, insertSize))
-                                    diffAdapter.insertData(insertIndex, newList)
-
-
-                                }
-                                val time = (60 until 150L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-
-                        it.post(object :Runnable{
-                            override fun run() {
-                               // diffAdapter.clear()
-                                val time = (30 until 450L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-
-                        it.post(object : Runnable {
-                            override fun run() {
-                                if(verifyCount()) {
-                                    return
-                                }
-                                if(diffAdapter.itemCount>0) {
-                                    val deleteIndex = (0 until diffAdapter.itemCount).random()
-                                    val deleteSize = (0 until diffAdapter.itemCount).random()
-                                    diffAdapter.deleteData(deleteIndex, deleteSize)
-
-                                }
-
-                                val time = (100 until 300L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-
-                        it.post(object : Runnable {
-                            override fun run() {
-                                if(verifyCount()) {
-                                    return
-                                }
-                                mRVTest?.let {
-                                    RvHelper.scrollTo(it, (0 until diffAdapter.itemCount).random())
-                                }
-
-                                val time = (300 until 500L).random()
-                                it.postDelayed(this, time)
-                            }
-                        })
-                    }
+                testStarted = true
+                findViewById<TextView>(R.id.forcible_crash_test).text = "停止"
+                harness.start { report ->
+                    Log.d(TAG, "stress test finished $report")
+                    Toast.makeText(this, if (report.isConsistent) "通过" else "不一致:${report.mismatchCount}", Toast.LENGTH_LONG).show()
+                    endTest()
                 }
             } else {
-                endTest()
+                harness.stop()
             }
         }
 
@@ -225,9 +147,7 @@ class LOLActivity : AppCompatActivity(){
     }
 
     private fun endTest() {
-        mTestHandler?.removeCallbacksAndMessages(null)
         findViewById<TextView>(R.id.forcible_crash_test).text = "暴力崩溃测试"
-        mTestHandler?.removeCallbacksAndMessages(null)
         testStarted = false
     }
 
@@ -240,17 +160,6 @@ class LOLActivity : AppCompatActivity(){
         return Any()
     }
 
-    private fun verifyCount() :Boolean{
-        testCount++
-        if(testCount > MAX_COUNT) {
-            findViewById<TextView>(R.id.forcible_crash_test).text = "暴力崩溃测试"
-            endTest()
-            testCount = 0
-            return true
-        }
-        return false
-    }
-
     private fun IntRange.random() : Int {
         try {
             return Random().nextInt((endInclusive + 1) - start) +  start
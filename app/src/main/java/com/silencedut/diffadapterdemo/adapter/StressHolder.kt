@@ -0,0 +1,36 @@
+package com.silencedut.diffadapterdemo.adapter
+
+import android.view.View
+import android.widget.TextView
+import com.silencedut.diffadapter.DiffAdapter
+import com.silencedut.diffadapter.holder.BaseDiffViewHolder
+import com.silencedut.diffadapterdemo.stress.StressHarness
+import com.silencedut.diffadapterdemo.R
+
+/**
+ * 展示压力测试的数据
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class StressHolder(itemView: View, recyclerAdapter: DiffAdapter) : BaseDiffViewHolder<StressHarness.StressData>(itemView, recyclerAdapter) {
+
+    companion object {
+        const val VIEW_ID = R.layout.holder_stress
+    }
+
+    private val stressTv: TextView = itemView.findViewById(R.id.stress_tv)
+
+    override fun getItemViewId(): Int {
+        return VIEW_ID
+    }
+
+    override fun updateItem(data: StressHarness.StressData, position: Int) {
+        stressTv.text = "${data.id} v${data.version}"
+    }
+
+    override fun updatePartWithPayload(newData: StressHarness.StressData, payloadKeys: MutableSet<String>, position: Int) {
+        super.updatePartWithPayload(newData, payloadKeys, position)
+        updateItem(newData, position)
+    }
+}
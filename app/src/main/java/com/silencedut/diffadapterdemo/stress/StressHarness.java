@@ -0,0 +1,652 @@
+package com.silencedut.diffadapterdemo.stress;
+
+import android.arch.lifecycle.MutableLiveData;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.utils.ListChangedCallback;
+import com.silencedut.diffadapter.utils.UpdatePayloadFunction;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 可复现的压力测试：用固定的种子按配置的比例和频率随机调用{@link DiffAdapter}的公开接口，
+ * 同时根据adapter发出的notify维护一份影子列表，每次操作前都和{@link DiffAdapter#getDatas()}逐项对比，
+ * 结束后输出吞吐量，diff延时分位数，内存分配和不一致的次数
+ *
+ * 所有操作都在主线程执行，diff默认在调用线程同步计算，这样同一个种子每次跑出来的操作序列完全一样，
+ * 在Robolectric里推进主线程Looper的时间即可跑完
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class StressHarness {
+
+    private static final String TAG = "StressHarness";
+
+    public static final int OP_ADD = 0;
+    public static final int OP_ADD_BATCH = 1;
+    public static final int OP_INSERT = 2;
+    public static final int OP_DELETE_ONE = 3;
+    public static final int OP_DELETE_KEY = 4;
+    public static final int OP_DELETE_RANGE = 5;
+    public static final int OP_SET_DATAS = 6;
+    public static final int OP_UPDATE = 7;
+    public static final int OP_MEDIATOR = 8;
+    public static final int OP_CLEAR = 9;
+    static final int OP_COUNT = 10;
+    static final String[] OP_NAMES = {"add", "addBatch", "insert", "deleteOne", "deleteKey", "deleteRange",
+            "setDatas", "update", "mediator", "clear"};
+
+    private static final Object PLACEHOLDER = new Object();
+    private static final int MAX_MISMATCH_MESSAGES = 20;
+
+    private final DiffAdapter mAdapter;
+    private final Config mConfig;
+    private final Random mRandom;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<Long> mMediatorSource = new MutableLiveData<>();
+    private final int[] mCumulativeWeights = new int[OP_COUNT];
+    private final int[] mOpCounts = new int[OP_COUNT];
+
+    private final List<Object> mShadowKeys = new ArrayList<>();
+    private final List<String> mMismatches = new ArrayList<>();
+    private int mMismatchCount;
+
+    private long[] mLatencies = new long[64];
+    private int mLatencyCount;
+    private long mPendingSubmitTime = -1;
+
+    private long mNextId;
+    private int mIssuedOps;
+    private long mBusyNanos;
+    private long mStartUptime;
+    private long mAllocStart;
+    private boolean mRunning;
+    private boolean mFinished;
+    @Nullable
+    private Report mReport;
+    @Nullable
+    private Callback mCallback;
+
+    private final RecyclerView.AdapterDataObserver mShadowObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            mShadowKeys.clear();
+            for (int i = 0; i < mAdapter.getItemCount(); i++) {
+                mShadowKeys.add(PLACEHOLDER);
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (positionStart < 0 || positionStart > mShadowKeys.size()) {
+                mismatch("insert out of range " + positionStart + "," + itemCount + " size " + mShadowKeys.size());
+                return;
+            }
+            mShadowKeys.addAll(positionStart, Collections.nCopies(itemCount, PLACEHOLDER));
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (positionStart < 0 || positionStart + itemCount > mShadowKeys.size()) {
+                mismatch("remove out of range " + positionStart + "," + itemCount + " size " + mShadowKeys.size());
+                return;
+            }
+            mShadowKeys.subList(positionStart, positionStart + itemCount).clear();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (fromPosition < 0 || toPosition < 0 || fromPosition >= mShadowKeys.size()
+                    || toPosition >= mShadowKeys.size()) {
+                mismatch("move out of range " + fromPosition + "->" + toPosition + " size " + mShadowKeys.size());
+                return;
+            }
+            mShadowKeys.add(toPosition, mShadowKeys.remove(fromPosition));
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            if (positionStart < 0 || positionStart + itemCount > mShadowKeys.size()) {
+                mismatch("change out of range " + positionStart + "," + itemCount + " size " + mShadowKeys.size());
+            }
+        }
+    };
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    public StressHarness(@NonNull DiffAdapter adapter, @NonNull Config config) {
+        this.mAdapter = adapter;
+        this.mConfig = config;
+        this.mRandom = new Random(config.seed);
+        int total = 0;
+        for (int i = 0; i < OP_COUNT; i++) {
+            total += Math.max(0, config.weights[i]);
+            mCumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("at least one op weight must be positive");
+        }
+        mAdapter.addUpdateMediator(mMediatorSource, new UpdatePayloadFunction<Long, StressData>() {
+            @Override
+            public Object providerMatchFeature(@NonNull Long input) {
+                return input;
+            }
+
+            @Override
+            public StressData applyChange(@NonNull Long input, @NonNull StressData originalData,
+                                          @NonNull Set<String> payloadKeys) {
+                originalData.version++;
+                payloadKeys.add(StressData.KEY_VERSION);
+                return originalData;
+            }
+        });
+    }
+
+    /**
+     * 开始测试，结果通过callback回调，必须在主线程调用
+     */
+    public void start(@Nullable Callback callback) {
+        if (mRunning) {
+            return;
+        }
+        mCallback = callback;
+        mRunning = true;
+        mFinished = false;
+        mReport = null;
+        mRandom.setSeed(mConfig.seed);
+        mNextId = 0;
+        mIssuedOps = 0;
+        mBusyNanos = 0;
+        Arrays.fill(mOpCounts, 0);
+        mLatencyCount = 0;
+        mPendingSubmitTime = -1;
+        mMismatchCount = 0;
+        mMismatches.clear();
+        if (mConfig.synchronousDiff) {
+            mAdapter.setDiffExecutor(new Executor() {
+                @Override
+                public void execute(@NonNull Runnable command) {
+                    command.run();
+                }
+            });
+        }
+        mAdapter.setListChangedCallback(new ListChangedCallback<BaseMutableData>() {
+            @Override
+            public void onListChanged(List<BaseMutableData> currentList) {
+                if (mPendingSubmitTime >= 0) {
+                    recordLatency(SystemClock.uptimeMillis() - mPendingSubmitTime);
+                    mPendingSubmitTime = -1;
+                }
+            }
+        });
+        mAdapter.registerAdapterDataObserver(mShadowObserver);
+
+        mShadowKeys.clear();
+        for (BaseMutableData data : mAdapter.getDatas()) {
+            mShadowKeys.add(data.uniqueItemFeature());
+        }
+        List<StressData> initial = new ArrayList<>(mConfig.initialSize);
+        for (int i = 0; i < mConfig.initialSize; i++) {
+            initial.add(newData());
+        }
+        mStartUptime = SystemClock.uptimeMillis();
+        mAllocStart = allocatedBytes();
+        submit(initial);
+        mHandler.postDelayed(mTick, mConfig.tickIntervalMs);
+    }
+
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mHandler.removeCallbacks(mTick);
+        finish();
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Nullable
+    public Report getReport() {
+        return mReport;
+    }
+
+    private void tick() {
+        verify();
+        if (mIssuedOps < mConfig.totalOps) {
+            long start = System.nanoTime();
+            for (int i = 0; i < mConfig.opsPerTick && mIssuedOps < mConfig.totalOps; i++) {
+                runOp(pickOp());
+                mIssuedOps++;
+            }
+            mBusyNanos += System.nanoTime() - start;
+            mHandler.postDelayed(mTick, mConfig.tickIntervalMs);
+        } else if (mAdapter.hasPendingUpdates() && SystemClock.uptimeMillis() - mStartUptime < mConfig.maxDurationMs) {
+            mHandler.postDelayed(mTick, mConfig.tickIntervalMs);
+        } else {
+            finish();
+        }
+    }
+
+    private int pickOp() {
+        int value = mRandom.nextInt(mCumulativeWeights[OP_COUNT - 1]);
+        for (int i = 0; i < OP_COUNT; i++) {
+            if (value < mCumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return OP_ADD;
+    }
+
+    private void runOp(int op) {
+        mOpCounts[op]++;
+        List<BaseMutableData> current = mAdapter.getDatas();
+        int size = current.size();
+        switch (op) {
+            case OP_ADD:
+                if (size < mConfig.maxSize) {
+                    mAdapter.addData(newData());
+                }
+                break;
+            case OP_ADD_BATCH:
+                if (size < mConfig.maxSize) {
+                    mAdapter.addDatas(newDatas(1 + mRandom.nextInt(mConfig.maxBatch)));
+                }
+                break;
+            case OP_INSERT:
+                if (size < mConfig.maxSize) {
+                    mAdapter.insertData(mRandom.nextInt(size + 1), newDatas(1 + mRandom.nextInt(mConfig.maxBatch)));
+                }
+                break;
+            case OP_DELETE_ONE:
+                if (size > 0) {
+                    mAdapter.deleteData(current.get(mRandom.nextInt(size)));
+                }
+                break;
+            case OP_DELETE_KEY:
+                if (size > 0) {
+                    mAdapter.deleteData(current.get(mRandom.nextInt(size)).uniqueItemFeature());
+                }
+                break;
+            case OP_DELETE_RANGE:
+                if (size > 0) {
+                    mAdapter.deleteData(mRandom.nextInt(size), 1 + mRandom.nextInt(mConfig.maxBatch));
+                }
+                break;
+            case OP_SET_DATAS:
+                submit(shuffledCopy(current));
+                break;
+            case OP_UPDATE:
+                if (size > 0) {
+                    BaseMutableData data = current.get(mRandom.nextInt(size));
+                    if (data instanceof StressData) {
+                        StressData old = (StressData) data;
+                        mAdapter.updateData(new StressData(old.id, old.version + 1, old.viewId));
+                    }
+                }
+                break;
+            case OP_MEDIATOR:
+                if (size > 0) {
+                    mMediatorSource.setValue((Long) current.get(mRandom.nextInt(size)).uniqueItemFeature());
+                }
+                break;
+            case OP_CLEAR:
+                mAdapter.clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 模拟服务器重新拉取的列表：随机删掉一部分，改一部分内容，插入一些新数据，局部调换顺序
+     */
+    private List<StressData> shuffledCopy(List<BaseMutableData> current) {
+        List<StressData> list = new ArrayList<>(current.size() + mConfig.maxBatch);
+        for (BaseMutableData data : current) {
+            if (!(data instanceof StressData) || mRandom.nextInt(10) == 0) {
+                continue;
+            }
+            StressData old = (StressData) data;
+            list.add(mRandom.nextInt(5) == 0 ? new StressData(old.id, old.version + 1, old.viewId) : old);
+        }
+        int inserts = mRandom.nextInt(mConfig.maxBatch + 1);
+        for (int i = 0; i < inserts && list.size() < mConfig.maxSize; i++) {
+            list.add(mRandom.nextInt(list.size() + 1), newData());
+        }
+        int swaps = list.size() / 20;
+        for (int i = 0; i < swaps; i++) {
+            Collections.swap(list, mRandom.nextInt(list.size()), mRandom.nextInt(list.size()));
+        }
+        return list;
+    }
+
+    private void submit(List<StressData> list) {
+        if (mPendingSubmitTime < 0) {
+            mPendingSubmitTime = SystemClock.uptimeMillis();
+        }
+        mAdapter.setDatas(list);
+    }
+
+    private StressData newData() {
+        return new StressData(mNextId++, 0, mConfig.viewId);
+    }
+
+    private List<StressData> newDatas(int count) {
+        List<StressData> datas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            datas.add(newData());
+        }
+        return datas;
+    }
+
+    /**
+     * 只有被notify过insert的位置可以是新数据，其它位置必须和notify推算出来的一致
+     */
+    private void verify() {
+        List<BaseMutableData> current = mAdapter.getDatas();
+        if (current.size() != mShadowKeys.size()) {
+            mismatch("size " + current.size() + " but notified " + mShadowKeys.size() + " after "
+                    + mIssuedOps + " ops");
+            resync(current);
+            return;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            Object key = current.get(i).uniqueItemFeature();
+            Object shadow = mShadowKeys.get(i);
+            if (shadow != PLACEHOLDER && !shadow.equals(key)) {
+                mismatch("position " + i + " is " + key + " but notified " + shadow + " after " + mIssuedOps + " ops");
+                resync(current);
+                return;
+            }
+            mShadowKeys.set(i, key);
+        }
+    }
+
+    private void resync(List<BaseMutableData> current) {
+        mShadowKeys.clear();
+        for (BaseMutableData data : current) {
+            mShadowKeys.add(data.uniqueItemFeature());
+        }
+    }
+
+    private void mismatch(String message) {
+        mMismatchCount++;
+        if (mMismatches.size() < MAX_MISMATCH_MESSAGES) {
+            mMismatches.add(message);
+        }
+        Log.e(TAG, "mismatch " + message);
+    }
+
+    private void recordLatency(long latency) {
+        if (mLatencyCount == mLatencies.length) {
+            mLatencies = Arrays.copyOf(mLatencies, mLatencyCount * 2);
+        }
+        mLatencies[mLatencyCount++] = latency;
+    }
+
+    private void finish() {
+        verify();
+        mRunning = false;
+        mFinished = true;
+        mAdapter.unregisterAdapterDataObserver(mShadowObserver);
+        mAdapter.setListChangedCallback(null);
+        if (mConfig.synchronousDiff) {
+            mAdapter.setDiffExecutor(null);
+        }
+        long allocEnd = allocatedBytes();
+        long[] latencies = Arrays.copyOf(mLatencies, mLatencyCount);
+        Arrays.sort(latencies);
+        mReport = new Report(mConfig.seed, mIssuedOps, mOpCounts.clone(), mBusyNanos,
+                SystemClock.uptimeMillis() - mStartUptime, latencies,
+                mAllocStart >= 0 && allocEnd >= 0 ? allocEnd - mAllocStart : -1,
+                mAdapter.getItemCount(), mMismatchCount, new ArrayList<>(mMismatches));
+        Log.d(TAG, mReport.toString());
+        if (mCallback != null) {
+            mCallback.onFinished(mReport);
+        }
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM上用ThreadMXBean，设备上用Debug的分配计数，都拿不到时返回-1
+     */
+    private static long allocatedBytes() {
+        try {
+            Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+            Object bean = factory.getMethod("getThreadMXBean").invoke(null);
+            Method method = bean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(bean, Thread.currentThread().getId());
+        } catch (Throwable ignore) {
+            // not a desktop jvm
+        }
+        try {
+            @SuppressWarnings("deprecation")
+            long size = android.os.Debug.getThreadAllocSize();
+            return size;
+        } catch (Throwable ignore) {
+            return -1;
+        }
+    }
+
+    public interface Callback {
+        void onFinished(@NonNull Report report);
+    }
+
+    /**
+     * 测试配置，默认的比例和频率参考demo里原来的暴力测试
+     */
+    public static class Config {
+        long seed = 0;
+        int viewId;
+        int totalOps = 2000;
+        int opsPerTick = 4;
+        long tickIntervalMs = 16;
+        long maxDurationMs = 10 * 60 * 1000;
+        int initialSize = 100;
+        int maxSize = 5000;
+        int maxBatch = 20;
+        boolean synchronousDiff = true;
+        final int[] weights = {8, 3, 4, 4, 2, 2, 3, 6, 8, 0};
+
+        /**
+         * @param viewId 测试数据使用的itemViewId，需要提前注册对应的Holder
+         */
+        public Config(int viewId) {
+            this.viewId = viewId;
+        }
+
+        public Config seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Config totalOps(int totalOps) {
+            this.totalOps = totalOps;
+            return this;
+        }
+
+        /**
+         * 每隔tickIntervalMs执行opsPerTick个操作
+         */
+        public Config rate(int opsPerTick, long tickIntervalMs) {
+            this.opsPerTick = Math.max(1, opsPerTick);
+            this.tickIntervalMs = Math.max(0, tickIntervalMs);
+            return this;
+        }
+
+        public Config sizes(int initialSize, int maxSize, int maxBatch) {
+            this.initialSize = initialSize;
+            this.maxSize = maxSize;
+            this.maxBatch = Math.max(1, maxBatch);
+            return this;
+        }
+
+        /**
+         * @param op     OP_开头的常量
+         * @param weight 相对比例，0表示不执行这种操作
+         */
+        public Config weight(int op, int weight) {
+            this.weights[op] = weight;
+            return this;
+        }
+
+        /**
+         * 所有操作都执行完后等待diff结束的最长时间
+         */
+        public Config maxDuration(long maxDurationMs) {
+            this.maxDurationMs = maxDurationMs;
+            return this;
+        }
+
+        /**
+         * @param synchronousDiff 为false时diff在AsyncDifferConfig的后台线程计算，结果不再严格可复现
+         */
+        public Config synchronousDiff(boolean synchronousDiff) {
+            this.synchronousDiff = synchronousDiff;
+            return this;
+        }
+    }
+
+    public static class Report {
+        public final long seed;
+        public final int ops;
+        private final int[] opCounts;
+        public final long busyNanos;
+        public final long durationMs;
+        /**
+         * 从setDatas到列表真正替换的延时，已排序
+         */
+        private final long[] latenciesMs;
+        /**
+         * 执行过程中主线程分配的字节数，拿不到时为-1
+         */
+        public final long allocatedBytes;
+        public final int finalSize;
+        public final int mismatchCount;
+        public final List<String> mismatches;
+
+        Report(long seed, int ops, int[] opCounts, long busyNanos, long durationMs, long[] latenciesMs,
+               long allocatedBytes, int finalSize, int mismatchCount, List<String> mismatches) {
+            this.seed = seed;
+            this.ops = ops;
+            this.opCounts = opCounts;
+            this.busyNanos = busyNanos;
+            this.durationMs = durationMs;
+            this.latenciesMs = latenciesMs;
+            this.allocatedBytes = allocatedBytes;
+            this.finalSize = finalSize;
+            this.mismatchCount = mismatchCount;
+            this.mismatches = mismatches;
+        }
+
+        public boolean isConsistent() {
+            return mismatchCount == 0;
+        }
+
+        public int getOpCount(int op) {
+            return opCounts[op];
+        }
+
+        /**
+         * 主线程上执行操作的吞吐量，不包括两次操作之间的等待
+         */
+        public double opsPerSecond() {
+            return busyNanos == 0 ? 0 : ops * 1e9 / busyNanos;
+        }
+
+        /**
+         * @param percentile 0到100
+         * @return diff延时的分位数，没有diff时为-1
+         */
+        public long latencyPercentileMs(int percentile) {
+            if (latenciesMs.length == 0) {
+                return -1;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latenciesMs.length) - 1;
+            return latenciesMs[Math.max(0, Math.min(latenciesMs.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.US, "seed %d, %d ops in %dms, %.0f ops/s, final size %d",
+                    seed, ops, durationMs, opsPerSecond(), finalSize));
+            builder.append(String.format(Locale.US, "\ndiff latency p50 %dms p90 %dms p99 %dms max %dms (%d diffs)",
+                    latencyPercentileMs(50), latencyPercentileMs(90), latencyPercentileMs(99),
+                    latencyPercentileMs(100), latenciesMs.length));
+            builder.append("\nallocated ").append(allocatedBytes < 0 ? "n/a" : allocatedBytes / 1024 + "KB");
+            builder.append("\nops");
+            for (int i = 0; i < OP_COUNT; i++) {
+                builder.append(' ').append(OP_NAMES[i]).append(':').append(opCounts[i]);
+            }
+            builder.append("\nmismatches ").append(mismatchCount);
+            for (String mismatch : mismatches) {
+                builder.append("\n  ").append(mismatch);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 测试用的数据，id唯一，version变化表示内容变化
+     */
+    public static class StressData extends BaseMutableData<StressData> {
+        public static final String KEY_VERSION = "KEY_VERSION";
+        public final long id;
+        public int version;
+        final int viewId;
+
+        StressData(long id, int version, int viewId) {
+            this.id = id;
+            this.version = version;
+            this.viewId = viewId;
+        }
+
+        @NonNull
+        @Override
+        public Object uniqueItemFeature() {
+            return id;
+        }
+
+        @Override
+        public boolean areUISame(@NonNull StressData data) {
+            return version == data.version;
+        }
+
+        @Override
+        public void appendPayloadKeys(@NonNull StressData newData, @NonNull Set<String> payloadKeys) {
+            if (version != newData.version) {
+                payloadKeys.add(KEY_VERSION);
+            }
+        }
+
+        @Override
+        public int getItemViewId() {
+            return viewId;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.silencedut.diffadapterdemo.stress;
+
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.DiffAdapter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 固定种子跑{@link StressHarness}，notify和最终列表不一致或者同一个种子结果不同都算失败
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StressHarnessTest {
+
+    private static final int VIEW_ID = 1;
+    private static final int MAX_FRAMES = 10000;
+
+    private StressHarness.Report run(long seed, int ops) {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        DiffAdapter adapter = new DiffAdapter(activity);
+        StressHarness harness = new StressHarness(adapter, new StressHarness.Config(VIEW_ID).seed(seed).totalOps(ops));
+        harness.start(null);
+        // 同步diff时每帧都能推进，留足余量，超过说明卡住了
+        for (int i = 0; i < MAX_FRAMES && !harness.isFinished(); i++) {
+            ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        }
+        assertTrue("harness did not finish within " + MAX_FRAMES + " frames", harness.isFinished());
+        return harness.getReport();
+    }
+
+    @Test
+    public void notificationsMatchFinalList() {
+        StressHarness.Report report = run(42, 3000);
+
+        assertTrue(report.toString(), report.isConsistent());
+        assertEquals(3000, report.ops);
+    }
+
+    @Test
+    public void sameSeedIsDeterministic() {
+        StressHarness.Report first = run(7, 1000);
+        StressHarness.Report second = run(7, 1000);
+
+        assertEquals(first.finalSize, second.finalSize);
+        for (int op = 0; op < StressHarness.OP_COUNT; op++) {
+            assertEquals(first.getOpCount(op), second.getOpCount(op));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.silencedut.diffadapter;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * 按每次通知的规模和频率决定要不要做item动画：一次通知的操作数或者影响的行数太多，或者最近一秒通知太频繁时，
+ * 先把RecyclerView的ItemAnimator去掉，处理完这次通知的布局之后(两帧后)再还原，
+ * 偶尔的单条修改还是有动画，不需要再对整个列表调用{@link com.silencedut.diffadapter.rvhelper.RvHelper.Companion#closeDefaultAnimator(RecyclerView)}
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class AnimatorPolicy implements CoalescingUpdateCallback.DispatchListener {
+
+    private static final String TAG = "AnimatorPolicy";
+
+    static final int MAX_ANIMATED_OPS = 3;
+    static final int MAX_ANIMATED_ROWS = 8;
+    /**
+     * RATE_WINDOW_MS内超过MAX_ANIMATED_DISPATCHES次通知就不做动画，动画还没做完下一次又来了
+     */
+    static final long RATE_WINDOW_MS = 1000;
+    static final int MAX_ANIMATED_DISPATCHES = 3;
+    private static final int RESTORE_AFTER_FRAMES = 2;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private final long[] mRecentDispatches = new long[MAX_ANIMATED_DISPATCHES];
+    private int mRecentIndex;
+    private boolean mEnabled = true;
+    @Nullable
+    private RecyclerView mRecyclerView;
+    @Nullable
+    private RecyclerView.ItemAnimator mSuppressedAnimator;
+    private int mFramesLeft;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onFrame();
+        }
+    };
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            restore();
+        }
+    }
+
+    void attach(@NonNull RecyclerView recyclerView) {
+        restore();
+        mRecyclerView = recyclerView;
+    }
+
+    void detach() {
+        restore();
+        mRecyclerView = null;
+    }
+
+    @Override
+    public void onDispatched(int ops, int rows) {
+        long now = SystemClock.uptimeMillis();
+        long oldest = mRecentDispatches[mRecentIndex];
+        boolean rapid = oldest != 0 && now - oldest < RATE_WINDOW_MS;
+        mRecentDispatches[mRecentIndex] = now;
+        mRecentIndex = (mRecentIndex + 1) % mRecentDispatches.length;
+        if (!mEnabled || mRecyclerView == null) {
+            return;
+        }
+        if (rapid || ops > MAX_ANIMATED_OPS || rows > MAX_ANIMATED_ROWS) {
+            suppress(ops, rows, rapid);
+        }
+    }
+
+    private void suppress(int ops, int rows, boolean rapid) {
+        RecyclerView recyclerView = mRecyclerView;
+        if (recyclerView == null) {
+            return;
+        }
+        // 已经去掉的话重新计算还原的时间，一直频繁更新时一直没有动画
+        mFramesLeft = RESTORE_AFTER_FRAMES;
+        if (mSuppressedAnimator != null) {
+            return;
+        }
+        RecyclerView.ItemAnimator animator = recyclerView.getItemAnimator();
+        if (animator == null) {
+            return;
+        }
+        Log.d(TAG, "skip animations ops:" + ops + ",rows:" + rows + ",rapid:" + rapid);
+        mSuppressedAnimator = animator;
+        recyclerView.setItemAnimator(null);
+        scheduleFrame();
+    }
+
+    private void onFrame() {
+        if (mSuppressedAnimator == null) {
+            return;
+        }
+        if (--mFramesLeft > 0) {
+            scheduleFrame();
+            return;
+        }
+        restore();
+    }
+
+    private void restore() {
+        RecyclerView.ItemAnimator animator = mSuppressedAnimator;
+        mSuppressedAnimator = null;
+        if (animator == null) {
+            return;
+        }
+        // 期间使用者自己设置了别的animator时不覆盖
+        if (mRecyclerView != null && mRecyclerView.getItemAnimator() == null) {
+            mRecyclerView.setItemAnimator(animator);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mHandler.postDelayed(mFrameRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame();
+                }
+            };
+        }
+        Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+}
@@ -1,22 +1,25 @@
 package com.silencedut.diffadapter;
 
 import android.os.Handler;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
-import android.support.v7.util.AdapterListUpdateCallback;
 import android.support.v7.util.DiffUtil;
 import android.support.v7.util.ListUpdateCallback;
 import android.util.Log;
 
 import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.monitor.JankMonitor;
+import com.silencedut.diffadapter.store.EncodedList;
+import com.silencedut.diffadapter.store.StoreBackedList;
 import com.silencedut.diffadapter.utils.ListChangedCallback;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * @author SilenceDut
@@ -24,27 +27,71 @@ import java.util.Set;
  */
 class AsyncListUpdateDiffer<T extends BaseMutableData> {
     private static final String TAG = "AsyncListUpdateDiffer";
-    private final ListUpdateCallback mUpdateCallback;
+    private static volatile Field sElementDataField;
+    private final CoalescingUpdateCallback mUpdateCallback;
     private final AsyncDifferConfig<T> mConfig;
     private final ListChangedCallback<T> mListChangedCallback;
     @Nullable
     private List<T> mOldList;
     private long mMaxScheduledGeneration;
-    private long mCanSyncTime = 0;
     private Set<Long> mGenerations = new HashSet<>();
-    static final int DELAY_STEP = 5;
     private Handler mDiffHandler;
+    private final CommitScheduler mCommitScheduler;
+    private final DiffAdapter mAdapter;
+    private Executor mBackgroundExecutor;
+    @Nullable
+    private List<T> mCurrentList;
+    @Nullable
+    private FrameBudgetDispatcher<T> mBudgetDispatcher;
+    private DiffStrategy mDiffStrategy = new DiffStrategy();
+    @Nullable
+    private volatile DiffResultCache mDiffResultCache;
+    /**
+     * 最新的diff还没latch时的直接修改，latch之后按顺序在diff结果上重新执行
+     */
+    private final List<Runnable> mPendingMutations = new ArrayList<>();
+    /**
+     * 页面不可见时只保留最后一次提交的列表，恢复可见时再diff
+     */
+    private boolean mSuspended;
+    private boolean mHasHeldList;
+    @Nullable
+    private List<T> mHeldList;
+    /**
+     * 暂停期间作用在保存的列表上的直接修改，恢复时提交列表之后按顺序执行
+     */
+    private final List<Runnable> mHeldMutations = new ArrayList<>();
 
     AsyncListUpdateDiffer(@NonNull DiffAdapter adapter, @NonNull ListChangedCallback<T> listChangedCallback,
                           @NonNull DiffUtil.ItemCallback<T> diffCallback) {
+        this.mAdapter = adapter;
         this.mDiffHandler = adapter.mDiffHandler;
-        this.mUpdateCallback = new AdapterListUpdateCallback(adapter);
+        this.mCommitScheduler = new CommitScheduler(adapter);
+        this.mUpdateCallback = adapter.mUpdateCallback;
         this.mConfig = new AsyncDifferConfig.Builder<>(diffCallback).build();
+        this.mBackgroundExecutor = mConfig.getBackgroundThreadExecutor();
         this.mListChangedCallback = listChangedCallback;
         updateCurrentList(new ArrayList<T>());
     }
 
     void submitList(@Nullable final List<T> newList) {
+        if (mSuspended) {
+            if (mHasHeldList && mHeldList instanceof EncodedList && mHeldList != newList) {
+                ((EncodedList) mHeldList).release();
+            }
+            if (!mHeldMutations.isEmpty()) {
+                Log.d(TAG, "submitList drop " + mHeldMutations.size() + " held mutations replaced by new list");
+                mHeldMutations.clear();
+            }
+            mHeldList = newList;
+            mHasHeldList = true;
+            return;
+        }
+        flushPendingDispatch();
+        if (!mPendingMutations.isEmpty()) {
+            Log.d(TAG, "submitList drop " + mPendingMutations.size() + " mutations replaced by new list");
+            mPendingMutations.clear();
+        }
         final long runGeneration = ++this.mMaxScheduledGeneration;
         mGenerations.add(runGeneration);
         Log.d(TAG, "latchList submitList  runGeneration add :" + runGeneration + ";;size" + mGenerations.size());
@@ -59,15 +106,19 @@ class AsyncListUpdateDiffer<T extends BaseMutableData> {
                         mGenerations.size());
             } else if (this.mOldList == null) {
                 syncOldList(newList);
-                updateSyncTime(newList);
-                updateCurrentList(new ArrayList<>(newList));
+                updateCurrentList(snapshot(newList));
                 this.mUpdateCallback.onInserted(0, newList.size());
+                attachStoreList(newList);
+                mCommitScheduler.onCommitted();
                 mGenerations.remove(runGeneration);
                 Log.d(TAG, "latchList submitList mOldList == null runGeneration :" + runGeneration + ";;size" +
                         mGenerations.size());
             } else {
                 doDiff(newList, runGeneration);
             }
+        } else {
+            // 和旧列表是同一个时不需要diff，只让进行中的diff失效
+            mGenerations.remove(runGeneration);
         }
     }
 
@@ -77,155 +128,571 @@ class AsyncListUpdateDiffer<T extends BaseMutableData> {
             return;
         }
 
-        final List<T> oldList = new ArrayList<>(this.mOldList);
+        final List<T> oldList = diffSnapshot(this.mOldList);
+        final DiffStrategy strategy = mDiffStrategy;
+        // 文件存储的列表只比较索引，不做需要解码的检查
+        final boolean shortcuts = !(oldList instanceof StoreBackedList) && !(newList instanceof StoreBackedList);
 
-        this.mConfig.getBackgroundThreadExecutor().execute(new Runnable() {
+        if (shortcuts && strategy.isSync(oldList.size(), newList.size())) {
+            long startNanos = System.nanoTime();
+            DiffStrategy.Decision decision = decide(strategy, oldList, newList, true, true);
+            if (oldList instanceof EncodedList) {
+                ((EncodedList) oldList).release();
+            }
+            strategy.report(decision, System.nanoTime() - startNanos);
+            latchList(newList, decision, runGeneration);
+            return;
+        }
+
+        this.mBackgroundExecutor.execute(new Runnable() {
             @Override
             public void run() {
-                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                final long startNanos = System.nanoTime();
+                final DiffStrategy.Decision decision = decide(strategy, oldList, newList, false, shortcuts);
+                final long costNanos = System.nanoTime() - startNanos;
+                mDiffHandler.post(new Runnable() {
                     @Override
-                    public int getOldListSize() {
-                        return oldList.size();
+                    public void run() {
+                        if (oldList instanceof EncodedList) {
+                            ((EncodedList) oldList).release();
+                        }
+                        strategy.report(decision, costNanos);
+                        if (AsyncListUpdateDiffer.this.mMaxScheduledGeneration == runGeneration) {
+                            AsyncListUpdateDiffer.this.latchList(newList, decision, runGeneration);
+                            Log.d(TAG, "latchList doDiff runGeneration :" + runGeneration + ";;size" +
+                                    mGenerations.size());
+                        } else {
+                            Log.d(TAG, "latchList doDiff else runGeneration :" + runGeneration + ";;size" +
+                                    mGenerations.size());
+                            mGenerations.remove(runGeneration);
+                            releaseCacheBinding(decision);
+                        }
                     }
+                });
+            }
+        });
+    }
+
+    /**
+     * 先查{@link DiffResultCache}，没有命中再按策略处理。编码的列表diff之后会释放，文件存储的列表计算key要解码每一行，都不缓存
+     */
+    @NonNull
+    private DiffStrategy.Decision decide(@NonNull DiffStrategy strategy, @NonNull List<T> oldList,
+                                         @NonNull List<T> newList, boolean sync, boolean shortcuts) {
+        DiffResultCache cache = mDiffResultCache;
+        if (cache == null || !shortcuts || oldList instanceof EncodedList || newList instanceof EncodedList
+                || oldList instanceof StoreBackedList || newList instanceof StoreBackedList) {
+            return strategy.decide(oldList, newList, createDiffCallback(oldList, newList), sync, shortcuts);
+        }
+        DiffResultCache.Keys oldKeys = DiffResultCache.keysOf(oldList);
+        DiffResultCache.Keys newKeys = DiffResultCache.keysOf(newList);
+        DiffUtil.Callback callback = createDiffCallback(oldList, newList);
+        DiffUtil.DiffResult cached = cache.get(oldKeys, newKeys, callback);
+        if (cached != null) {
+            return new DiffStrategy.Decision(DiffStrategy.STRATEGY_CACHED, oldList.size(), newList.size(), cached,
+                    callback);
+        }
+        DiffResultCache.RebindableCallback rebindable = DiffResultCache.rebindable(callback);
+        DiffStrategy.Decision decision = strategy.decide(oldList, newList, rebindable, sync, true);
+        if (decision.diffResult == null) {
+            return decision;
+        }
+        cache.put(oldKeys, newKeys, rebindable, decision.diffResult);
+        return new DiffStrategy.Decision(decision.strategy, decision.oldSize, decision.newSize, decision.diffResult,
+                callback);
+    }
+
+    /**
+     * 分发完或者被新的提交取代后，缓存的DiffResult不再引用这次的新旧列表
+     */
+    private void releaseCacheBinding(@NonNull DiffStrategy.Decision decision) {
+        DiffResultCache cache = mDiffResultCache;
+        if (cache != null && decision.diffResult != null && decision.cacheBinding != null) {
+            cache.release(decision.diffResult, decision.cacheBinding);
+        }
+    }
 
+    private DiffUtil.Callback createDiffCallback(@NonNull final List<T> oldList, @NonNull final List<T> newList) {
+        if (oldList instanceof StoreBackedList && newList instanceof StoreBackedList) {
+            return createIndexDiffCallback((StoreBackedList) oldList, (StoreBackedList) newList);
+        }
+        final EncodedList oldEncoded = oldList instanceof EncodedList ? (EncodedList) oldList : null;
+        final EncodedList newEncoded = newList instanceof EncodedList ? (EncodedList) newList : null;
+        return new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                if (bothEncoded(oldItemPosition, newItemPosition)) {
+                    return oldEncoded.isSameItem(oldItemPosition, newEncoded, newItemPosition);
+                }
+
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem == null || newItem == null) {
+                    return false;
+                }
+                if (oldItem.getItemViewId() != newItem.getItemViewId() ||
+                        oldItem.getClass() != newItem.getClass()) {
+                    return false;
+                }
+                return AsyncListUpdateDiffer.this.mConfig.getDiffCallback().areItemsTheSame(oldItem, newItem);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                if (bothEncoded(oldItemPosition, newItemPosition)) {
+                    return oldEncoded.isSameContent(oldItemPosition, newEncoded, newItemPosition);
+                }
+
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem != null && newItem != null && oldItem.getClass() == newItem.getClass()) {
+                    return AsyncListUpdateDiffer.this.mConfig.getDiffCallback()
+                            .areContentsTheSame(oldItem, newItem);
+                } else {
+                    return oldItem == null && newItem == null;
+                }
+            }
+
+            @Override
+            @Nullable
+            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem != null && newItem != null && oldItem.getClass() == newItem.getClass()) {
+                    return AsyncListUpdateDiffer.this.mConfig.getDiffCallback()
+                            .getChangePayload(oldItem, newItem);
+                } else {
+                    return null;
+                }
+            }
+
+            private boolean bothEncoded(int oldItemPosition, int newItemPosition) {
+                return oldEncoded != null && newEncoded != null
+                        && oldEncoded.isEncoded(oldItemPosition) && newEncoded.isEncoded(newItemPosition);
+            }
+        };
+    }
+
+    /**
+     * 两个文件存储的列表先比较记录头里的key和内容哈希，哈希相同时才确认，不同的行不用解码
+     */
+    private static DiffUtil.Callback createIndexDiffCallback(@NonNull final StoreBackedList oldList,
+                                                             @NonNull final StoreBackedList newList) {
+        final int oldSize = oldList.size();
+        final int newSize = newList.size();
+        return new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldSize;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newSize;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.isSameItem(oldItemPosition, newList, newItemPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.isSameContent(oldItemPosition, newList, newItemPosition);
+            }
+        };
+    }
+
+    /**
+     * 只对当前列表的[startPosition, startPosition + removeCount)这一段做diff并替换成newItems，
+     * 在主线程同步计算，只适合一页这样的小范围
+     */
+    void replaceRange(final int startPosition, final int removeCount, @NonNull final List<T> newItems) {
+        updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                List<T> currentList = mCurrentList;
+                if (currentList == null) {
+                    return;
+                }
+                final int start = Math.min(startPosition, currentList.size());
+                // removeCount可能是Integer.MAX_VALUE，start + removeCount会溢出
+                int end = removeCount > currentList.size() - start ? currentList.size() : start + removeCount;
+                List<T> range = currentList.subList(start, end);
+                DiffUtil.DiffResult result = DiffUtil.calculateDiff(createDiffCallback(new ArrayList<>(range), newItems));
+                range.clear();
+                range.addAll(newItems);
+                result.dispatchUpdatesTo(new ListUpdateCallback() {
                     @Override
-                    public int getNewListSize() {
-                        return newList.size();
+                    public void onInserted(int position, int count) {
+                        mUpdateCallback.onInserted(position + start, count);
                     }
 
                     @Override
-                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem == null || newItem == null) {
-                            return false;
-                        }
-                        if (oldItem.getItemViewId() != newItem.getItemViewId() ||
-                                oldItem.getClass() != newItem.getClass()) {
-                            return false;
-                        }
-                        return AsyncListUpdateDiffer.this.mConfig.getDiffCallback().areItemsTheSame(oldItem, newItem);
+                    public void onRemoved(int position, int count) {
+                        mUpdateCallback.onRemoved(position + start, count);
                     }
 
                     @Override
-                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem != null && newItem != null && oldItem.getClass() == newItem.getClass()) {
-                            return AsyncListUpdateDiffer.this.mConfig.getDiffCallback()
-                                    .areContentsTheSame(oldItem, newItem);
-                        } else {
-                            return oldItem == null && newItem == null;
-                        }
+                    public void onMoved(int fromPosition, int toPosition) {
+                        mUpdateCallback.onMoved(fromPosition + start, toPosition + start);
                     }
 
                     @Override
-                    @Nullable
-                    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem != null && newItem != null && oldItem.getClass() == newItem.getClass()) {
-                            return AsyncListUpdateDiffer.this.mConfig.getDiffCallback()
-                                    .getChangePayload(oldItem, newItem);
-                        } else {
-                            return null;
-                        }
-                    }
-                });
-                mDiffHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (AsyncListUpdateDiffer.this.mMaxScheduledGeneration == runGeneration) {
-                            AsyncListUpdateDiffer.this.latchList(newList, result, runGeneration);
-                            Log.d(TAG, "latchList doDiff runGeneration :" + runGeneration + ";;size" +
-                                    mGenerations.size());
-                        } else {
-                            Log.d(TAG, "latchList doDiff else runGeneration :" + runGeneration + ";;size" +
-                                    mGenerations.size());
-                            mGenerations.remove(runGeneration);
-                        }
+                    public void onChanged(int position, int count, Object payload) {
+                        mUpdateCallback.onChanged(position + start, count, payload);
                     }
                 });
             }
-        });
+        }, mCurrentList);
     }
 
-    private void latchList(@NonNull final List<T> newList, @NonNull final DiffUtil.DiffResult diffResult,
+    private void latchList(@NonNull final List<T> newList, @NonNull final DiffStrategy.Decision decision,
                            final long runGeneration) {
 
-        long needDelay = mCanSyncTime - SystemClock.elapsedRealtime();
-        if (needDelay <= 0) {
+        mCommitScheduler.runWhenSettled(new Runnable() {
+            @Override
+            public void run() {
 
-            syncOldList(newList);
-            updateSyncTime(newList);
-            updateCurrentList(new ArrayList<>(newList));
-            diffResult.dispatchUpdatesTo(AsyncListUpdateDiffer.this.mUpdateCallback);
-            mGenerations.remove(runGeneration);
-            Log.d(TAG, "latchList needDelay <= 0 runGeneration :" + runGeneration + ";;size" + mGenerations.size());
+                if (AsyncListUpdateDiffer.this.mMaxScheduledGeneration == runGeneration) {
 
-        } else {
+                    dispatchLatch(newList, decision, runGeneration);
+
+                }
+                releaseCacheBinding(decision);
+                Log.d(TAG, "latchList runGeneration :" + runGeneration + ";;size" + mGenerations.size());
+                mGenerations.remove(runGeneration);
+            }
+        });
 
-            mDiffHandler.postDelayed(new Runnable() {
+    }
+
+    private void dispatchLatch(@NonNull List<T> newList, @NonNull DiffStrategy.Decision decision, long runGeneration) {
+        JankMonitor jankMonitor = mAdapter.mJankMonitor;
+        long startNanos = jankMonitor != null ? System.nanoTime() : 0;
+        mUpdateCallback.beginBatch();
+        try {
+            dispatchDiffResult(newList, decision);
+        } finally {
+            mUpdateCallback.endBatch();
+        }
+        mCommitScheduler.onCommitted();
+        if (jankMonitor != null) {
+            jankMonitor.onLatch(runGeneration, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * diff结果和之后排队的修改在一个批量里发出，排队的修改产生的通知可以和diff结果合并
+     */
+    private void dispatchDiffResult(@NonNull final List<T> newList, @NonNull DiffStrategy.Decision decision) {
+        syncOldList(newList);
+        DiffUtil.DiffResult diffResult = decision.diffResult;
+        // 分帧分发要逐行读取新列表，编码的列表会把每一行都解码，按原来的方式整体替换
+        if (diffResult != null && mBudgetDispatcher != null && mCurrentList instanceof ArrayList
+                && newList instanceof ArrayList) {
+            mBudgetDispatcher.dispatch(mCurrentList, newList, diffResult, new ListChangedCallback<T>() {
                 @Override
-                public void run() {
+                public void onListChanged(List<T> currentList) {
+                    updateCurrentList(currentList == newList ? snapshot(newList) : currentList);
+                }
+            });
+        } else {
+            updateCurrentList(snapshot(newList));
+            decision.dispatchTo(mUpdateCallback);
+            attachStoreList(newList);
+        }
+        replayPendingMutations();
+    }
 
-                    if (AsyncListUpdateDiffer.this.mMaxScheduledGeneration == runGeneration) {
+    private void replayPendingMutations() {
+        if (mPendingMutations.isEmpty()) {
+            return;
+        }
+        List<Runnable> mutations = new ArrayList<>(mPendingMutations);
+        mPendingMutations.clear();
+        flushPendingDispatch();
+        for (Runnable mutation : mutations) {
+            mutation.run();
+        }
+        syncOldList(mCurrentList);
+        Log.d(TAG, "replay " + mutations.size() + " mutations after latch");
+    }
 
-                        syncOldList(newList);
-                        updateSyncTime(newList);
-                        updateCurrentList(new ArrayList<>(newList));
-                        diffResult.dispatchUpdatesTo(AsyncListUpdateDiffer.this.mUpdateCallback);
+    /**
+     * 直接修改列表。最新提交的diff还在计算或者等待latch时先排队，latch之后按调用顺序在新列表上执行，
+     * 之后再调用submitList的话，排队的修改被新列表替换
+     */
+    void updateOldListSize(final @NonNull Runnable listSizeRunnable, final List<T> oldDatas) {
+        if (mHasHeldList) {
+            // 修改要作用在暂停期间提交的列表上，恢复时排在它的diff后面，暂停期间不开始diff
+            mHeldMutations.add(listSizeRunnable);
+            return;
+        }
+        if (mGenerations.contains(mMaxScheduledGeneration)) {
+            mPendingMutations.add(listSizeRunnable);
+            return;
+        }
+        final long runGeneration = AsyncListUpdateDiffer.this.mMaxScheduledGeneration;
+        mCommitScheduler.runWhenSettled(new Runnable() {
+            @Override
+            public void run() {
 
+                if (runGeneration == AsyncListUpdateDiffer.this.mMaxScheduledGeneration) {
+                    mUpdateCallback.beginBatch();
+                    try {
+                        flushPendingDispatch();
+                        listSizeRunnable.run();
+                    } finally {
+                        mUpdateCallback.endBatch();
                     }
-                    Log.d(TAG, "latchList else runGeneration :" + runGeneration + ";;size" + mGenerations.size());
-                    mGenerations.remove(runGeneration);
+                    syncOldList(oldDatas);
                 }
-            }, needDelay);
+            }
+        });
+    }
+
+    void setDiffStrategy(@NonNull DiffStrategy diffStrategy) {
+        this.mDiffStrategy = diffStrategy;
+    }
+
+    void setDiffResultCache(@Nullable DiffResultCache diffResultCache) {
+        this.mDiffResultCache = diffResultCache;
+    }
+
+    void clearDiffResultCache() {
+        DiffResultCache cache = mDiffResultCache;
+        if (cache != null) {
+            cache.clear();
         }
+    }
 
+    boolean isSettled() {
+        return mCommitScheduler.isSettled();
     }
 
-    void updateOldListSize(final @NonNull Runnable listSizeRunnable, final List<T> oldDatas) {
-        if (mGenerations.size() > 0) {
+    void onDetached() {
+        mCommitScheduler.onDetached();
+    }
+
+    /**
+     * 没有进行中的更新时旧列表的内容和当前列表一样，去掉latch时多保留的这一份
+     *
+     * @return 大约释放的字节数
+     */
+    long dropOldListCopy() {
+        List<T> oldList = mOldList;
+        if (hasPendingUpdates() || oldList == null || mCurrentList == null || oldList == mCurrentList
+                || oldList instanceof StoreBackedList) {
+            return 0;
+        }
+        long released = oldList instanceof EncodedList ? (long) oldList.size() * EncodedList.ROW_BYTES
+                : 16 + 4L * oldList.size();
+        syncOldList(mCurrentList);
+        return released;
+    }
+
+    /**
+     * 清空当前列表的缓存，数组缩小到实际大小
+     *
+     * @return 大约释放的字节数
+     */
+    long trimCurrentList() {
+        List<T> currentList = mCurrentList;
+        if (currentList instanceof EncodedList) {
+            return ((EncodedList) currentList).trimMemory();
+        }
+        if (currentList instanceof StoreBackedList) {
+            ((StoreBackedList) currentList).trimMemory();
+        } else if (currentList instanceof ArrayList && !hasPendingUpdates()) {
+            int capacity = capacityOf((ArrayList<T>) currentList);
+            ((ArrayList<T>) currentList).trimToSize();
+            return capacity > currentList.size() ? 4L * (capacity - currentList.size()) : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * ArrayList内部数组的长度，读不到时返回-1
+     */
+    private static int capacityOf(ArrayList<?> list) {
+        Field field = sElementDataField;
+        if (field == null) {
+            field = findElementDataField();
+            if (field == null) {
+                return -1;
+            }
+            sElementDataField = field;
+        }
+        try {
+            Object[] elements = (Object[]) field.get(list);
+            return elements != null ? elements.length : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    private static Field findElementDataField() {
+        // OpenJDK是elementData，Android N之前是array
+        for (String name : new String[]{"elementData", "array"}) {
+            try {
+                Field field = ArrayList.class.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (Exception ignored) {
+                // 换下一个名字
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 暂停时submitList只保存最新的列表，不计算diff，之后的直接修改排在这个列表后面，恢复时一起提交
+     */
+    void setSuspended(boolean suspended) {
+        mSuspended = suspended;
+        if (!suspended) {
+            submitHeldList();
+        }
+    }
+
+    private void submitHeldList() {
+        if (!mHasHeldList) {
             return;
         }
+        List<T> heldList = mHeldList;
+        List<Runnable> mutations = new ArrayList<>(mHeldMutations);
+        mHasHeldList = false;
+        mHeldList = null;
+        mHeldMutations.clear();
+        submitList(heldList);
+        for (Runnable mutation : mutations) {
+            updateOldListSize(mutation, mCurrentList);
+        }
+    }
 
-        long currentTimeMillis = SystemClock.elapsedRealtime();
+    void onScrollStateChanged(int newState) {
+        mCommitScheduler.onScrollStateChanged(newState);
+    }
 
-        if (currentTimeMillis >= mCanSyncTime) {
+    boolean isScrolling() {
+        return mCommitScheduler.isScrolling();
+    }
 
-            listSizeRunnable.run();
-            syncOldList(oldDatas);
+    void setMaxScrollDefer(long maxScrollDefer) {
+        mCommitScheduler.setMaxScrollDefer(maxScrollDefer);
+    }
 
+    /**
+     * @param budgetMs 大于0时开启分帧分发diff结果，每帧的时间预算
+     */
+    void setDispatchFrameBudget(long budgetMs) {
+        flushPendingDispatch();
+        if (budgetMs <= 0) {
+            mBudgetDispatcher = null;
+        } else if (mBudgetDispatcher == null) {
+            mBudgetDispatcher = new FrameBudgetDispatcher<>(mAdapter, mUpdateCallback, budgetMs);
         } else {
-            final long runGeneration = AsyncListUpdateDiffer.this.mMaxScheduledGeneration;
-            mDiffHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
+            mBudgetDispatcher.setBudget(budgetMs);
+        }
+    }
 
-                    if (runGeneration == AsyncListUpdateDiffer.this.mMaxScheduledGeneration) {
+    /**
+     * 分帧分发还没结束时立即分发完，任何直接修改列表的操作之前都要调用
+     */
+    void flushPendingDispatch() {
+        if (mBudgetDispatcher != null) {
+            mBudgetDispatcher.flush();
+        }
+    }
 
-                        listSizeRunnable.run();
-                        syncOldList(oldDatas);
-                    }
-                }
-            }, mCanSyncTime - currentTimeMillis);
+    void setBackgroundExecutor(@Nullable Executor executor) {
+        this.mBackgroundExecutor = executor != null ? executor : mConfig.getBackgroundThreadExecutor();
+    }
+
+    /**
+     * 是否有排队还没执行的diff或者直接修改，这时之后的修改也要通过{@link #updateOldListSize(Runnable, List)}排在后面
+     */
+    boolean hasQueuedMutations() {
+        return mHasHeldList || mGenerations.contains(mMaxScheduledGeneration) || !mPendingMutations.isEmpty()
+                || mCommitScheduler.hasQueuedCommits();
+    }
+
+    /**
+     * 是否还有没latch的diff或者因为同步延时还没执行的更新
+     */
+    boolean hasPendingUpdates() {
+        return mHasHeldList || mGenerations.size() > 0 || mCommitScheduler.hasPendingCommits()
+                || mBudgetDispatcher != null && mBudgetDispatcher.isDispatching();
+    }
+
+    /**
+     * 文件存储的列表本身是只读的，不需要拷贝；聊天模式的环形列表就是当前列表，只通过直接修改变化
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> snapshot(List<T> list) {
+        if (list instanceof StoreBackedList || list instanceof RingList) {
+            return list;
+        }
+        if (list instanceof EncodedList) {
+            return (List<T>) ((EncodedList) list).copy();
+        }
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * 后台diff用的旧列表。文件存储的列表在diff期间停止跟随store变化，保证latch时和diff结果的大小一致；
+     * 编码的列表拷贝时持有slab的引用，diff完成后释放
+     */
+    private List<T> diffSnapshot(List<T> list) {
+        if (list instanceof StoreBackedList) {
+            ((StoreBackedList) list).detach();
+            return list;
+        }
+        if (list instanceof RingList) {
+            return new ArrayList<>(list);
+        }
+        return snapshot(list);
+    }
+
+    /**
+     * 文件存储的列表在diff结果分发之后才开始跟随store变化
+     */
+    private void attachStoreList(List<T> list) {
+        if (list instanceof StoreBackedList) {
+            ((StoreBackedList) list).attach(mUpdateCallback);
         }
     }
 
     private void updateCurrentList(List<T> currentList) {
+        if (mCurrentList instanceof StoreBackedList && mCurrentList != currentList) {
+            ((StoreBackedList) mCurrentList).release();
+        }
+        if (mCurrentList instanceof EncodedList && mCurrentList != currentList && mCurrentList != mOldList) {
+            ((EncodedList) mCurrentList).release();
+        }
+        this.mCurrentList = currentList;
         this.mListChangedCallback.onListChanged(currentList);
     }
 
     private void syncOldList(@Nullable List<T> oldData) {
+        if (mOldList instanceof EncodedList && mOldList != oldData && mOldList != mCurrentList) {
+            ((EncodedList) mOldList).release();
+        }
         this.mOldList = oldData;
     }
 
-    private void updateSyncTime(@Nullable List<T> oldData) {
-        mCanSyncTime = SystemClock.elapsedRealtime() + (oldData != null ? oldData.size() * DELAY_STEP : 0);
-    }
 
 
 }
@@ -0,0 +1,248 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.AdapterListUpdateCallback;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * diff结果和addData、updateData这些直接修改发给RecyclerView之前先经过这里，
+ * 在{@link #beginBatch()}和{@link #endBatch()}之间的通知会合并：
+ * 相邻的插入、删除、修改合并成一次范围通知，同一行的多次修改合并payload，
+ * 刚插入又删除的行直接抵消，插入后又修改、修改后又删除的行只保留插入、删除
+ *
+ * 不在批量里的通知直接发出去，只合并前后相邻的两次，和BatchingListUpdateCallback一样
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class CoalescingUpdateCallback implements ListUpdateCallback {
+
+    private static final String TAG = "CoalescingCallback";
+
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_INSERT = 1;
+    private static final int TYPE_REMOVE = 2;
+    private static final int TYPE_CHANGE = 3;
+
+    private final RecyclerView.Adapter mAdapter;
+    private final ListUpdateCallback mTarget;
+    private int mDepth;
+    private int mType = TYPE_NONE;
+    private int mPosition;
+    private int mCount;
+    @Nullable
+    private Object mPayload;
+    private int mCoalesced;
+    /**
+     * 全量刷新之后RecyclerView会重新绑定所有行，这时UI没有变化的行可以跳过绑定；
+     * 之后发出任何修改通知或者这次刷新渲染完成后结束
+     */
+    private boolean mFullRefreshBinding;
+    private int mDispatchedOps;
+    private int mDispatchedRows;
+    @Nullable
+    private DispatchListener mDispatchListener;
+
+    /**
+     * 每次把通知发给RecyclerView之后回调，批量里的通知算一次
+     */
+    interface DispatchListener {
+        void onDispatched(int ops, int rows);
+    }
+
+    CoalescingUpdateCallback(@NonNull RecyclerView.Adapter adapter) {
+        this.mAdapter = adapter;
+        this.mTarget = new AdapterListUpdateCallback(adapter);
+    }
+
+    void setDispatchListener(@Nullable DispatchListener dispatchListener) {
+        this.mDispatchListener = dispatchListener;
+    }
+
+    boolean isFullRefreshBinding() {
+        return mFullRefreshBinding;
+    }
+
+    void endFullRefreshBinding() {
+        mFullRefreshBinding = false;
+    }
+
+    void beginBatch() {
+        mDepth++;
+    }
+
+    void endBatch() {
+        if (mDepth > 0 && --mDepth == 0) {
+            flush();
+            if (mCoalesced > 0) {
+                Log.d(TAG, "coalesced notifications :" + mCoalesced);
+                mCoalesced = 0;
+            }
+            endDispatch();
+        }
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (mType == TYPE_INSERT && position >= mPosition && position <= mPosition + mCount) {
+            mCount += count;
+            mCoalesced++;
+        } else {
+            flush();
+            pend(TYPE_INSERT, position, count, null);
+        }
+        dispatchIfIdle();
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (mType == TYPE_INSERT && position >= mPosition && position + count <= mPosition + mCount) {
+            // 删除的都是刚插入的行
+            mCount -= count;
+            if (mCount == 0) {
+                mType = TYPE_NONE;
+            }
+            mCoalesced++;
+        } else if (mType == TYPE_REMOVE && (position == mPosition || position + count == mPosition)) {
+            mPosition = position;
+            mCount += count;
+            mCoalesced++;
+        } else if (mType == TYPE_CHANGE && position <= mPosition && mPosition + mCount <= position + count) {
+            // 修改过的行都被删除了，修改不用再发
+            pend(TYPE_REMOVE, position, count, null);
+            mCoalesced++;
+        } else {
+            flush();
+            pend(TYPE_REMOVE, position, count, null);
+        }
+        dispatchIfIdle();
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        flush();
+        mTarget.onMoved(fromPosition, toPosition);
+        mFullRefreshBinding = false;
+        mDispatchedOps++;
+        mDispatchedRows++;
+        if (mDepth == 0) {
+            endDispatch();
+        }
+    }
+
+    /**
+     * 全量刷新，还没发出去的通知不用再发
+     */
+    void onDataSetChanged() {
+        mType = TYPE_NONE;
+        mPayload = null;
+        mAdapter.notifyDataSetChanged();
+        mFullRefreshBinding = true;
+        mDispatchedOps++;
+        mDispatchedRows += mAdapter.getItemCount();
+        if (mDepth == 0) {
+            endDispatch();
+        }
+    }
+
+    @Override
+    public void onChanged(int position, int count, @Nullable Object payload) {
+        if (count <= 0) {
+            return;
+        }
+        if (mType == TYPE_INSERT && position >= mPosition && position + count <= mPosition + mCount) {
+            // 刚插入的行还没有bind过，会完整绑定
+            mCoalesced++;
+        } else if (mType == TYPE_CHANGE && position <= mPosition + mCount && position + count >= mPosition
+                && samePayload(mPayload, payload)) {
+            // payload发出去之后不会被修改，相同的payload可以直接给合并后的范围共用
+            int end = Math.max(mPosition + mCount, position + count);
+            mPosition = Math.min(mPosition, position);
+            mCount = end - mPosition;
+            mCoalesced++;
+        } else if (mType == TYPE_CHANGE && position == mPosition && count == mCount
+                && (mPayload == null || payload == null || (mPayload instanceof Set && payload instanceof Set))) {
+            mPayload = combinePayload(mPayload, payload);
+            mCoalesced++;
+        } else {
+            flush();
+            pend(TYPE_CHANGE, position, count, payload);
+        }
+        dispatchIfIdle();
+    }
+
+    private void pend(int type, int position, int count, @Nullable Object payload) {
+        mType = type;
+        mPosition = position;
+        mCount = count;
+        mPayload = payload;
+    }
+
+    private void dispatchIfIdle() {
+        if (mDepth == 0) {
+            flush();
+            endDispatch();
+        }
+    }
+
+    private void endDispatch() {
+        int ops = mDispatchedOps;
+        int rows = mDispatchedRows;
+        mDispatchedOps = 0;
+        mDispatchedRows = 0;
+        if (ops > 0 && mDispatchListener != null) {
+            mDispatchListener.onDispatched(ops, rows);
+        }
+    }
+
+    private void flush() {
+        switch (mType) {
+            case TYPE_INSERT:
+                mTarget.onInserted(mPosition, mCount);
+                break;
+            case TYPE_REMOVE:
+                mTarget.onRemoved(mPosition, mCount);
+                break;
+            case TYPE_CHANGE:
+                mTarget.onChanged(mPosition, mCount, mPayload);
+                break;
+            default:
+                return;
+        }
+        mFullRefreshBinding = false;
+        mDispatchedOps++;
+        mDispatchedRows += mCount;
+        mType = TYPE_NONE;
+        mPayload = null;
+    }
+
+    /**
+     * 任意一次是完整刷新(null)时完整刷新，都是payloadKeys时取并集
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private Object combinePayload(@Nullable Object current, @Nullable Object payload) {
+        if (current == null || payload == null) {
+            return null;
+        }
+        Set<Object> keys = new HashSet<>((Set<Object>) current);
+        keys.addAll((Set<Object>) payload);
+        return keys;
+    }
+
+    private static boolean samePayload(@Nullable Object payload1, @Nullable Object payload2) {
+        return payload1 == null ? payload2 == null : payload1.equals(payload2);
+    }
+}
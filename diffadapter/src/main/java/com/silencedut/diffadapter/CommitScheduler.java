@@ -0,0 +1,273 @@
+package com.silencedut.diffadapter;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+
+/**
+ * 决定下一次提交列表的时机：上一次提交的改动真正布局完并且item动画结束后才算渲染完成，
+ * 渲染完成之前的提交排队，完成后按顺序执行
+ *
+ * 替代原来按列表大小每条延时5ms的做法，大列表不会再被延时几十秒。
+ * 布局完成通过{@link Choreographer}帧回调里检查{@link RecyclerView#hasPendingAdapterUpdates()}判断，
+ * 动画结束通过{@link RecyclerView.ItemAnimator#isRunning(RecyclerView.ItemAnimator.ItemAnimatorFinishedListener)}监听，
+ * 没有attach到RecyclerView时不需要等待
+ *
+ * 列表在拖动或者fling时，提交同样排队，停止滚动后再执行，最多等待maxScrollDefer，
+ * 被新的提交替换掉的generation在执行时直接跳过，停止后只有最新的一次真正提交
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class CommitScheduler {
+
+    private static final String TAG = "CommitScheduler";
+    private static final long FALLBACK_FRAME_DELAY = 16;
+    /**
+     * 动画一直没有结束时最多等待的时长，避免列表一直不更新
+     */
+    private static final long MAX_SETTLE_WAIT = 1000;
+    static final long DEFAULT_MAX_SCROLL_DEFER = 1000;
+
+    private final DiffAdapter mAdapter;
+    private final Handler mHandler;
+    private final ArrayDeque<Runnable> mPendingCommits = new ArrayDeque<>();
+    private boolean mSettled = true;
+    private boolean mFrameScheduled;
+    private boolean mWaitingAnimator;
+    private int mFramesSinceCommit;
+    private long mCommitTime;
+    private Choreographer.FrameCallback mFrameCallback;
+    private boolean mScrolling;
+    private long mMaxScrollDefer = DEFAULT_MAX_SCROLL_DEFER;
+    private boolean mScrollDeferArmed;
+    private boolean mScrollDeferExpired;
+
+    private final Runnable mScrollDeferTimeout = new Runnable() {
+        @Override
+        public void run() {
+            mScrollDeferArmed = false;
+            Log.d(TAG, "scroll defer timeout, pending:" + mPendingCommits.size());
+            mScrollDeferExpired = true;
+            runPending();
+            mScrollDeferExpired = false;
+            armScrollDeferIfNeeded();
+        }
+    };
+
+    private final Runnable mFallbackFrame = new Runnable() {
+        @Override
+        public void run() {
+            onFrame();
+        }
+    };
+
+    private final Runnable mSettleTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(TAG, "settle timeout");
+            settle();
+        }
+    };
+
+    private final RecyclerView.ItemAnimator.ItemAnimatorFinishedListener mAnimatorFinishedListener =
+            new RecyclerView.ItemAnimator.ItemAnimatorFinishedListener() {
+                @Override
+                public void onAnimationsFinished() {
+                    if (mWaitingAnimator) {
+                        settle();
+                    }
+                }
+            };
+
+    CommitScheduler(@NonNull DiffAdapter adapter) {
+        this.mAdapter = adapter;
+        this.mHandler = adapter.mDiffHandler;
+    }
+
+    /**
+     * 一次提交已经notify给adapter，开始等它渲染完成
+     */
+    void onCommitted() {
+        if (mAdapter.mRecyclerView == null) {
+            return;
+        }
+        mSettled = false;
+        mWaitingAnimator = false;
+        mFramesSinceCommit = 0;
+        mCommitTime = SystemClock.elapsedRealtime();
+        mHandler.removeCallbacks(mSettleTimeout);
+        mHandler.postDelayed(mSettleTimeout, MAX_SETTLE_WAIT);
+        scheduleFrame();
+    }
+
+    boolean isSettled() {
+        return mSettled;
+    }
+
+    /**
+     * @param maxScrollDefer 滚动时提交最多等待的时长，小于等于0时滚动不影响提交
+     */
+    void setMaxScrollDefer(long maxScrollDefer) {
+        this.mMaxScrollDefer = maxScrollDefer;
+        if (!isScrollHeld()) {
+            mHandler.removeCallbacks(mScrollDeferTimeout);
+            mScrollDeferArmed = false;
+            runPending();
+        }
+    }
+
+    void onScrollStateChanged(int newState) {
+        boolean scrolling = newState != RecyclerView.SCROLL_STATE_IDLE;
+        if (scrolling == mScrolling) {
+            return;
+        }
+        mScrolling = scrolling;
+        if (!scrolling) {
+            mHandler.removeCallbacks(mScrollDeferTimeout);
+            mScrollDeferArmed = false;
+            runPending();
+        }
+    }
+
+    boolean isScrolling() {
+        return mScrolling;
+    }
+
+    boolean hasPendingCommits() {
+        return !mSettled || !mPendingCommits.isEmpty();
+    }
+
+    boolean hasQueuedCommits() {
+        return !mPendingCommits.isEmpty();
+    }
+
+    /**
+     * 已经渲染完成时立即执行，否则排队
+     */
+    void runWhenSettled(@NonNull Runnable commit) {
+        if (mSettled && !isScrollHeld() && mPendingCommits.isEmpty()) {
+            commit.run();
+        } else {
+            mPendingCommits.add(commit);
+            armScrollDeferIfNeeded();
+        }
+    }
+
+    /**
+     * 从RecyclerView上detach后没有渲染可等，排队的提交立即执行
+     */
+    void onDetached() {
+        mScrolling = false;
+        mScrollDeferArmed = false;
+        mHandler.removeCallbacks(mScrollDeferTimeout);
+        if (mFrameScheduled) {
+            mFrameScheduled = false;
+            mHandler.removeCallbacks(mFallbackFrame);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                removeFrameCallback();
+            }
+        }
+        settle();
+    }
+
+    private void settle() {
+        mHandler.removeCallbacks(mSettleTimeout);
+        mWaitingAnimator = false;
+        if (!mSettled) {
+            Log.d(TAG, "settled after " + (SystemClock.elapsedRealtime() - mCommitTime) + "ms");
+        }
+        mSettled = true;
+        mAdapter.mUpdateCallback.endFullRefreshBinding();
+        runPending();
+    }
+
+    private void runPending() {
+        // 执行的提交可能又调用onCommitted，这时剩下的继续等下一次渲染完成；一起执行的提交的通知合并后再发出
+        mAdapter.mUpdateCallback.beginBatch();
+        try {
+            while (mSettled && !isScrollHeld() && !mPendingCommits.isEmpty()) {
+                mPendingCommits.poll().run();
+            }
+        } finally {
+            mAdapter.mUpdateCallback.endBatch();
+        }
+        armScrollDeferIfNeeded();
+    }
+
+    private boolean isScrollHeld() {
+        return mScrolling && mMaxScrollDefer > 0 && !mScrollDeferExpired;
+    }
+
+    private void armScrollDeferIfNeeded() {
+        if (!mScrollDeferArmed && isScrollHeld() && !mPendingCommits.isEmpty()) {
+            mScrollDeferArmed = true;
+            mHandler.postDelayed(mScrollDeferTimeout, mMaxScrollDefer);
+        }
+    }
+
+    private void onFrame() {
+        mFrameScheduled = false;
+        if (mSettled || mWaitingAnimator) {
+            return;
+        }
+        RecyclerView recyclerView = mAdapter.mRecyclerView;
+        if (recyclerView == null) {
+            settle();
+            return;
+        }
+        // 帧回调在这一帧的布局之前执行，至少等到提交之后的第二帧，这时候提交的改动已经布局过
+        mFramesSinceCommit++;
+        if (mFramesSinceCommit < 2 || recyclerView.hasPendingAdapterUpdates() || recyclerView.isComputingLayout()) {
+            scheduleFrame();
+            return;
+        }
+        RecyclerView.ItemAnimator itemAnimator = recyclerView.getItemAnimator();
+        if (itemAnimator == null) {
+            settle();
+            return;
+        }
+        mWaitingAnimator = true;
+        // 没有动画时会立即回调
+        itemAnimator.isRunning(mAnimatorFinishedListener);
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mHandler.postDelayed(mFallbackFrame, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame();
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+    }
+}
@@ -4,18 +4,22 @@ import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MediatorLiveData;
 import android.arch.lifecycle.Observer;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.Pair;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,17 +27,31 @@ import android.view.ViewGroup;
 import com.silencedut.diffadapter.data.BaseMutableData;
 import com.silencedut.diffadapter.holder.BaseDiffViewHolder;
 import com.silencedut.diffadapter.holder.NoDataDifferHolder;
+import com.silencedut.diffadapter.monitor.CallbackSanitizer;
+import com.silencedut.diffadapter.monitor.JankMonitor;
+import com.silencedut.diffadapter.store.EncodedList;
+import com.silencedut.diffadapter.store.ItemCodec;
+import com.silencedut.diffadapter.store.MappedItemStore;
+import com.silencedut.diffadapter.store.SchemaCodec;
+import com.silencedut.diffadapter.store.StoreBackedList;
+import com.silencedut.diffadapter.trace.MutationRecorder;
 import com.silencedut.diffadapter.utils.ListChangedCallback;
 import com.silencedut.diffadapter.utils.UpdatePayloadFunction;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * 大部分情况下是不需要再Adapter做过多的逻辑操作的，Adapter的目的就是用来组织Holder
@@ -51,15 +69,91 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
 
     private static final String TAG = "DiffAdapter";
     private SparseArray<Class<? extends BaseDiffViewHolder>> typeHolders = new SparseArray<>();
+    private final SparseArray<ItemCodec> mCodecs = new SparseArray<>();
     private List<BaseMutableData> mDatas;
 
     private LayoutInflater mInflater;
     private LifecycleOwner mLifecycleOwner;
     private AsyncListUpdateDiffer<BaseMutableData> mDifferHelper;
     private MediatorLiveData<Boolean> mUpdateMediatorLiveData = new MediatorLiveData<>();
-    private long mCanUpdateTimeMill;
     private static final int UPDATE_DELAY_THRESHOLD = 100;
+    /**
+     * 搜索时修改源列表，RecyclerView显示的是另一个列表，不用通知
+     */
+    private static final ListUpdateCallback SOURCE_UPDATE_CALLBACK = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+        }
+    };
     Handler mDiffHandler = new Handler(Looper.getMainLooper());
+    final CoalescingUpdateCallback mUpdateCallback = new CoalescingUpdateCallback(this);
+    private final AnimatorPolicy mAnimatorPolicy = new AnimatorPolicy();
+    private final PreInflater mPreInflater = new PreInflater(this);
+    @Nullable
+    private SharedViewPool mSharedViewPool;
+    @Nullable
+    JankMonitor mJankMonitor;
+    @Nullable
+    private volatile CallbackSanitizer mCallbackSanitizer;
+    @Nullable
+    RecyclerView mRecyclerView;
+    @Nullable
+    private ListChangedCallback<BaseMutableData> mListChangedCallback;
+    @Nullable
+    private MutationRecorder mRecorder;
+    @Nullable
+    private ListSnapshot mSnapshot;
+    @Nullable
+    private UpdateInbox mUpdateInbox;
+    @Nullable
+    private SortedMode mSortedMode;
+    private final int[] mVisibleRange = new int[2];
+    @Nullable
+    private StableIdTable mStableIds;
+    @Nullable
+    private SearchFilter mSearchFilter;
+    private LifecycleSuspender mLifecycleSuspender;
+
+    private final Observer<Boolean> mMediatorObserver = new Observer<Boolean>() {
+        @Override
+        public void onChanged(@Nullable Boolean o) {
+        }
+    };
+
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            mDifferHelper.onScrollStateChanged(newState);
+        }
+    };
     public Fragment attachedFragment;
     public Context mContext;
 
@@ -77,20 +171,31 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         this.mContext = appCompatActivity;
         this.mInflater = LayoutInflater.from(appCompatActivity);
         this.mLifecycleOwner = lifecycleOwner;
-        this.mUpdateMediatorLiveData.observe(mLifecycleOwner, new Observer<Boolean>() {
-            @Override
-            public void onChanged(@Nullable Boolean o) {
-            }
-        });
+        // 页面stop之后也要收到更新才能按key合并，在onOwnerDestroyed里取消
+        this.mUpdateMediatorLiveData.observeForever(mMediatorObserver);
 
         mDifferHelper = new AsyncListUpdateDiffer<>(this, new ListChangedCallback<BaseMutableData>() {
             @Override
             public void onListChanged(List<BaseMutableData> currentList) {
                 mDatas = currentList;
+                if (mStableIds != null && !(currentList instanceof StoreBackedList)) {
+                    mStableIds.pruneIfNeeded(currentList);
+                }
+                if (mSnapshot != null) {
+                    mSnapshot.scheduleSave(currentList);
+                }
+                if (mListChangedCallback != null) {
+                    mListChangedCallback.onListChanged(currentList);
+                }
             }
         }, new DiffUtil.ItemCallback<BaseMutableData>() {
             @Override
             public boolean areItemsTheSame(@NonNull BaseMutableData oldItem, @NonNull BaseMutableData newItem) {
+                CallbackSanitizer sanitizer = mCallbackSanitizer;
+                if (sanitizer != null) {
+                    return oldItem.getItemViewId() == newItem.getItemViewId() &&
+                            sanitizer.uniqueItemFeature(oldItem).equals(sanitizer.uniqueItemFeature(newItem));
+                }
                 return oldItem.getItemViewId() == newItem.getItemViewId() &&
                         oldItem.uniqueItemFeature().equals(newItem.uniqueItemFeature());
 
@@ -98,16 +203,102 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
 
             @Override
             public boolean areContentsTheSame(@NonNull BaseMutableData oldItem, @NonNull BaseMutableData newItem) {
-
+                CallbackSanitizer sanitizer = mCallbackSanitizer;
+                if (sanitizer != null) {
+                    return sanitizer.areUISame(oldItem, newItem);
+                }
                 return oldItem.areUISame(newItem);
             }
 
             @Override
             public Object getChangePayload(@NonNull BaseMutableData oldItem, @NonNull BaseMutableData newItem) {
-
-                return oldItem.getPayloadKeys(newItem);
+                CallbackSanitizer sanitizer = mCallbackSanitizer;
+                Set<String> keys = sanitizer != null ? sanitizer.payloadKeys(oldItem, newItem)
+                        : oldItem.getPayloadKeys(newItem);
+                // 发出去的payload可能合并给多行，不能和数据共用同一个集合
+                Set<String> payload = new HashSet<>(keys);
+                keys.clear();
+                return payload;
             }
         });
+        mUpdateCallback.setDispatchListener(mAnimatorPolicy);
+        mLifecycleSuspender = new LifecycleSuspender(this, lifecycleOwner);
+        mDifferHelper.setSuspended(mLifecycleSuspender.isSuspended());
+        mContext.getApplicationContext().registerComponentCallbacks(mTrimCallbacks);
+    }
+
+    /**
+     * 内存紧张时释放列表占用的内存，已经注册在Application上由系统自动调用，也可以手动调用。
+     * 任何级别都会去掉diff时多保留的旧列表、清空解码缓存并缩小数组；
+     * TRIM_MEMORY_RUNNING_LOW及以上再清空搜索、有序列表的索引(下次使用时重建)，stable id表只保留列表里还有的；
+     * 页面不可见或者内存很紧张时，再清空RecyclerView的缓存池、预加载的View和空闲的slab。
+     * 使用{@link SharedViewPool}时缓存池由它自己处理
+     *
+     * @param level {@link ComponentCallbacks2}的TRIM_MEMORY_*
+     * @return 大约释放的字节数，不包括缓存池里View和解码缓存里对象的内存
+     */
+    public long trimMemory(int level) {
+        long released = mDifferHelper.dropOldListCopy();
+        mDifferHelper.clearDiffResultCache();
+        released += mDifferHelper.trimCurrentList();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimIndexes();
+        }
+        int clearedHolders = 0;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            released += EncodedList.trimSlabPool();
+            mPreInflater.cancel();
+            RecyclerView recyclerView = mRecyclerView;
+            if (recyclerView != null && mSharedViewPool == null) {
+                RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+                for (int i = 0; i < typeHolders.size(); i++) {
+                    clearedHolders += pool.getRecycledViewCount(typeHolders.keyAt(i));
+                }
+                pool.clear();
+            }
+        }
+        Log.d(TAG, "trimMemory level:" + level + " released:" + released + " bytes, holders:" + clearedHolders);
+        return released;
+    }
+
+    private void trimIndexes() {
+        if (mSearchFilter != null) {
+            mSearchFilter.trimIndex();
+        }
+        if (mSortedMode != null) {
+            mSortedMode.trimIndex();
+        }
+        if (mStableIds != null && mDatas != null && !mDifferHelper.hasPendingUpdates()
+                && !(mDatas instanceof StoreBackedList)) {
+            mStableIds.trim(mDatas);
+        }
+    }
+
+    /**
+     * 页面低于STARTED时暂停，恢复时先提交暂停期间最后一次setDatas的列表，合并后的mediator更新排在它后面
+     */
+    void onSuspendChanged(boolean suspended, @NonNull final List<Runnable> mediatorUpdates) {
+        mDifferHelper.setSuspended(suspended);
+        if (mediatorUpdates.isEmpty()) {
+            return;
+        }
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                for (Runnable update : mediatorUpdates) {
+                    update.run();
+                }
+            }
+        }, mDatas);
+    }
+
+    void onOwnerDestroyed() {
+        mUpdateMediatorLiveData.removeObserver(mMediatorObserver);
+        if (mSnapshot != null) {
+            mSnapshot.flush();
+        }
+        mContext.getApplicationContext().unregisterComponentCallbacks(mTrimCallbacks);
     }
 
     public void registerHolder(Class<? extends BaseDiffViewHolder> viewHolder, int itemViewType) {
@@ -131,6 +322,169 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         setDatas(data);
     }
 
+    /**
+     * 给一种item注册编码方式，之后{@link #setDatas(List)}的数据会编码保存在{@link EncodedList}里，
+     * 不再为每一行保留对象，只有显示的行才会解码。适合行数很多、字段都是基本类型和String的数据，
+     * 可以用{@link SchemaCodec}按字段自动编码
+     */
+    public void registerCodec(int itemViewType, @NonNull ItemCodec<?> codec) {
+        mCodecs.put(itemViewType, codec);
+    }
+
+    /**
+     * 在后台线程预先创建ViewHolder放进RecyclerView的缓存池，可以在等待网络数据时调用，
+     * 数据到达后的第一帧不用再同步inflate。还没attach到RecyclerView时会等到attach之后再开始
+     *
+     * @param itemViewType 注册的item类型，也就是layout id
+     * @param count        预先创建的数量，一般是一屏能显示的数量
+     */
+    public void preInflate(int itemViewType, int count) {
+        mPreInflater.preInflate(itemViewType, count);
+    }
+
+    /**
+     * 所有已经注册的类型都预先创建count个ViewHolder，见{@link #preInflate(int, int)}
+     */
+    public void preInflateRegistered(int countPerType) {
+        for (int i = 0; i < typeHolders.size(); i++) {
+            mPreInflater.preInflate(typeHolders.keyAt(i), countPerType);
+        }
+    }
+
+    public void cancelPreInflate() {
+        mPreInflater.cancel();
+    }
+
+    /**
+     * 和其它DiffAdapter共用一个缓存池，同一个Activity里的多个列表使用相同的holder类型时不用重复inflate
+     *
+     * @param sharedViewPool 为null时不再共享，之后attach的RecyclerView使用自己的缓存池
+     */
+    public void setSharedViewPool(@Nullable SharedViewPool sharedViewPool) {
+        this.mSharedViewPool = sharedViewPool;
+        if (sharedViewPool != null && mRecyclerView != null) {
+            mRecyclerView.setRecycledViewPool(sharedViewPool);
+        }
+    }
+
+    /**
+     * 默认开启：一次更新的操作或者行数较多、或者更新很频繁时这次更新不做item动画，偶尔的小范围修改保留动画，
+     * 见{@link AnimatorPolicy}。关闭后完全由RecyclerView的ItemAnimator决定
+     */
+    public void setAdaptiveAnimator(boolean adaptive) {
+        mAnimatorPolicy.setEnabled(adaptive);
+    }
+
+    /**
+     * 开启卡顿归因，慢帧会和这一帧里的latch、notify、bind、mediator等操作关联起来，见{@link JankMonitor#dump()}
+     *
+     * @param jankMonitor 为null时关闭
+     */
+    public void setJankMonitor(@Nullable JankMonitor jankMonitor) {
+        if (mJankMonitor != null) {
+            mJankMonitor.stop();
+            unregisterAdapterDataObserver(mJankMonitor.getDataObserver());
+        }
+        mJankMonitor = jankMonitor;
+        if (jankMonitor != null) {
+            registerAdapterDataObserver(jankMonitor.getDataObserver());
+            if (mRecyclerView != null) {
+                jankMonitor.start();
+            }
+        }
+    }
+
+    @Nullable
+    public JankMonitor getJankMonitor() {
+        return mJankMonitor;
+    }
+
+    /**
+     * 调试用，检查数据类的uniqueItemFeature、areUISame、appendPayloadKeys、appendMatchFeature是否够快、结果是否稳定，
+     * 见{@link CallbackSanitizer#dump(int)}。release包(不是debuggable)里不会生效
+     *
+     * @param sanitizer 为null时关闭
+     */
+    public void setCallbackSanitizer(@Nullable CallbackSanitizer sanitizer) {
+        if (sanitizer != null && !CallbackSanitizer.isAllowed(mContext)) {
+            Log.w(TAG, "CallbackSanitizer is ignored in a non-debuggable build");
+            return;
+        }
+        mCallbackSanitizer = sanitizer;
+    }
+
+    @Nullable
+    public CallbackSanitizer getCallbackSanitizer() {
+        return mCallbackSanitizer;
+    }
+
+    /**
+     * 录制之后所有的数据变更和mediator更新，用{@link com.silencedut.diffadapter.trace.TraceReplayer}回放
+     *
+     * @param recorder 为null时停止录制，之前的recorder需要自己close
+     */
+    public void setMutationRecorder(@Nullable MutationRecorder recorder) {
+        this.mRecorder = recorder;
+    }
+
+    /**
+     * 指定计算diff的线程池，默认使用AsyncDifferConfig的后台线程池，测试时可以传入同步执行的Executor使结果可复现
+     */
+    public void setDiffExecutor(@Nullable Executor executor) {
+        mDifferHelper.setBackgroundExecutor(executor);
+    }
+
+    /**
+     * 列表拖动或者fling时，diff结果和不可见行的更新先排队，停止滚动后再提交，可见行的更新不受影响
+     *
+     * @param maxDeferMs 滚动时最多延迟的时长，默认1000ms，小于等于0时滚动不影响提交
+     */
+    public void setMaxScrollDefer(long maxDeferMs) {
+        mDifferHelper.setMaxScrollDefer(maxDeferMs);
+    }
+
+    /**
+     * setDatas时的更新策略：小列表同步diff、追加/截断直接通知、大部分数据都换了时全量刷新，见{@link DiffStrategy}
+     */
+    public void setDiffStrategy(@NonNull DiffStrategy diffStrategy) {
+        mDifferHelper.setDiffStrategy(diffStrategy);
+    }
+
+    /**
+     * 缓存最近的diff结果，在几个列表之间来回切换时(比如筛选)同样的新旧列表不再重新diff。
+     * 按viewId和uniqueItemFeature匹配，命中后逐行检查内容，原地修改过的数据会重新diff；
+     * 使用codec编码或者文件存储的列表不缓存
+     *
+     * @param maxEntries 最多缓存的结果数，几个筛选条件来回切换时8个就够了，小于等于0时关闭
+     */
+    public void setDiffResultCacheSize(int maxEntries) {
+        mDifferHelper.setDiffResultCache(maxEntries > 0 ? new DiffResultCache(maxEntries) : null);
+    }
+
+    /**
+     * 开启分帧分发diff结果，一次diff产生大量变化时按每帧的预算分多帧notify，可见区域内的变化优先。
+     * 使用codec编码或者文件存储的列表不分帧
+     *
+     * @param budgetMs 每帧用于notify的时间预算，小于等于0时关闭
+     */
+    public void setDispatchFrameBudget(long budgetMs) {
+        mDifferHelper.setDispatchFrameBudget(budgetMs);
+    }
+
+    /**
+     * 每次{@link #setDatas(List)}或{@link #clear()}的结果真正替换到列表时回调
+     */
+    public void setListChangedCallback(@Nullable ListChangedCallback<BaseMutableData> listChangedCallback) {
+        this.mListChangedCallback = listChangedCallback;
+    }
+
+    /**
+     * @return 是否还有正在计算的diff或者在等上一次提交渲染完成的更新
+     */
+    public boolean hasPendingUpdates() {
+        return mDifferHelper.hasPendingUpdates();
+    }
+
     private @Nullable Class findNeedUpdateDataType(Object updateFunction) {
         ParameterizedType parameterizedType = (ParameterizedType) updateFunction.getClass().getGenericInterfaces()[0];
 
@@ -155,13 +509,24 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         return clsType;
     }
 
-    public <I, R extends BaseMutableData> void addUpdateMediator(LiveData<I> elementData,
+    public <I, R extends BaseMutableData> void addUpdateMediator(final LiveData<I> elementData,
                                                                  final UpdatePayloadFunction<I, R> updatePayloadFunction) {
         mUpdateMediatorLiveData.addSource(elementData, new Observer<I>() {
             @Override
             public void onChanged(@Nullable final I dataSource) {
 
                 if (dataSource != null) {
+                    if (mLifecycleSuspender.isSuspended()) {
+                        Object key = new Pair<>(elementData, updatePayloadFunction.providerMatchFeature(dataSource));
+                        mLifecycleSuspender.deferMediatorUpdate(key, new Runnable() {
+                            @Override
+                            public void run() {
+                                onChanged(dataSource);
+                            }
+                        });
+                        return;
+                    }
+                    long startNanos = mJankMonitor != null ? System.nanoTime() : 0;
 
                     Class clsType = findNeedUpdateDataType(updatePayloadFunction);
 
@@ -170,30 +535,44 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
                     }
                     Object matchFeature = updatePayloadFunction.providerMatchFeature(dataSource);
                     List<R> oldMatchedDatas = getMatchedData(matchFeature, clsType);
+                    if (mRecorder != null) {
+                        mRecorder.recordMediatorStart(matchFeature, oldMatchedDatas.size());
+                    }
 
-                    for (final R oldData : oldMatchedDatas) {
-                        if (oldData != null) {
-                            final R newData;
-                            final Set<String> keys = oldData.getPayloadKeys();
-                            newData = updatePayloadFunction.applyChange(dataSource, oldData, keys);
-                            long current = SystemClock.elapsedRealtime();
-                            if (current > mCanUpdateTimeMill || getItemCount() < UPDATE_DELAY_THRESHOLD) {
-
-                                updateData(newData, keys);
-                                mCanUpdateTimeMill = current + AsyncListUpdateDiffer.DELAY_STEP;
-                            } else {
-                                long delay = mCanUpdateTimeMill - current;
-
-                                mDiffHandler.postDelayed(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        updateData(newData, keys);
-                                    }
-                                }, delay);
-                                mCanUpdateTimeMill += AsyncListUpdateDiffer.DELAY_STEP;
-                            }
+                    // 同一个数据源命中的多行一起通知，相邻的行合并成一次范围刷新
+                    mUpdateCallback.beginBatch();
+                    try {
+                        for (final R oldData : oldMatchedDatas) {
+                            if (oldData != null) {
+                                final R newData;
+                                final Set<String> keys = oldData.getPayloadKeys();
+                                newData = updatePayloadFunction.applyChange(dataSource, oldData, keys);
+                                if (mRecorder != null) {
+                                    mRecorder.recordMediatorRow(newData, keys);
+                                }
+                                boolean updateNow = mDifferHelper.isScrolling() ? isVisible(oldData)
+                                        : getItemCount() < UPDATE_DELAY_THRESHOLD;
+                                if (updateNow) {
+
+                                    updateData(newData, keys);
+                                } else {
+
+                                    mDifferHelper.updateOldListSize(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            applyUpdate(newData, keys);
+                                        }
+                                    }, mDatas);
+                                }
 
+                            }
                         }
+                    } finally {
+                        mUpdateCallback.endBatch();
+                    }
+                    if (mJankMonitor != null) {
+                        mJankMonitor.onOperation(JankMonitor.OP_MEDIATOR, oldMatchedDatas.size(),
+                                System.nanoTime() - startNanos);
                     }
                 }
             }
@@ -201,50 +580,368 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
     }
 
 
+    /**
+     * 替换整个列表。之前调用的addData、insertData、deleteData、replaceDatas如果还排在没完成的diff后面，
+     * 会被丢弃不再执行，和按顺序执行的结果一样：新的列表需要已经包含这些修改
+     */
     public void setDatas(List<? extends BaseMutableData> datas) {
+        if (mSearchFilter != null) {
+            List<BaseMutableData> source = new ArrayList<BaseMutableData>(datas);
+            if (mSortedMode != null) {
+                mSortedMode.sort(source);
+            }
+            List<BaseMutableData> filtered = mSearchFilter.setSource(source);
+            // 搜索时录制显示的行，查询条件不录制
+            if (mRecorder != null) {
+                mRecorder.recordSetDatas(filtered);
+            }
+            mDifferHelper.submitList(filtered);
+            return;
+        }
+
+        if (mSortedMode != null) {
+            List<BaseMutableData> sorted = new ArrayList<BaseMutableData>(datas);
+            mSortedMode.sort(sorted);
+            datas = sorted;
+        }
+        // 有序模式录制排序后的列表，回放时不需要比较器
+        if (mRecorder != null) {
+            mRecorder.recordSetDatas(datas);
+        }
+        mDifferHelper.submitList(toList(datas));
+    }
+
+    /**
+     * 开启搜索，之后{@link #setDatas(List)}的数据会建立索引，用{@link SearchFilter#setQuery(CharSequence)}筛选，
+     * 不需要自己遍历数据再setDatas。不能和{@link #registerCodec(int, ItemCodec)}一起使用
+     *
+     * @param extractor 提供每条数据需要搜索的文字
+     */
+    @NonNull
+    public SearchFilter enableSearch(@NonNull SearchFilter.TextExtractor extractor) {
+        SearchFilter searchFilter = new SearchFilter(this, extractor);
+        searchFilter.setSource(mDatas);
+        mSearchFilter = searchFilter;
+        return searchFilter;
+    }
+
+    /**
+     * 查询变化或者数据更新后匹配结果变化时调用，在当前的更新完成后执行
+     */
+    void applySearchResult() {
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                syncSearchResult();
+            }
+        }, mDatas);
+    }
+
+    /**
+     * 当前列表是源列表里匹配的数据，顺序一样，一次遍历就能得出要去掉和新增的行，连续的行合并成范围通知
+     */
+    private void syncSearchResult() {
+        SearchFilter searchFilter = mSearchFilter;
+        if (searchFilter == null) {
+            return;
+        }
+        List<BaseMutableData> source = searchFilter.getSource();
+        List<BaseMutableData> shown = new ArrayList<>();
+        int position = 0;
+        int oldIndex = 0;
+        mUpdateCallback.beginBatch();
+        try {
+            for (BaseMutableData data : source) {
+                boolean wasShown = oldIndex < mDatas.size() && mDatas.get(oldIndex) == data;
+                if (wasShown) {
+                    oldIndex++;
+                }
+                if (searchFilter.isMatched(data)) {
+                    shown.add(data);
+                    if (!wasShown) {
+                        mUpdateCallback.onInserted(position, 1);
+                    }
+                    position++;
+                } else if (wasShown) {
+                    mUpdateCallback.onRemoved(position, 1);
+                }
+            }
+            // 不在源列表里的行
+            if (oldIndex < mDatas.size()) {
+                mUpdateCallback.onRemoved(position, mDatas.size() - oldIndex);
+            }
+            mDatas.clear();
+            mDatas.addAll(shown);
+        } finally {
+            mUpdateCallback.endBatch();
+        }
+        if (mRecorder != null) {
+            mRecorder.recordSearch(shown);
+        }
+    }
+
+    private List<BaseMutableData> toList(List<? extends BaseMutableData> datas) {
+        return mCodecs.size() > 0 ? new EncodedList(mCodecs, datas) : new ArrayList<BaseMutableData>(datas);
+    }
+
+    /**
+     * 聊天模式：把列表换成固定容量的环形列表，见{@link LiveChatController}
+     */
+    void useRingList(int capacity) {
+        mDifferHelper.submitList(new RingList(capacity));
+    }
+
+    /**
+     * 聊天模式一帧收到的消息：先从头部范围移除超过容量的旧消息，再在尾部范围插入
+     */
+    void appendCapped(@NonNull final List<BaseMutableData> messages, final int capacity,
+                      @Nullable final Runnable afterAppend) {
+        if (mRecorder != null) {
+            mRecorder.recordAppendCapped(capacity, messages);
+        }
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                int incoming = Math.min(messages.size(), capacity);
+                int evict = Math.max(0, mDatas.size() + incoming - capacity);
+                if (evict > 0) {
+                    mDatas.subList(0, evict).clear();
+                    mUpdateCallback.onRemoved(0, evict);
+                }
+                int insertStart = mDatas.size();
+                mDatas.addAll(messages.subList(messages.size() - incoming, messages.size()));
+                mUpdateCallback.onInserted(insertStart, incoming);
+                if (afterAppend != null) {
+                    afterAppend.run();
+                }
+            }
+        }, mDatas);
+    }
+
+    /**
+     * 使用viewId和uniqueItemFeature生成的stable id，notifyDataSetChanged这样的全量刷新时RecyclerView按id复用View，
+     * 同一条数据UI没有变化({@link BaseMutableData#areUISame})的行不会重新绑定。
+     * 只有全量刷新时跳过，updateData这样明确通知修改的行总是会绑定。
+     * 需要在setAdapter之前调用
+     */
+    public void setUseStableIds(boolean useStableIds) {
+        mStableIds = useStableIds ? new StableIdTable() : null;
+        setHasStableIds(useStableIds);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        StableIdTable stableIds = mStableIds;
+        if (stableIds == null) {
+            return RecyclerView.NO_ID;
+        }
+        BaseMutableData data = mDatas.get(position);
+        return data != null ? stableIds.idOf(data) : RecyclerView.NO_ID;
+    }
+
+    /**
+     * 开启有序列表模式，之后{@link #setDatas(List)}的数据会先排序，用{@link #addSortedData(BaseMutableData)}、
+     * {@link #addSortedDatas(List)}增加或者更新数据，不需要自己排序再setDatas
+     *
+     * @param comparator 为null时关闭
+     */
+    public void setSortedComparator(@Nullable Comparator<? super BaseMutableData> comparator) {
+        mSortedMode = comparator != null ? new SortedMode(comparator) : null;
+    }
+
+    /**
+     * 有序列表模式下插入一条数据，已经存在时替换，排序位置变化时只产生一次move和change
+     */
+    public void addSortedData(final BaseMutableData data) {
+        if (data == null) {
+            return;
+        }
+        final SortedMode sortedMode = mSortedMode;
+        if (sortedMode == null) {
+            throw new IllegalStateException("call setSortedComparator first");
+        }
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                if (mSearchFilter != null) {
+                    upsertSearchSource(sortedMode, data, Collections.<String>emptySet());
+                } else {
+                    sortedMode.upsert(mDatas, data, mUpdateCallback);
+                }
+                if (mRecorder != null) {
+                    recordSorted(Collections.singletonList(data));
+                }
+            }
+        }, mDatas);
+    }
 
-        List<BaseMutableData> newList = new ArrayList<>(datas);
-        mDifferHelper.submitList(newList);
+    /**
+     * 有序列表模式下批量插入或者更新，和当前列表归并，不做diff
+     */
+    public void addSortedDatas(final List<? extends BaseMutableData> datas) {
+        if (datas == null || datas.isEmpty()) {
+            return;
+        }
+        final SortedMode sortedMode = mSortedMode;
+        if (sortedMode == null) {
+            throw new IllegalStateException("call setSortedComparator first");
+        }
+        final List<BaseMutableData> copy = new ArrayList<BaseMutableData>(datas);
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                if (mSearchFilter != null) {
+                    mUpdateCallback.beginBatch();
+                    try {
+                        for (BaseMutableData data : copy) {
+                            if (data != null) {
+                                upsertSearchSource(sortedMode, data, Collections.<String>emptySet());
+                            }
+                        }
+                    } finally {
+                        mUpdateCallback.endBatch();
+                    }
+                } else {
+                    sortedMode.upsertAll(mDatas, copy, mUpdateCallback);
+                }
+                if (mRecorder != null) {
+                    recordSorted(copy);
+                }
+            }
+        }, mDatas);
+    }
+
+    /**
+     * 开启搜索时先在源列表里插入或者替换并更新索引，显示的列表是源列表里匹配的部分，同样有序，
+     * 匹配时在显示的列表里插入或者替换，不再匹配时去掉原来显示的行
+     */
+    private void upsertSearchSource(SortedMode sortedMode, BaseMutableData data, Set<String> payloadKeys) {
+        SearchFilter searchFilter = mSearchFilter;
+        BaseMutableData oldData = sortedMode.upsert(searchFilter.getSource(), data, SOURCE_UPDATE_CALLBACK);
+        boolean wasShown = oldData != null && searchFilter.isMatched(oldData);
+        searchFilter.onSortedUpsert(oldData, data);
+        int oldPosition = wasShown ? sortedMode.positionOf(mDatas, oldData) : -1;
+        if (searchFilter.isMatched(data)) {
+            sortedMode.upsert(mDatas, data, oldPosition >= 0 ? oldData : null, payloadKeys, mUpdateCallback);
+        } else if (oldPosition >= 0) {
+            mDatas.remove(oldPosition);
+            mUpdateCallback.onRemoved(oldPosition, 1);
+        }
+    }
+
+    /**
+     * 有序插入的位置由比较器决定，录制执行后每条数据的位置，回放时不需要比较器
+     */
+    private void recordSorted(List<BaseMutableData> datas) {
+        Set<BaseMutableData> incoming = Collections.newSetFromMap(new IdentityHashMap<BaseMutableData, Boolean>());
+        incoming.addAll(datas);
+        List<BaseMutableData> rows = new ArrayList<>(incoming.size());
+        int[] positions = new int[incoming.size()];
+        for (int i = 0; i < mDatas.size() && rows.size() < incoming.size(); i++) {
+            if (incoming.contains(mDatas.get(i))) {
+                positions[rows.size()] = i;
+                rows.add(mDatas.get(i));
+            }
+        }
+        mRecorder.recordSortedAdd(rows, Arrays.copyOf(positions, rows.size()));
+    }
+
+    /**
+     * 开启列表快照：每次提交之后在后台把列表保存到file，下次打开页面时调用会立即恢复上次的列表，
+     * 不用等数据加载完才显示，之后{@link #setDatas(List)}的新数据和恢复的列表做diff。
+     * 只保存用{@link #registerCodec(int, ItemCodec)}注册了codec的行，需要在registerCodec之后、第一次setDatas之前调用
+     */
+    public void enableSnapshot(@NonNull File file) {
+        enableSnapshot(file, ListSnapshot.DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * @param maxRows 只保存前maxRows行，恢复首屏不需要整个列表
+     */
+    public void enableSnapshot(@NonNull File file, int maxRows) {
+        if (mSnapshot != null) {
+            mSnapshot.flush();
+        }
+        mSnapshot = new ListSnapshot(file, mCodecs, maxRows);
+        if (getItemCount() == 0 && !mDifferHelper.hasPendingUpdates()) {
+            List<BaseMutableData> restored = mSnapshot.restore();
+            if (restored != null && !restored.isEmpty()) {
+                mDifferHelper.submitList(toList(restored));
+            }
+        }
     }
 
     public void clear() {
+        if (mRecorder != null) {
+            mRecorder.recordClear();
+        }
 
         mDifferHelper.submitList(null);
 
     }
 
+    /**
+     * 后台diff还没完成时排在diff之后执行，之后的{@link #setDatas(List)}会丢弃还没执行的修改。
+     * 有序列表模式下同{@link #addSortedData(BaseMutableData)}
+     */
     public <T extends BaseMutableData> void addData(final T data) {
         if (data == null) {
             return;
         }
+        if (mSortedMode != null) {
+            addSortedData(data);
+            return;
+        }
+        checkNotSearching("addData");
+        if (mRecorder != null) {
+            mRecorder.recordAdd(Collections.singletonList(data));
+        }
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
             public void run() {
                 mDatas.add(data);
-                notifyItemChanged(mDatas.size() - 1);
+                mUpdateCallback.onInserted(mDatas.size() - 1, 1);
 
             }
         }, mDatas);
     }
 
+    /**
+     * 执行时机同{@link #addData(BaseMutableData)}，有序列表模式下同{@link #addSortedDatas(List)}
+     */
     public <T extends BaseMutableData> void addDatas(final List<T> datas) {
         if (datas == null) {
             return;
         }
+        if (mSortedMode != null) {
+            addSortedDatas(datas);
+            return;
+        }
+        checkNotSearching("addDatas");
+        if (mRecorder != null) {
+            mRecorder.recordAdd(datas);
+        }
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
             public void run() {
                 mDatas.addAll(datas);
-                notifyItemChanged(mDatas.size() - datas.size());
+                mUpdateCallback.onInserted(mDatas.size() - datas.size(), datas.size());
             }
         }, mDatas);
 
     }
 
+    /**
+     * 执行时机同{@link #addData(BaseMutableData)}
+     */
     public void deleteData(final Object uniqueItemFeature) {
         if (uniqueItemFeature == null) {
             return;
         }
+        checkNotSearching("deleteData");
+        if (mRecorder != null) {
+            mRecorder.recordDelete(uniqueItemFeature);
+        }
 
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
@@ -257,18 +954,25 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
 
                     if (uniqueItemFeature.equals(iterator.next().uniqueItemFeature())) {
                         iterator.remove();
+                        mUpdateCallback.onRemoved(position, 1);
                         break;
                     }
                 }
-                notifyItemRemoved(position);
             }
         }, mDatas);
     }
 
+    /**
+     * 执行时机同{@link #addData(BaseMutableData)}
+     */
     public void deleteData(final BaseMutableData data) {
         if (data == null) {
             return;
         }
+        checkNotSearching("deleteData");
+        if (mRecorder != null) {
+            mRecorder.recordDelete(data.uniqueItemFeature());
+        }
 
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
@@ -281,22 +985,32 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
 
                     if (data.uniqueItemFeature().equals(iterator.next().uniqueItemFeature())) {
                         iterator.remove();
+                        mUpdateCallback.onRemoved(position, 1);
                         break;
                     }
                 }
-                notifyItemRemoved(position);
             }
         }, mDatas);
     }
 
+    /**
+     * 执行时机同{@link #addData(BaseMutableData)}
+     */
     public void deleteData(final int startPosition, final int size) {
-        if (startPosition + size >= mDatas.size()) {
+        checkNotSearching("deleteData");
+        if (mRecorder != null) {
+            mRecorder.recordDeleteRange(startPosition, size);
+        }
+        if (startPosition < 0 || size <= 0) {
             return;
         }
 
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
             public void run() {
+                if (startPosition >= mDatas.size()) {
+                    return;
+                }
                 Iterator<BaseMutableData> iterator = mDatas.iterator();
                 int deleteSize = 0;
                 int startIndex = 0;
@@ -310,71 +1024,350 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
                     deleteSize++;
                 }
 
-                notifyItemRangeRemoved(startPosition, deleteSize);
+                mUpdateCallback.onRemoved(startPosition, deleteSize);
             }
         }, mDatas);
 
     }
 
+    /**
+     * 执行时机同{@link #addData(BaseMutableData)}，有序列表模式下位置由比较器决定，不能调用
+     */
     public void insertData(final int startPosition, final List<? extends BaseMutableData> datas) {
         if (datas == null || datas.isEmpty()) {
             return;
         }
+        if (mSortedMode != null) {
+            throw new IllegalStateException("insertData is not supported in sorted mode, use addSortedDatas");
+        }
+        checkNotSearching("insertData");
+        if (mRecorder != null) {
+            mRecorder.recordInsert(startPosition, datas);
+        }
 
         mDifferHelper.updateOldListSize(new Runnable() {
             @Override
             public void run() {
-                if (startPosition > datas.size()) {
-                    mDatas.addAll(datas);
-                } else {
-                    mDatas.addAll(startPosition, datas);
-                }
+                int insertPosition = Math.min(startPosition, mDatas.size());
+                mDatas.addAll(insertPosition, datas);
 
-                notifyItemRangeInserted(startPosition, datas.size());
+                mUpdateCallback.onInserted(insertPosition, datas.size());
             }
         }, mDatas);
 
     }
 
-    private void updateData(BaseMutableData newData, @NonNull Set<String> payloadKeys) {
+    /**
+     * 使用文件存储的数据作为列表，只有显示的行才会解码成对象，适合百万行级别的列表。
+     * 之后的增加和修改通过store进行，不能再调用addData、deleteData等直接修改列表的方法；
+     * 替换成另一个store时只根据索引做diff
+     *
+     * @param store 为null时清空列表
+     */
+    public void setItemStore(@Nullable MappedItemStore<? extends BaseMutableData> store) {
+        if (store == null) {
+            setDatas(Collections.<BaseMutableData>emptyList());
+            return;
+        }
+        mDifferHelper.submitList(new StoreBackedList(store, StoreBackedList.DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * 把[startPosition, startPosition + removeCount)这一段替换成datas，只对这一段做diff，
+     * 用于分页加载时替换一页的数据，范围较大时用{@link #setDatas(List)}。执行时机同{@link #addData(BaseMutableData)}
+     */
+    public void replaceDatas(int startPosition, int removeCount, @NonNull List<? extends BaseMutableData> datas) {
+        checkNotSearching("replaceDatas");
+        if (mRecorder != null) {
+            mRecorder.recordDeleteRange(startPosition, removeCount);
+            mRecorder.recordInsert(startPosition, datas);
+        }
+        mDifferHelper.replaceRange(startPosition, removeCount, new ArrayList<BaseMutableData>(datas));
+    }
+
+    /**
+     * 开启搜索时显示的是源列表里匹配的部分，直接修改显示的列表会和源列表、索引不一致：
+     * 删除的行在查询变化后又出现，增加的行消失。这时只能通过setDatas、updateData修改，
+     * 有序列表模式下也可以用addSortedData
+     */
+    private void checkNotSearching(String method) {
+        if (mSearchFilter != null) {
+            throw new IllegalStateException(method + " is not allowed while search is enabled, use setDatas or updateData");
+        }
+    }
+
+    /**
+     * 之前的addData、deleteData等还在排队时排在它们后面，否则立即更新，
+     * 比如滚动时可见的行不用等滚动停止
+     */
+    private void updateData(final BaseMutableData newData, @NonNull final Set<String> payloadKeys) {
         if (newData == null) {
             return;
         }
-        Iterator<BaseMutableData> iterator = mDatas.iterator();
-        int foundIndex = -1;
+        if (!mDifferHelper.hasQueuedMutations()) {
+            applyUpdate(newData, payloadKeys);
+            return;
+        }
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                applyUpdate(newData, payloadKeys);
+            }
+        }, mDatas);
+    }
 
-        while (iterator.hasNext()) {
-            BaseMutableData data = iterator.next();
-            foundIndex++;
+    private void applyUpdate(BaseMutableData newData, @NonNull Set<String> payloadKeys) {
+        mDifferHelper.flushPendingDispatch();
+        if (mSortedMode != null) {
+            applySortedUpdate(mSortedMode, newData, payloadKeys);
+            return;
+        }
+        // 开启搜索时隐藏的行也要更新，更新后可能不再匹配或者变成匹配
+        BaseMutableData replaced = mSearchFilter != null ? mSearchFilter.onDataUpdated(newData) : null;
+        boolean shown = false;
+        int foundIndex = indexOfData(newData, 0);
+
+        while (foundIndex >= 0) {
+            BaseMutableData data = peekData(mDatas, foundIndex);
+            mDatas.set(foundIndex, newData);
+            shown = true;
+
+            // payloadKeys是newData自己的集合，bind之后会被清空，每行发出去的是副本
+            Set<String> rowPayloadKeys = new HashSet<>(payloadKeys);
+            rowPayloadKeys.addAll(data.getPayloadKeys(newData));
+            if (rowPayloadKeys.isEmpty()) {
+                mUpdateCallback.onChanged(foundIndex, 1, null);
+            } else {
+                Log.d(TAG, "notifyItemChanged :" + foundIndex + ",payloadKeys:" + rowPayloadKeys);
+                mUpdateCallback.onChanged(foundIndex, 1, rowPayloadKeys);
+            }
+            foundIndex = indexOfData(newData, foundIndex + 1);
+        }
+        if (replaced != null && shown != mSearchFilter.isMatched(newData)) {
+            applySearchResult();
+        }
+    }
 
-            if (data.getItemViewId() == newData.getItemViewId()
-                    && newData.uniqueItemFeature().equals(data.uniqueItemFeature())) {
+    /**
+     * 有序列表模式下排序值可能变了，通过SortedMode二分查找替换，位置变化时只产生一次move和change。
+     * 和普通的更新一样，列表里没有的数据不插入
+     */
+    private void applySortedUpdate(SortedMode sortedMode, BaseMutableData newData, Set<String> payloadKeys) {
+        if (mSearchFilter != null) {
+            if (sortedMode.find(mSearchFilter.getSource(), newData) != null) {
+                upsertSearchSource(sortedMode, newData, payloadKeys);
+            }
+            return;
+        }
+        BaseMutableData oldData = sortedMode.find(mDatas, newData);
+        if (oldData != null) {
+            sortedMode.upsert(mDatas, newData, oldData, payloadKeys, mUpdateCallback);
+        }
+    }
 
-                mDatas.set(foundIndex, newData);
+    /**
+     * 从fromIndex开始查找和data是同一条数据(viewId和uniqueItemFeature相同)的行，
+     * 编码和文件存储的列表按保存的key哈希查找，不用解码每一行
+     *
+     * @return 没有找到时返回-1
+     */
+    private int indexOfData(BaseMutableData data, int fromIndex) {
+        List<BaseMutableData> datas = mDatas;
+        Object feature = data.uniqueItemFeature();
+        if (datas instanceof EncodedList) {
+            return ((EncodedList) datas).indexOfItem(data.getItemViewId(), feature, fromIndex);
+        }
+        if (datas instanceof StoreBackedList) {
+            return ((StoreBackedList) datas).indexOfItem(data.getItemViewId(), feature, fromIndex);
+        }
+        for (int i = fromIndex; i < datas.size(); i++) {
+            BaseMutableData item = datas.get(i);
+            if (item != null && item.getItemViewId() == data.getItemViewId() && feature.equals(item.uniqueItemFeature())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 读取一行但不放进解码缓存，遍历查找时用
+     */
+    private static BaseMutableData peekData(List<BaseMutableData> datas, int position) {
+        if (datas instanceof EncodedList) {
+            return ((EncodedList) datas).peek(position);
+        }
+        if (datas instanceof StoreBackedList) {
+            return ((StoreBackedList) datas).peek(position);
+        }
+        return datas.get(position);
+    }
 
-                if (mDatas.size() > foundIndex) {
-                    Set<String> dataPayloadKeys = data.getPayloadKeys(newData);
+    /**
+     * 可以在任意线程调用的修改入口，默认容量{@link UpdateInbox#DEFAULT_CAPACITY}，队列满时等待
+     */
+    @NonNull
+    public UpdateInbox getUpdateInbox() {
+        if (mUpdateInbox == null) {
+            mUpdateInbox = new UpdateInbox(this, UpdateInbox.DEFAULT_CAPACITY, UpdateInbox.OVERFLOW_BLOCK);
+        }
+        return mUpdateInbox;
+    }
+
+    /**
+     * 主线程调用，需要在其它线程开始使用{@link #getUpdateInbox()}之前设置
+     *
+     * @param overflowPolicy {@link UpdateInbox#OVERFLOW_BLOCK}、{@link UpdateInbox#OVERFLOW_DROP_OLDEST}
+     *                       或{@link UpdateInbox#OVERFLOW_COALESCE}
+     */
+    public void setUpdateInbox(int capacity, int overflowPolicy) {
+        if (mUpdateInbox != null) {
+            mUpdateInbox.drain();
+        }
+        mUpdateInbox = new UpdateInbox(this, capacity, overflowPolicy);
+    }
 
-                    payloadKeys.addAll(dataPayloadKeys);
-                    if (payloadKeys.isEmpty()) {
-                        notifyItemChanged(foundIndex);
-                    } else {
-                        Log.d(TAG, "notifyItemChanged :" + foundIndex + ",payloadKeys:" + payloadKeys);
-                        notifyItemChanged(foundIndex, payloadKeys);
+    /**
+     * {@link UpdateInbox}一帧收到的修改，在一次列表修改里按顺序执行，连续的add合并成一次范围插入
+     */
+    void applyInboxOps(@NonNull final List<UpdateInbox.Op> ops) {
+        final SortedMode sortedMode = mSortedMode;
+        if (mSearchFilter != null) {
+            for (UpdateInbox.Op op : ops) {
+                if (op.type == UpdateInbox.OP_DELETE || op.type != UpdateInbox.OP_UPDATE && sortedMode == null) {
+                    checkNotSearching("UpdateInbox");
+                }
+            }
+        }
+        if (sortedMode != null) {
+            applySortedInboxOps(sortedMode, ops);
+            return;
+        }
+        if (mRecorder != null) {
+            for (UpdateInbox.Op op : ops) {
+                recordInboxOp(mRecorder, op);
+            }
+        }
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                int addStart = -1;
+                for (UpdateInbox.Op op : ops) {
+                    if (op.type == UpdateInbox.OP_ADD) {
+                        if (addStart < 0) {
+                            addStart = mDatas.size();
+                        }
+                        mDatas.add(op.data);
+                        continue;
                     }
+                    if (addStart >= 0) {
+                        mUpdateCallback.onInserted(addStart, mDatas.size() - addStart);
+                        addStart = -1;
+                    }
+                    if (op.type == UpdateInbox.OP_INSERT) {
+                        int insertPosition = Math.max(0, Math.min(op.position, mDatas.size()));
+                        mDatas.add(insertPosition, op.data);
+                        mUpdateCallback.onInserted(insertPosition, 1);
+                    } else if (op.type == UpdateInbox.OP_UPDATE) {
+                        applyUpdate(op.data, op.data.getPayloadKeys());
+                    } else if (op.type == UpdateInbox.OP_DELETE) {
+                        for (int i = 0; i < mDatas.size(); i++) {
+                            if (op.key.equals(mDatas.get(i).uniqueItemFeature())) {
+                                mDatas.remove(i);
+                                mUpdateCallback.onRemoved(i, 1);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (addStart >= 0) {
+                    mUpdateCallback.onInserted(addStart, mDatas.size() - addStart);
                 }
             }
+        }, mDatas);
+    }
+
+    /**
+     * 有序列表模式下add和insert的位置由比较器决定，和{@link #addSortedData(BaseMutableData)}一样插入或者替换，
+     * 录制执行后的位置
+     */
+    private void applySortedInboxOps(final SortedMode sortedMode, @NonNull final List<UpdateInbox.Op> ops) {
+        mDifferHelper.updateOldListSize(new Runnable() {
+            @Override
+            public void run() {
+                mUpdateCallback.beginBatch();
+                try {
+                    for (UpdateInbox.Op op : ops) {
+                        applySortedInboxOp(sortedMode, op);
+                    }
+                } finally {
+                    mUpdateCallback.endBatch();
+                }
+            }
+        }, mDatas);
+    }
+
+    private void applySortedInboxOp(SortedMode sortedMode, UpdateInbox.Op op) {
+        if (op.type == UpdateInbox.OP_ADD || op.type == UpdateInbox.OP_INSERT) {
+            if (mSearchFilter != null) {
+                upsertSearchSource(sortedMode, op.data, Collections.<String>emptySet());
+            } else {
+                sortedMode.upsert(mDatas, op.data, mUpdateCallback);
+            }
+            if (mRecorder != null) {
+                recordSorted(Collections.singletonList(op.data));
+            }
+            return;
+        }
+        if (mRecorder != null) {
+            recordInboxOp(mRecorder, op);
+        }
+        if (op.type == UpdateInbox.OP_UPDATE) {
+            applyUpdate(op.data, op.data.getPayloadKeys());
+            return;
+        }
+        for (int i = 0; i < mDatas.size(); i++) {
+            BaseMutableData data = mDatas.get(i);
+            if (op.key.equals(data.uniqueItemFeature())) {
+                mDatas.remove(i);
+                sortedMode.onRemoved(mDatas, data);
+                mUpdateCallback.onRemoved(i, 1);
+                break;
+            }
+        }
+    }
+
+    private static void recordInboxOp(MutationRecorder recorder, UpdateInbox.Op op) {
+        switch (op.type) {
+            case UpdateInbox.OP_ADD:
+                recorder.recordAdd(Collections.singletonList(op.data));
+                break;
+            case UpdateInbox.OP_INSERT:
+                recorder.recordInsert(op.position, Collections.singletonList(op.data));
+                break;
+            case UpdateInbox.OP_UPDATE:
+                recorder.recordUpdate(op.data, op.data.getPayloadKeys());
+                break;
+            default:
+                recorder.recordDelete(op.key);
+                break;
         }
     }
 
     public void updateData(BaseMutableData newData) {
+        if (mRecorder != null) {
+            mRecorder.recordUpdate(newData, newData.getPayloadKeys());
+        }
         updateData(newData, newData.getPayloadKeys());
     }
 
     @NonNull
     @Override
     public BaseDiffViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View itemView = mInflater.inflate(viewType, parent, false);
+        long startNanos = mJankMonitor != null ? System.nanoTime() : 0;
+        View itemView = mPreInflater.takeInflatedView(viewType);
+        if (itemView == null) {
+            itemView = mInflater.inflate(viewType, parent, false);
+        }
         BaseDiffViewHolder viewHolder = new NoDataDifferHolder(itemView, this);
         try {
             Class<?> cls = typeHolders.get(viewType);
@@ -386,19 +1379,31 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         } catch (Exception e) {
             Log.e(TAG, e.getCause() + "");
         }
+        if (mJankMonitor != null) {
+            mJankMonitor.onOperation(JankMonitor.OP_CREATE, 1, System.nanoTime() - startNanos);
+        }
+        if (mSharedViewPool != null) {
+            mSharedViewPool.onHolderCreated(viewType);
+        }
         return viewHolder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull BaseDiffViewHolder baseDiffViewHolder, int position) {
-
+        baseDiffViewHolder.attachAdapter(this);
         try {
-            baseDiffViewHolder.update(mDatas.get(position), position);
+            // 只有全量刷新时的重新绑定可以跳过，明确通知修改的行(比如原地修改了数据)总是绑定
+            if (mStableIds != null && mUpdateCallback.isFullRefreshBinding()) {
+                baseDiffViewHolder.updateIfUIChanged(mDatas.get(position), position);
+            } else {
+                baseDiffViewHolder.update(mDatas.get(position), position);
+            }
         } catch (Exception e) {
             Log.e(TAG, "onBindViewHolder updatePartWithPayload error", e);
         }
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public void onBindViewHolder(@NonNull BaseDiffViewHolder holder, int position, @NonNull List<Object> payloads) {
         Log.d(TAG, "onBindViewHolder updatePartWithPayload position" + position + ",,payloads" + payloads);
@@ -409,41 +1414,67 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         if (getItemViewType(position) != holder.getItemViewId()) {
             return;
         }
+        holder.attachAdapter(this);
+        long startNanos = mJankMonitor != null ? System.nanoTime() : 0;
+        boolean partBind = false;
         Set<String> payloadKeys = null;
         if (payloads.isEmpty()) {
             this.onBindViewHolder(holder, position);
         } else {
             try {
+                // payload可能同时发给了别的行，合并到新的集合里，不修改payload本身
                 for (Object payload : payloads) {
-                    if (payload instanceof HashSet) {
+                    if (payload instanceof Set) {
                         if (payloadKeys == null) {
-                            payloadKeys = (HashSet) payload;
-                        } else {
-                            payloadKeys.addAll((HashSet) payload);
+                            payloadKeys = new HashSet<>();
                         }
+                        payloadKeys.addAll((Set<String>) payload);
                     }
                 }
                 if (payloadKeys ==null ||  payloadKeys.isEmpty()) {
                     this.onBindViewHolder(holder, position);
                 } else {
-                    holder.updatePartWithPayload(mDatas.get(position), payloadKeys, position);
+                    partBind = true;
+                    holder.updatePart(mDatas.get(position), payloadKeys, position);
                 }
 
             } catch (Exception e) {
                 Log.e(TAG, "onBindViewHolder updatePartWithPayload payload error", e);
             }
         }
-        if (payloadKeys != null) {
-            payloadKeys.clear();
-        }
         mDatas.get(position).getPayloadKeys().clear();
+        if (mJankMonitor != null) {
+            mJankMonitor.onBind(holder.getItemViewId(), partBind, System.nanoTime() - startNanos);
+        }
     }
 
+    /**
+     * 编码和文件存储的列表按行读取，缓存外的行解码后不放进缓存；
+     * 某个viewId解码出的数据不是cls时，同一个viewId的其它行不再解码
+     */
     public <T extends BaseMutableData> List<T> getMatchedData(Object matchChangeFeature, Class cls) {
         List<T> matchedMutableData = new ArrayList<>();
-        for (BaseMutableData baseMutableData : mDatas) {
-            if (baseMutableData != null && baseMutableData.matchChangeFeatures().contains(matchChangeFeature) &&
-                    cls.isInstance(baseMutableData)) {
+        CallbackSanitizer sanitizer = mCallbackSanitizer;
+        List<BaseMutableData> datas = mSearchFilter != null ? mSearchFilter.getSource() : mDatas;
+        boolean indexed = datas instanceof EncodedList || datas instanceof StoreBackedList;
+        SparseBooleanArray otherTypes = indexed ? new SparseBooleanArray() : null;
+        for (int i = 0; i < datas.size(); i++) {
+            if (indexed && otherTypes.get(getItemViewId(datas, i))) {
+                continue;
+            }
+            BaseMutableData baseMutableData = indexed ? peekData(datas, i) : datas.get(i);
+            if (baseMutableData == null) {
+                continue;
+            }
+            if (!cls.isInstance(baseMutableData)) {
+                if (indexed) {
+                    otherTypes.put(baseMutableData.getItemViewId(), true);
+                }
+                continue;
+            }
+            Set<Object> features = sanitizer != null ? sanitizer.matchFeatures(baseMutableData)
+                    : baseMutableData.matchChangeFeatures();
+            if (features.contains(matchChangeFeature)) {
                 matchedMutableData.add((T) baseMutableData);
             }
         }
@@ -461,11 +1492,101 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
         return classLists;
     }
 
+    /**
+     * 和data是同一条数据的行当前是否可见
+     */
+    private boolean isVisible(BaseMutableData data) {
+        if (!findVisibleRange(mVisibleRange)) {
+            return false;
+        }
+        int last = Math.min(mVisibleRange[1], mDatas.size() - 1);
+        for (int i = mVisibleRange[0]; i <= last; i++) {
+            BaseMutableData item = mDatas.get(i);
+            if (item == data || item.getItemViewId() == data.getItemViewId()
+                    && item.uniqueItemFeature().equals(data.uniqueItemFeature())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param out 可见区域的第一个和最后一个位置
+     * @return 没有attach到RecyclerView或者没有可见条目时返回false
+     */
+    boolean findVisibleRange(int[] out) {
+        RecyclerView recyclerView = mRecyclerView;
+        if (recyclerView == null || recyclerView.getChildCount() == 0) {
+            return false;
+        }
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            int position = recyclerView.getChildLayoutPosition(recyclerView.getChildAt(i));
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            first = Math.min(first, position);
+            last = Math.max(last, position);
+        }
+        if (last < 0) {
+            return false;
+        }
+        out[0] = first;
+        out[1] = last;
+        return true;
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull BaseDiffViewHolder holder) {
+        super.onViewAttachedToWindow(holder);
+        if (mSharedViewPool != null) {
+            mSharedViewPool.onHolderAttached(holder.getItemViewType());
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull BaseDiffViewHolder holder) {
+        super.onViewDetachedFromWindow(holder);
+        if (mSharedViewPool != null) {
+            mSharedViewPool.onHolderDetached(holder.getItemViewType());
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(mScrollListener);
+        mDifferHelper.onScrollStateChanged(recyclerView.getScrollState());
+        if (mSharedViewPool != null) {
+            recyclerView.setRecycledViewPool(mSharedViewPool);
+        }
+        mPreInflater.onAttached(recyclerView);
+        mAnimatorPolicy.attach(recyclerView);
+        if (mJankMonitor != null) {
+            mJankMonitor.start();
+        }
+    }
+
     @Override
     public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
         super.onDetachedFromRecyclerView(recyclerView);
         Log.d(TAG, " onDetachedFromRecyclerView ");
-        mDiffHandler.removeCallbacksAndMessages(null);
+        // 不能清空mDiffHandler的消息，后台diff完成后post的latch被去掉的话这一次提交永远不会完成；
+        // 其它post到mDiffHandler的任务由各自的onDetached、cancel处理
+        mDifferHelper.flushPendingDispatch();
+        recyclerView.removeOnScrollListener(mScrollListener);
+        mRecyclerView = null;
+        mDifferHelper.onDetached();
+        mPreInflater.cancel();
+        mAnimatorPolicy.detach();
+        if (mSnapshot != null) {
+            mSnapshot.flush();
+        }
+        if (mJankMonitor != null) {
+            mJankMonitor.stop();
+        }
     }
 
 
@@ -484,9 +1605,19 @@ public class DiffAdapter extends RecyclerView.Adapter<BaseDiffViewHolder> {
 
     @Override
     public int getItemViewType(int position) {
+        return getItemViewId(mDatas, position);
+    }
+
+    private static int getItemViewId(List<BaseMutableData> datas, int position) {
+        if (datas instanceof EncodedList) {
+            return ((EncodedList) datas).getItemViewId(position);
+        }
+        if (datas instanceof StoreBackedList) {
+            return ((StoreBackedList) datas).getItemViewId(position);
+        }
 
-        if (mDatas.get(position) != null) {
-            return mDatas.get(position).getItemViewId();
+        if (datas.get(position) != null) {
+            return datas.get(position).getItemViewId();
         }
 
         return 0;
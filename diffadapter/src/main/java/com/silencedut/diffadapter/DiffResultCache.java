@@ -0,0 +1,259 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.util.LruCache;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在几个列表之间来回切换(比如全部/在线/收藏的筛选)时，同样的新旧列表不用重新diff
+ *
+ * key是新旧列表按顺序的(数据类, viewId, uniqueItemFeature)，和diff判断同一条数据的方式一样，
+ * 所以命中时插入、删除、移动和重新diff的结果相同。内容可能被mediator原地修改，
+ * 命中后按缓存的对应关系逐行重新比较内容，变化的行和缓存时不一样就当作没有命中
+ *
+ * DiffResult分发时会通过diff时的callback读取列表，命中后把callback换成当前的新旧列表，
+ * 分发完或者被丢弃后调用{@link #release(DiffUtil.DiffResult, DiffUtil.Callback)}换成空的callback，
+ * 缓存里只有DiffResult和key，不会一直引用diff时的列表
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class DiffResultCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 8;
+
+    private static final DiffUtil.Callback EMPTY = new DiffUtil.Callback() {
+        @Override
+        public int getOldListSize() {
+            return 0;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return 0;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return false;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return false;
+        }
+    };
+
+    private final LruCache<Key, Entry> mEntries;
+
+    DiffResultCache(int maxEntries) {
+        mEntries = new LruCache<>(Math.max(1, maxEntries));
+    }
+
+    @NonNull
+    static Keys keysOf(@NonNull List<? extends BaseMutableData> list) {
+        int size = list.size();
+        Object[] items = new Object[size * 3];
+        for (int i = 0; i < size; i++) {
+            BaseMutableData data = list.get(i);
+            if (data != null) {
+                items[i * 3] = data.getClass();
+                items[i * 3 + 1] = data.getItemViewId();
+                items[i * 3 + 2] = data.uniqueItemFeature();
+            }
+        }
+        return new Keys(items);
+    }
+
+    /**
+     * diff时用这个callback，命中后才能换成当前的列表
+     */
+    @NonNull
+    static RebindableCallback rebindable(@NonNull DiffUtil.Callback callback) {
+        return new RebindableCallback(callback);
+    }
+
+    /**
+     * @param callback 当前新旧列表的callback，命中时缓存的DiffResult改为读取它
+     */
+    @Nullable
+    DiffUtil.DiffResult get(@NonNull Keys oldKeys, @NonNull Keys newKeys, @NonNull DiffUtil.Callback callback) {
+        Key key = new Key(oldKeys, newKeys);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.changed.equals(changedRows(entry.diffResult, callback, oldKeys.size()))) {
+            mEntries.remove(key);
+            return null;
+        }
+        entry.callback.rebind(callback);
+        return entry.diffResult;
+    }
+
+    /**
+     * @param callback diff时用的{@link #rebindable(DiffUtil.Callback)}
+     */
+    void put(@NonNull Keys oldKeys, @NonNull Keys newKeys, @NonNull RebindableCallback callback,
+             @NonNull DiffUtil.DiffResult diffResult) {
+        mEntries.put(new Key(oldKeys, newKeys),
+                new Entry(callback, diffResult, changedRows(diffResult, callback, oldKeys.size())));
+    }
+
+    /**
+     * 主线程调用，diffResult分发完或者不再分发时解除和callback的列表的绑定。
+     * 之后又命中的话callback已经换成新的列表，不会被解除
+     *
+     * @param callback get或者put时diffResult读取的callback
+     */
+    void release(@NonNull DiffUtil.DiffResult diffResult, @NonNull DiffUtil.Callback callback) {
+        for (Entry entry : mEntries.snapshot().values()) {
+            if (entry.diffResult == diffResult) {
+                entry.callback.unbind(callback);
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        mEntries.evictAll();
+    }
+
+    /**
+     * 旧列表里还在新列表中、但内容变了的行
+     */
+    private static BitSet changedRows(DiffUtil.DiffResult diffResult, DiffUtil.Callback callback, int oldSize) {
+        BitSet changed = new BitSet(oldSize);
+        for (int i = 0; i < oldSize; i++) {
+            int newPosition = diffResult.convertOldPositionToNew(i);
+            if (newPosition != DiffUtil.DiffResult.NO_POSITION && !callback.areContentsTheSame(i, newPosition)) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    static final class Keys {
+        private final Object[] mItems;
+        private final int mHash;
+
+        Keys(Object[] items) {
+            this.mItems = items;
+            this.mHash = Arrays.hashCode(items);
+        }
+
+        int size() {
+            return mItems.length / 3;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Keys && mHash == ((Keys) o).mHash
+                    && Arrays.equals(mItems, ((Keys) o).mItems);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+
+    /**
+     * 转发到当前的新旧列表，没有绑定时是空列表
+     */
+    static final class RebindableCallback extends DiffUtil.Callback {
+        private final AtomicReference<DiffUtil.Callback> mDelegate;
+
+        RebindableCallback(DiffUtil.Callback delegate) {
+            this.mDelegate = new AtomicReference<>(delegate);
+        }
+
+        void rebind(DiffUtil.Callback delegate) {
+            mDelegate.set(delegate);
+        }
+
+        /**
+         * 还绑定在delegate上时换成空的callback，已经被后台的命中换成别的列表时不变
+         */
+        void unbind(DiffUtil.Callback delegate) {
+            mDelegate.compareAndSet(delegate, EMPTY);
+        }
+
+        boolean isBound() {
+            return mDelegate.get() != EMPTY;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mDelegate.get().getOldListSize();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mDelegate.get().getNewListSize();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mDelegate.get().areItemsTheSame(oldItemPosition, newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mDelegate.get().areContentsTheSame(oldItemPosition, newItemPosition);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return mDelegate.get().getChangePayload(oldItemPosition, newItemPosition);
+        }
+    }
+
+    private static final class Key {
+        final Keys oldKeys;
+        final Keys newKeys;
+
+        Key(Keys oldKeys, Keys newKeys) {
+            this.oldKeys = oldKeys;
+            this.newKeys = newKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return oldKeys.equals(key.oldKeys) && newKeys.equals(key.newKeys);
+        }
+
+        @Override
+        public int hashCode() {
+            return oldKeys.hashCode() * 31 + newKeys.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final RebindableCallback callback;
+        final DiffUtil.DiffResult diffResult;
+        final BitSet changed;
+
+        Entry(RebindableCallback callback, DiffUtil.DiffResult diffResult, BitSet changed) {
+            this.callback = callback;
+            this.diffResult = diffResult;
+            this.changed = changed;
+        }
+    }
+}
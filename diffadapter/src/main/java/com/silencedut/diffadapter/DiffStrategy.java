@@ -0,0 +1,222 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * setDatas时选择怎么更新列表：
+ * <p>
+ * 1.新旧列表都不超过syncThreshold行时直接在主线程diff，不用切到后台线程再切回来
+ * 2.只是在尾部追加、头部插入、去掉尾部或者头部时O(n)检查出来直接通知，不做diff
+ * 3.抽样估计新列表里还在旧列表中的比例，低于refreshOverlap时大部分数据都换了，直接notifyDataSetChanged
+ * 4.其它情况在后台线程diff
+ * <p>
+ * 每次的选择通过{@link OnDecisionListener}回调，在主线程
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class DiffStrategy {
+
+    public static final int STRATEGY_NO_CHANGE = 0;
+    public static final int STRATEGY_SYNC_DIFF = 1;
+    public static final int STRATEGY_ASYNC_DIFF = 2;
+    public static final int STRATEGY_APPEND = 3;
+    public static final int STRATEGY_PREPEND = 4;
+    public static final int STRATEGY_TRUNCATE_HEAD = 5;
+    public static final int STRATEGY_TRUNCATE_TAIL = 6;
+    public static final int STRATEGY_FULL_REFRESH = 7;
+    /**
+     * 同样的新旧列表之前diff过，直接用缓存的结果，见{@link DiffAdapter#setDiffResultCacheSize(int)}
+     */
+    public static final int STRATEGY_CACHED = 8;
+
+    public static final int DEFAULT_SYNC_THRESHOLD = 32;
+    public static final float DEFAULT_REFRESH_OVERLAP = 0.2f;
+    public static final int DEFAULT_REFRESH_MIN_ROWS = 64;
+    private static final int OVERLAP_SAMPLES = 64;
+
+    public interface OnDecisionListener {
+        /**
+         * @param costNanos 选择加上diff(需要的话)的耗时
+         */
+        void onDecided(int strategy, int oldSize, int newSize, long costNanos);
+    }
+
+    private int mSyncThreshold = DEFAULT_SYNC_THRESHOLD;
+    private float mRefreshOverlap = DEFAULT_REFRESH_OVERLAP;
+    private int mRefreshMinRows = DEFAULT_REFRESH_MIN_ROWS;
+    @Nullable
+    private OnDecisionListener mListener;
+
+    /**
+     * @param syncThreshold 新旧列表都不超过这个行数时在主线程diff，0表示总是在后台线程
+     */
+    public DiffStrategy setSyncThreshold(int syncThreshold) {
+        this.mSyncThreshold = syncThreshold;
+        return this;
+    }
+
+    /**
+     * @param refreshOverlap 新列表里还在旧列表中的比例低于它时全量刷新，0表示从不全量刷新
+     * @param minRows        新旧列表都至少有这么多行时才考虑全量刷新，小列表diff很快还能保留动画
+     */
+    public DiffStrategy setFullRefresh(float refreshOverlap, int minRows) {
+        this.mRefreshOverlap = refreshOverlap;
+        this.mRefreshMinRows = minRows;
+        return this;
+    }
+
+    public DiffStrategy setOnDecisionListener(@Nullable OnDecisionListener listener) {
+        this.mListener = listener;
+        return this;
+    }
+
+    boolean isSync(int oldSize, int newSize) {
+        return Math.max(oldSize, newSize) <= mSyncThreshold;
+    }
+
+    void report(@NonNull Decision decision, long costNanos) {
+        if (mListener != null) {
+            mListener.onDecided(decision.strategy, decision.oldSize, decision.newSize, costNanos);
+        }
+    }
+
+    /**
+     * @param shortcuts false时只做diff，比如两个文件存储的列表只比较索引
+     */
+    @NonNull
+    Decision decide(@NonNull List<? extends BaseMutableData> oldList, @NonNull List<? extends BaseMutableData> newList,
+                    @NonNull DiffUtil.Callback callback, boolean sync, boolean shortcuts) {
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+        if (shortcuts) {
+            if (newSize >= oldSize) {
+                if (matches(callback, 0, 0, oldSize)) {
+                    return new Decision(newSize == oldSize ? STRATEGY_NO_CHANGE : STRATEGY_APPEND, oldSize, newSize, null);
+                }
+                if (matches(callback, 0, newSize - oldSize, oldSize)) {
+                    return new Decision(STRATEGY_PREPEND, oldSize, newSize, null);
+                }
+            } else {
+                if (matches(callback, 0, 0, newSize)) {
+                    return new Decision(STRATEGY_TRUNCATE_TAIL, oldSize, newSize, null);
+                }
+                if (matches(callback, oldSize - newSize, 0, newSize)) {
+                    return new Decision(STRATEGY_TRUNCATE_HEAD, oldSize, newSize, null);
+                }
+            }
+            if (mRefreshOverlap > 0 && oldSize >= mRefreshMinRows && newSize >= mRefreshMinRows
+                    && overlap(oldList, newList) < mRefreshOverlap) {
+                return new Decision(STRATEGY_FULL_REFRESH, oldSize, newSize, null);
+            }
+        }
+        return new Decision(sync ? STRATEGY_SYNC_DIFF : STRATEGY_ASYNC_DIFF, oldSize, newSize,
+                DiffUtil.calculateDiff(callback));
+    }
+
+    /**
+     * 旧列表[oldStart, oldStart + count)和新列表[newStart, newStart + count)是同样的数据并且内容没变，遇到不同就返回
+     */
+    private static boolean matches(DiffUtil.Callback callback, int oldStart, int newStart, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!callback.areItemsTheSame(oldStart + i, newStart + i)
+                    || !callback.areContentsTheSame(oldStart + i, newStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在新列表里均匀抽样，估计还在旧列表里的比例，只遍历一次旧列表
+     */
+    private static float overlap(@NonNull List<? extends BaseMutableData> oldList,
+                                 @NonNull List<? extends BaseMutableData> newList) {
+        int newSize = newList.size();
+        int samples = Math.min(OVERLAP_SAMPLES, newSize);
+        Map<Object, Integer> sampled = new HashMap<>(samples * 2);
+        for (int i = 0; i < samples; i++) {
+            BaseMutableData data = newList.get((int) ((long) i * newSize / samples));
+            if (data != null) {
+                sampled.put(data.uniqueItemFeature(), data.getItemViewId());
+            }
+        }
+        if (sampled.isEmpty()) {
+            return 1;
+        }
+        Set<Object> found = new HashSet<>();
+        for (BaseMutableData data : oldList) {
+            if (data == null) {
+                continue;
+            }
+            Object feature = data.uniqueItemFeature();
+            Integer viewId = sampled.get(feature);
+            if (viewId != null && viewId == data.getItemViewId() && found.add(feature)
+                    && found.size() == sampled.size()) {
+                break;
+            }
+        }
+        return (float) found.size() / sampled.size();
+    }
+
+    static final class Decision {
+        final int strategy;
+        final int oldSize;
+        final int newSize;
+        @Nullable
+        final DiffUtil.DiffResult diffResult;
+        /**
+         * diffResult在{@link DiffResultCache}里时，它分发时读取的新旧列表的callback，分发或者丢弃后解除绑定
+         */
+        @Nullable
+        final DiffUtil.Callback cacheBinding;
+
+        Decision(int strategy, int oldSize, int newSize, @Nullable DiffUtil.DiffResult diffResult) {
+            this(strategy, oldSize, newSize, diffResult, null);
+        }
+
+        Decision(int strategy, int oldSize, int newSize, @Nullable DiffUtil.DiffResult diffResult,
+                 @Nullable DiffUtil.Callback cacheBinding) {
+            this.strategy = strategy;
+            this.oldSize = oldSize;
+            this.newSize = newSize;
+            this.diffResult = diffResult;
+            this.cacheBinding = cacheBinding;
+        }
+
+        void dispatchTo(@NonNull CoalescingUpdateCallback callback) {
+            switch (strategy) {
+                case STRATEGY_APPEND:
+                    callback.onInserted(oldSize, newSize - oldSize);
+                    break;
+                case STRATEGY_PREPEND:
+                    callback.onInserted(0, newSize - oldSize);
+                    break;
+                case STRATEGY_TRUNCATE_TAIL:
+                    callback.onRemoved(newSize, oldSize - newSize);
+                    break;
+                case STRATEGY_TRUNCATE_HEAD:
+                    callback.onRemoved(0, oldSize - newSize);
+                    break;
+                case STRATEGY_FULL_REFRESH:
+                    callback.onDataSetChanged();
+                    break;
+                default:
+                    if (diffResult != null) {
+                        diffResult.dispatchUpdatesTo(callback);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.silencedut.diffadapter;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.silencedut.diffadapter.utils.ListChangedCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 把一次diff的结果分到多帧里notify，避免几千个分散的更新在同一帧里一次性处理
+ *
+ * 先把DiffResult的所有操作记录下来，操作数不超过一帧的量时直接按原顺序分发。否则：
+ * 1.可见区域内的change在第一帧分发
+ * 2.insert/remove/move按原顺序分到之后的每一帧，每帧分发到用完时间预算为止
+ * 3.剩下的change按当前位置把相邻的合并成一个range change，同样分帧分发
+ *
+ * 时间预算只能计入notify和修改列表本身的耗时，notify引起的布局在这一帧稍后执行，
+ * 所以每帧分发的数量还有一个上限，根据相邻两帧的间隔是否超出预算自适应调整
+ *
+ * 分发过程中列表数据和已经notify的操作始终保持一致：当前列表是一个按已分发的操作逐步变换的ArrayList，
+ * 插入的行直接是新列表里对应的数据。其它任何改动列表的操作开始前都要先{@link #flush()}
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class FrameBudgetDispatcher<T> {
+
+    private static final String TAG = "FrameBudgetDispatcher";
+    private static final int TYPE_INSERT = 0;
+    private static final int TYPE_REMOVE = 1;
+    private static final int TYPE_MOVE = 2;
+    private static final int TYPE_CHANGE = 3;
+    private static final int MIN_CHUNK = 8;
+    private static final int MAX_CHUNK = 1024;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private final DiffAdapter mAdapter;
+    private final Handler mHandler;
+    private final ListUpdateCallback mCallback;
+    private long mBudgetNanos;
+    private int mChunkSize = 64;
+
+    private final OpRecorder mRecorder = new OpRecorder();
+    private final int[] mVisibleRange = new int[2];
+    @Nullable
+    private List<T> mWorking;
+    @Nullable
+    private List<Slot<T>> mSlots;
+    private int mNextOp;
+    private int mChangeCursor;
+    private int mDispatchedChanges;
+    private boolean mVisibleChangesDispatched;
+    private long mLastFrameNanos;
+    private boolean mFrameScheduled;
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private final Runnable mFallbackFrame = new Runnable() {
+        @Override
+        public void run() {
+            onFrame(System.nanoTime());
+        }
+    };
+
+    FrameBudgetDispatcher(@NonNull DiffAdapter adapter, @NonNull ListUpdateCallback callback, long budgetMs) {
+        this.mAdapter = adapter;
+        this.mHandler = adapter.mDiffHandler;
+        this.mCallback = callback;
+        setBudget(budgetMs);
+    }
+
+    void setBudget(long budgetMs) {
+        this.mBudgetNanos = budgetMs * 1000000L;
+    }
+
+    boolean isDispatching() {
+        return mSlots != null;
+    }
+
+    /**
+     * @param oldList     当前展示的列表，分帧分发时会被直接修改
+     * @param newList     diff的新列表
+     * @param diffResult  oldList到newList的diff结果
+     * @param listChanged 在notify之前用来替换adapter的列表，分帧分发时是逐步变换的oldList，
+     *                    否则就是newList本身，不在这里拷贝，由调用方按列表的类型处理
+     */
+    void dispatch(@NonNull List<T> oldList, @NonNull List<T> newList, @NonNull DiffUtil.DiffResult diffResult,
+                  @NonNull ListChangedCallback<T> listChanged) {
+        flush();
+        mRecorder.reset();
+        diffResult.dispatchUpdatesTo(mRecorder);
+        if (mRecorder.size <= mChunkSize) {
+            listChanged.onListChanged(newList);
+            mRecorder.replay(0, mRecorder.size, mCallback);
+            mRecorder.reset();
+            return;
+        }
+
+        List<Slot<T>> slots = new ArrayList<>(oldList.size());
+        for (T data : oldList) {
+            slots.add(new Slot<>(data));
+        }
+        List<Slot<T>> simulated = new ArrayList<>(slots);
+        for (int i = 0; i < mRecorder.size; i++) {
+            int position = mRecorder.positions[i];
+            int count = mRecorder.counts[i];
+            switch (mRecorder.types[i]) {
+                case TYPE_INSERT:
+                    mRecorder.insertOffsets[i] = mRecorder.insertedSlots.size();
+                    for (int j = 0; j < count; j++) {
+                        Slot<T> inserted = new Slot<>(null);
+                        mRecorder.insertedSlots.add(inserted);
+                        simulated.add(position + j, inserted);
+                    }
+                    break;
+                case TYPE_REMOVE:
+                    simulated.subList(position, position + count).clear();
+                    break;
+                case TYPE_MOVE:
+                    simulated.add(count, simulated.remove(position));
+                    break;
+                default:
+                    for (int j = position; j < position + count; j++) {
+                        simulated.get(j).addChange(mRecorder.payloads.get(i));
+                    }
+                    break;
+            }
+        }
+        for (int i = 0; i < simulated.size(); i++) {
+            simulated.get(i).data = newList.get(i);
+        }
+
+        mSlots = slots;
+        mWorking = oldList;
+        for (int i = 0; i < slots.size(); i++) {
+            oldList.set(i, slots.get(i).data);
+        }
+        mNextOp = 0;
+        mChangeCursor = 0;
+        mVisibleChangesDispatched = false;
+        mLastFrameNanos = 0;
+        listChanged.onListChanged(oldList);
+        Log.d(TAG, "dispatch " + mRecorder.size + " ops over frames, chunk " + mChunkSize);
+        step(mChunkSize);
+    }
+
+    /**
+     * 立即分发剩下的所有操作
+     */
+    void flush() {
+        if (mSlots == null) {
+            return;
+        }
+        step(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private void step(int budget) {
+        step(budget, System.nanoTime() + mBudgetNanos);
+    }
+
+    /**
+     * @param budget   最多分发的操作数
+     * @param deadline 超过这个时间(System.nanoTime)后不再分发，可见区域的change不受限制
+     */
+    private void step(int budget, long deadline) {
+        List<Slot<T>> slots = mSlots;
+        List<T> working = mWorking;
+        if (slots == null || working == null) {
+            return;
+        }
+        int dispatched = 0;
+        if (!mVisibleChangesDispatched) {
+            mVisibleChangesDispatched = true;
+            if (mAdapter.findVisibleRange(mVisibleRange)) {
+                int end = Math.min(mVisibleRange[1] + 1, slots.size());
+                dispatchChanges(slots, Math.max(0, mVisibleRange[0]), end, Integer.MAX_VALUE, Long.MAX_VALUE);
+                dispatched += mDispatchedChanges;
+            }
+        }
+        while (mNextOp < mRecorder.size && dispatched < budget && System.nanoTime() < deadline) {
+            int i = mNextOp++;
+            int type = mRecorder.types[i];
+            if (type == TYPE_CHANGE) {
+                continue;
+            }
+            applyStructural(slots, working, i);
+            dispatched++;
+        }
+        if (mNextOp >= mRecorder.size && dispatched < budget) {
+            mChangeCursor = dispatchChanges(slots, mChangeCursor, slots.size(), budget - dispatched, deadline);
+            if (mChangeCursor >= slots.size()) {
+                finish();
+                return;
+            }
+        }
+        scheduleFrame();
+    }
+
+    private void applyStructural(List<Slot<T>> slots, List<T> working, int op) {
+        int position = mRecorder.positions[op];
+        int count = mRecorder.counts[op];
+        switch (mRecorder.types[op]) {
+            case TYPE_INSERT:
+                int offset = mRecorder.insertOffsets[op];
+                List<Slot<T>> inserted = mRecorder.insertedSlots.subList(offset, offset + count);
+                List<T> insertedData = new ArrayList<>(count);
+                for (Slot<T> slot : inserted) {
+                    insertedData.add(slot.data);
+                }
+                slots.addAll(position, inserted);
+                working.addAll(position, insertedData);
+                mCallback.onInserted(position, count);
+                break;
+            case TYPE_REMOVE:
+                slots.subList(position, position + count).clear();
+                working.subList(position, position + count).clear();
+                mCallback.onRemoved(position, count);
+                break;
+            default:
+                slots.add(count, slots.remove(position));
+                working.add(count, working.remove(position));
+                mCallback.onMoved(position, count);
+                break;
+        }
+    }
+
+    /**
+     * 把[start,end)里还没分发的change按相邻合并后分发，分发的notify次数记在mDispatchedChanges
+     *
+     * @return 下一个还没检查的位置
+     */
+    private int dispatchChanges(List<Slot<T>> slots, int start, int end, int budget, long deadline) {
+        int notified = 0;
+        int i = start;
+        while (i < end && notified < budget && (notified == 0 || System.nanoTime() < deadline)) {
+            Slot<T> slot = slots.get(i);
+            if (!slot.changed) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            Object payload = slot.payload;
+            boolean fullChange = slot.fullChange;
+            slot.changed = false;
+            i++;
+            while (i < end && slots.get(i).changed) {
+                Slot<T> next = slots.get(i);
+                fullChange |= next.fullChange;
+                payload = mergePayload(payload, next.payload);
+                next.changed = false;
+                i++;
+            }
+            mCallback.onChanged(runStart, i - runStart, fullChange ? null : payload);
+            notified++;
+        }
+        mDispatchedChanges = notified;
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object mergePayload(Object first, Object second) {
+        if (first == null || first == second) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first instanceof Set && second instanceof Set) {
+            Set<Object> merged = new HashSet<>((Set<Object>) first);
+            merged.addAll((Set<Object>) second);
+            return merged;
+        }
+        return null;
+    }
+
+    private void finish() {
+        mSlots = null;
+        mWorking = null;
+        mRecorder.reset();
+        mFrameScheduled = false;
+        mHandler.removeCallbacks(mFallbackFrame);
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mHandler.postDelayed(mFallbackFrame, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    /**
+     * 根据相邻两帧的间隔(包括notify之后的布局)调整每帧分发数量的上限，超出预算减半，否则增加一半
+     */
+    private void onFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        if (mSlots == null) {
+            return;
+        }
+        if (mLastFrameNanos > 0) {
+            long frameNanos = frameTimeNanos - mLastFrameNanos;
+            if (frameNanos > mBudgetNanos) {
+                mChunkSize = Math.max(MIN_CHUNK, mChunkSize / 2);
+            } else {
+                mChunkSize = Math.min(MAX_CHUNK, mChunkSize + mChunkSize / 2);
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        step(mChunkSize);
+    }
+
+    private static class Slot<T> {
+        T data;
+        boolean changed;
+        boolean fullChange;
+        Object payload;
+
+        Slot(T data) {
+            this.data = data;
+        }
+
+        void addChange(Object payload) {
+            if (payload == null) {
+                fullChange = true;
+            } else {
+                this.payload = changed ? mergePayload(this.payload, payload) : payload;
+            }
+            changed = true;
+        }
+    }
+
+    /**
+     * 记录DiffResult分发的操作，move的目标位置存在counts里
+     */
+    private class OpRecorder implements ListUpdateCallback {
+        int[] types = new int[64];
+        int[] positions = new int[64];
+        int[] counts = new int[64];
+        final List<Object> payloads = new ArrayList<>();
+        int size;
+        /**
+         * 模拟时创建的插入行，insertOffsets记录每个insert操作在其中的起始位置
+         */
+        final List<Slot<T>> insertedSlots = new ArrayList<>();
+        int[] insertOffsets = new int[64];
+
+        void reset() {
+            size = 0;
+            payloads.clear();
+            insertedSlots.clear();
+        }
+
+        private void add(int type, int position, int count, Object payload) {
+            if (size == types.length) {
+                types = Arrays.copyOf(types, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                insertOffsets = Arrays.copyOf(insertOffsets, size * 2);
+            }
+            types[size] = type;
+            positions[size] = position;
+            counts[size] = count;
+            payloads.add(payload);
+            size++;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            add(TYPE_INSERT, position, count, null);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            add(TYPE_REMOVE, position, count, null);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            add(TYPE_MOVE, fromPosition, toPosition, null);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            add(TYPE_CHANGE, position, count, payload);
+        }
+
+        void replay(int from, int to, ListUpdateCallback callback) {
+            for (int i = from; i < to; i++) {
+                switch (types[i]) {
+                    case TYPE_INSERT:
+                        callback.onInserted(positions[i], counts[i]);
+                        break;
+                    case TYPE_REMOVE:
+                        callback.onRemoved(positions[i], counts[i]);
+                        break;
+                    case TYPE_MOVE:
+                        callback.onMoved(positions[i], counts[i]);
+                        break;
+                    default:
+                        callback.onChanged(positions[i], counts[i], payloads.get(i));
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.silencedut.diffadapter;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 页面低于STARTED(stop了或者在回退栈里)时暂停列表的更新：submitList只保留最新的列表，
+ * mediator的更新按数据源和matchFeature合并，只保留最后一次，恢复到STARTED时再一次性执行
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class LifecycleSuspender implements LifecycleObserver {
+
+    private static final String TAG = "LifecycleSuspender";
+
+    private final DiffAdapter mAdapter;
+    private final Map<Object, Runnable> mPendingMediatorUpdates = new LinkedHashMap<>();
+    private boolean mSuspended;
+
+    LifecycleSuspender(@NonNull DiffAdapter adapter, @NonNull LifecycleOwner owner) {
+        this.mAdapter = adapter;
+        this.mSuspended = !owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+        owner.getLifecycle().addObserver(this);
+    }
+
+    boolean isSuspended() {
+        return mSuspended;
+    }
+
+    /**
+     * 暂停期间的mediator更新，同一个key只保留最后一次
+     */
+    void deferMediatorUpdate(@NonNull Object key, @NonNull Runnable update) {
+        mPendingMediatorUpdates.remove(key);
+        mPendingMediatorUpdates.put(key, update);
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_ANY)
+    void onStateChanged(LifecycleOwner owner, Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            owner.getLifecycle().removeObserver(this);
+            mPendingMediatorUpdates.clear();
+            mAdapter.onOwnerDestroyed();
+            return;
+        }
+        boolean suspended = !owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+        if (suspended == mSuspended) {
+            return;
+        }
+        mSuspended = suspended;
+        Log.d(TAG, (suspended ? "suspend" : "resume") + " pending mediator updates:" + mPendingMediatorUpdates.size());
+        List<Runnable> updates = new ArrayList<>();
+        if (!suspended) {
+            updates.addAll(mPendingMediatorUpdates.values());
+            mPendingMediatorUpdates.clear();
+        }
+        mAdapter.onSuspendChanged(suspended, updates);
+    }
+}
@@ -0,0 +1,235 @@
+package com.silencedut.diffadapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.store.EncodedList;
+import com.silencedut.diffadapter.store.ItemCodec;
+import com.silencedut.diffadapter.store.RecordReader;
+import com.silencedut.diffadapter.store.RecordWriter;
+import com.silencedut.diffadapter.store.StoreBackedList;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 把最近一次提交的列表保存到文件，下次打开页面时在第一帧之前同步恢复，新数据到达后只需要和恢复的列表做diff
+ *
+ * 文件格式：magic、版本、行数，之后每行是viewId、长度和{@link ItemCodec}编码的数据。
+ * 只保存前maxRows行，没有codec的行不保存。提交之后延时在后台线程写临时文件再重命名，读的时候用mmap。
+ * 所有快照共用一个后台daemon线程写文件，主线程只复制数组，不解码也不编码
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class ListSnapshot {
+
+    private static final String TAG = "ListSnapshot";
+    private static final int MAGIC = 0x44414c53;
+    private static final int VERSION = 1;
+    private static final long SAVE_DELAY_MS = 500;
+    private static final int FILE_HEADER_SIZE = 12;
+    private static final int ROW_HEADER_SIZE = 8;
+    static final int DEFAULT_MAX_ROWS = 500;
+
+    private static Executor sWriteExecutor;
+
+    private final File mFile;
+    private final SparseArray<ItemCodec> mCodecs;
+    private final int mMaxRows;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    @Nullable
+    private List<BaseMutableData> mPendingList;
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ListSnapshot(@NonNull File file, @NonNull SparseArray<ItemCodec> codecs, int maxRows) {
+        this.mFile = file;
+        this.mCodecs = codecs;
+        this.mMaxRows = Math.max(1, maxRows);
+    }
+
+    /**
+     * 主线程同步读取，文件不存在或者格式不对时返回null
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    List<BaseMutableData> restore() {
+        if (!mFile.exists() || mFile.length() < FILE_HEADER_SIZE) {
+            return null;
+        }
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(mFile);
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, mFile.length());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return null;
+            }
+            int count = buffer.getInt(8);
+            int limit = buffer.limit();
+            // 文件损坏时count可能很大，不能直接按它分配
+            if (count < 0 || count > mMaxRows || (long) count * ROW_HEADER_SIZE > limit - FILE_HEADER_SIZE) {
+                throw new IOException("bad row count " + count);
+            }
+            List<BaseMutableData> datas = new ArrayList<>(count);
+            RecordReader reader = new RecordReader();
+            int position = FILE_HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                if (position > limit - ROW_HEADER_SIZE) {
+                    throw new IOException("truncated at row " + i);
+                }
+                int viewId = buffer.getInt(position);
+                int length = buffer.getInt(position + 4);
+                position += ROW_HEADER_SIZE;
+                if (length < 0 || length > limit - position) {
+                    throw new IOException("bad row length " + length + " at row " + i);
+                }
+                ItemCodec codec = mCodecs.get(viewId);
+                if (codec != null) {
+                    datas.add(codec.decode(viewId, reader.reset(buffer, position, length)));
+                }
+                position += length;
+            }
+            Log.d(TAG, "restore " + datas.size() + " rows from " + mFile);
+            return datas;
+        } catch (Exception e) {
+            Log.e(TAG, "restore " + mFile + " failed", e);
+            if (!mFile.delete()) {
+                Log.d(TAG, "delete " + mFile + " failed");
+            }
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * 每次提交之后调用，一段时间内的多次提交只保存最后一次
+     */
+    void scheduleSave(@Nullable List<BaseMutableData> currentList) {
+        mPendingList = currentList;
+        mMainHandler.removeCallbacks(mSaveRunnable);
+        mMainHandler.postDelayed(mSaveRunnable, SAVE_DELAY_MS);
+    }
+
+    /**
+     * 立即保存还没保存的列表，离开页面和页面销毁时调用。
+     * 主线程只复制数组：编码的列表用共用slab的{@link EncodedList#copy()}，在后台解码，写完后回到主线程释放
+     */
+    void flush() {
+        mMainHandler.removeCallbacks(mSaveRunnable);
+        List<BaseMutableData> currentList = mPendingList;
+        mPendingList = null;
+        if (currentList == null || currentList instanceof StoreBackedList) {
+            return;
+        }
+        final List<BaseMutableData> rows;
+        if (currentList instanceof EncodedList) {
+            rows = ((EncodedList) currentList).copy();
+        } else {
+            rows = new ArrayList<>(currentList.subList(0, Math.min(currentList.size(), mMaxRows)));
+        }
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(rows.subList(0, Math.min(rows.size(), mMaxRows)));
+                } finally {
+                    if (rows instanceof EncodedList) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                ((EncodedList) rows).release();
+                            }
+                        });
+                    }
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(List<BaseMutableData> rows) {
+        RecordWriter out = new RecordWriter(4096);
+        RecordWriter row = new RecordWriter(256);
+        int count = 0;
+        for (BaseMutableData data : rows) {
+            ItemCodec codec = data != null ? mCodecs.get(data.getItemViewId()) : null;
+            if (codec != null) {
+                count++;
+            }
+        }
+        out.putInt(MAGIC).putInt(VERSION).putInt(count);
+        for (BaseMutableData data : rows) {
+            ItemCodec codec = data != null ? mCodecs.get(data.getItemViewId()) : null;
+            if (codec == null) {
+                continue;
+            }
+            row.reset();
+            codec.encode(data, row);
+            out.putInt(data.getItemViewId()).putInt(row.size()).putBytes(row.toByteArray(), 0, row.size());
+        }
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            output.write(out.toByteArray());
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("rename " + temp + " failed");
+            }
+            Log.d(TAG, "save " + count + " rows to " + mFile);
+        } catch (IOException e) {
+            Log.e(TAG, "save " + mFile + " failed", e);
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sWriteExecutor == null) {
+            sWriteExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "DiffAdapter-Snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sWriteExecutor;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.silencedut.diffadapter;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.rvhelper.RvHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 公屏这类高频聊天列表：列表换成固定容量的环形数组，一帧内追加的消息合并成一次范围插入，
+ * 超过容量的旧消息从头部范围移除，用户没有往上翻的时候一直停在底部
+ *
+ * 使用时不要再调用setDatas等方法，配合{@link RvHelper.Companion#closeDefaultAnimator(RecyclerView)}使用
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class LiveChatController {
+
+    private static final long FALLBACK_FRAME_DELAY = 16;
+    public static final int DEFAULT_CAPACITY = 500;
+
+    private final DiffAdapter mAdapter;
+    private final int mCapacity;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private List<BaseMutableData> mPending = new ArrayList<>();
+    private boolean mFrameScheduled;
+    private boolean mUserScrolledUp;
+    @Nullable
+    private RecyclerView mRecyclerView;
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable mPinToBottom = new Runnable() {
+        @Override
+        public void run() {
+            RecyclerView recyclerView = mRecyclerView;
+            if (recyclerView != null && !mUserScrolledUp && mAdapter.getItemCount() > 0) {
+                recyclerView.scrollToPosition(mAdapter.getItemCount() - 1);
+            }
+        }
+    };
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                mUserScrolledUp = !RvHelper.Companion.isAlignToBottom(recyclerView);
+            }
+        }
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_DRAGGING) {
+                mUserScrolledUp = !RvHelper.Companion.isAlignToBottom(recyclerView);
+            }
+        }
+    };
+
+    public LiveChatController(@NonNull DiffAdapter adapter) {
+        this(adapter, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 最多保留的消息数量
+     */
+    public LiveChatController(@NonNull DiffAdapter adapter, int capacity) {
+        this.mAdapter = adapter;
+        this.mCapacity = Math.max(1, capacity);
+        adapter.useRingList(mCapacity);
+    }
+
+    public void attach(@NonNull RecyclerView recyclerView) {
+        detach();
+        mRecyclerView = recyclerView;
+        mUserScrolledUp = false;
+        recyclerView.addOnScrollListener(mScrollListener);
+    }
+
+    public void detach() {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(mScrollListener);
+            mRecyclerView = null;
+        }
+    }
+
+    /**
+     * 主线程调用，消息在下一帧和这一帧的其它消息一起插入
+     */
+    public void append(@NonNull BaseMutableData message) {
+        mPending.add(message);
+        scheduleFrame();
+    }
+
+    public void appendAll(@NonNull List<? extends BaseMutableData> messages) {
+        mPending.addAll(messages);
+        scheduleFrame();
+    }
+
+    /**
+     * 用户是否翻到了上面，这时新消息不会自动滚动到底部
+     */
+    public boolean isPinnedToBottom() {
+        return !mUserScrolledUp;
+    }
+
+    public void scrollToBottom() {
+        mUserScrolledUp = false;
+        mPinToBottom.run();
+    }
+
+    private void flush() {
+        mFrameScheduled = false;
+        if (mPending.isEmpty()) {
+            return;
+        }
+        List<BaseMutableData> messages = mPending;
+        mPending = new ArrayList<>(messages.size());
+        mAdapter.appendCapped(messages, mCapacity, mPinToBottom);
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mHandler.postDelayed(mFlushRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    flush();
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+}
@@ -0,0 +1,158 @@
+package com.silencedut.diffadapter;
+
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 在后台线程预先inflate每种类型的itemView，创建好的ViewHolder放进RecyclerView的缓存池，
+ * 第一次setDatas时onCreateViewHolder直接从池里取，不用在主线程同步inflate
+ *
+ * 和AsyncLayoutInflater一样，后台线程用单独clone的LayoutInflater，每inflate完一个就post回主线程，
+ * 主线程只创建ViewHolder，不会一次占用太长时间。后台inflate失败的(比如View的构造里需要Looper)回到主线程inflate
+ *
+ * 缓存池在RecyclerView#setAdapter时会被清空，所以没attach的时候只记录请求，attach之后再开始
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class PreInflater {
+
+    private static final String TAG = "PreInflater";
+    private static final int DEFAULT_MAX_SCRAP = 5;
+    private static ExecutorService sInflateExecutor;
+
+    private final DiffAdapter mAdapter;
+    private final Handler mHandler;
+    /**
+     * 还没attach时记录的请求，viewType到数量
+     */
+    private final SparseIntArray mPendingRequests = new SparseIntArray();
+    /**
+     * 后台inflate好等待创建ViewHolder的View，只在主线程访问
+     */
+    private final SparseArray<ArrayDeque<View>> mInflatedViews = new SparseArray<>();
+    private volatile int mGeneration;
+    @Nullable
+    private LayoutInflater mBackgroundInflater;
+
+    PreInflater(@NonNull DiffAdapter adapter) {
+        this.mAdapter = adapter;
+        this.mHandler = adapter.mDiffHandler;
+    }
+
+    void preInflate(int viewType, int count) {
+        if (count <= 0) {
+            return;
+        }
+        RecyclerView recyclerView = mAdapter.mRecyclerView;
+        if (recyclerView == null) {
+            mPendingRequests.put(viewType, mPendingRequests.get(viewType) + count);
+            return;
+        }
+        start(recyclerView, viewType, count);
+    }
+
+    void onAttached(@NonNull RecyclerView recyclerView) {
+        for (int i = 0; i < mPendingRequests.size(); i++) {
+            start(recyclerView, mPendingRequests.keyAt(i), mPendingRequests.valueAt(i));
+        }
+        mPendingRequests.clear();
+    }
+
+    /**
+     * 取消还没完成的预加载，已经放进缓存池的不受影响
+     */
+    void cancel() {
+        mGeneration++;
+        mPendingRequests.clear();
+        mInflatedViews.clear();
+    }
+
+    /**
+     * onCreateViewHolder时优先使用已经inflate好的View
+     */
+    @Nullable
+    View takeInflatedView(int viewType) {
+        ArrayDeque<View> views = mInflatedViews.get(viewType);
+        return views != null ? views.poll() : null;
+    }
+
+    private void start(@NonNull final RecyclerView recyclerView, final int viewType, final int count) {
+        RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        pool.setMaxRecycledViews(viewType, Math.max(DEFAULT_MAX_SCRAP, pool.getRecycledViewCount(viewType) + count));
+        final int generation = mGeneration;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count && generation == mGeneration; i++) {
+                    View itemView = null;
+                    try {
+                        itemView = getBackgroundInflater().inflate(viewType, recyclerView, false);
+                    } catch (RuntimeException e) {
+                        Log.d(TAG, "inflate " + Integer.toHexString(viewType) + " in background failed " + e);
+                    }
+                    postHolder(recyclerView, viewType, itemView, generation);
+                }
+            }
+        });
+    }
+
+    private void postHolder(@NonNull final RecyclerView recyclerView, final int viewType, @Nullable final View itemView,
+                            final int generation) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration || mAdapter.mRecyclerView != recyclerView) {
+                    return;
+                }
+                if (itemView != null) {
+                    ArrayDeque<View> views = mInflatedViews.get(viewType);
+                    if (views == null) {
+                        views = new ArrayDeque<>();
+                        mInflatedViews.put(viewType, views);
+                    }
+                    views.add(itemView);
+                }
+                RecyclerView.ViewHolder holder = mAdapter.createViewHolder(recyclerView, viewType);
+                recyclerView.getRecycledViewPool().putRecycledView(holder);
+            }
+        });
+    }
+
+    /**
+     * 只在后台线程访问
+     */
+    private LayoutInflater getBackgroundInflater() {
+        if (mBackgroundInflater == null) {
+            mBackgroundInflater = LayoutInflater.from(mAdapter.mContext).cloneInContext(mAdapter.mContext);
+        }
+        return mBackgroundInflater;
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sInflateExecutor == null) {
+            sInflateExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "DiffAdapter-PreInflate");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return sInflateExecutor;
+    }
+}
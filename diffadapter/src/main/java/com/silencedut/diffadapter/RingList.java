@@ -0,0 +1,122 @@
+package com.silencedut.diffadapter;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * 聊天模式用的环形数组列表，移除头部的旧消息和在尾部追加都不需要移动数组，也不会重新分配
+ *
+ * 只有在中间插入、删除或者超过容量时才移动/扩容，聊天模式下超过容量的旧消息在追加之前先被移除
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class RingList extends AbstractList<BaseMutableData> implements RandomAccess {
+
+    private BaseMutableData[] mItems;
+    private int mHead;
+    private int mSize;
+
+    RingList(int capacity) {
+        mItems = new BaseMutableData[Math.max(1, capacity)];
+    }
+
+    @Override
+    public BaseMutableData get(int index) {
+        checkIndex(index);
+        return mItems[slot(index)];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public BaseMutableData set(int index, BaseMutableData data) {
+        checkIndex(index);
+        int slot = slot(index);
+        BaseMutableData old = mItems[slot];
+        mItems[slot] = data;
+        return old;
+    }
+
+    @Override
+    public void add(int index, BaseMutableData data) {
+        if (index < 0 || index > mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+        if (mSize == mItems.length) {
+            grow();
+        }
+        for (int i = mSize; i > index; i--) {
+            mItems[slot(i)] = mItems[slot(i - 1)];
+        }
+        mItems[slot(index)] = data;
+        mSize++;
+        modCount++;
+    }
+
+    @Override
+    public BaseMutableData remove(int index) {
+        BaseMutableData old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    /**
+     * 从头部移除时只移动head
+     */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int count = toIndex - fromIndex;
+        if (count <= 0) {
+            return;
+        }
+        if (fromIndex == 0) {
+            for (int i = 0; i < count; i++) {
+                mItems[slot(i)] = null;
+            }
+            mHead = (mHead + count) % mItems.length;
+        } else {
+            for (int i = fromIndex; i < mSize - count; i++) {
+                mItems[slot(i)] = mItems[slot(i + count)];
+            }
+            for (int i = mSize - count; i < mSize; i++) {
+                mItems[slot(i)] = null;
+            }
+        }
+        mSize -= count;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mItems, null);
+        mHead = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    private void grow() {
+        BaseMutableData[] items = new BaseMutableData[mItems.length * 2];
+        for (int i = 0; i < mSize; i++) {
+            items[i] = mItems[slot(i)];
+        }
+        mItems = items;
+        mHead = 0;
+    }
+
+    private int slot(int index) {
+        return (mHead + index) % mItems.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+    }
+}
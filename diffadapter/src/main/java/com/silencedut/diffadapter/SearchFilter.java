@@ -0,0 +1,353 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 列表的搜索和筛选：对{@link TextExtractor}提取的文字建立按词前缀查找的索引，
+ * 每个查询词都是某个词的前缀的数据才显示，顺序和setDatas的数据一样
+ *
+ * 查询变长(继续输入)时只在上一次的结果里检查，否则用最长的查询词在索引里按前缀查找。
+ * 结果变化时按源列表的顺序一次遍历得出去掉和新增的行，直接通知RecyclerView，不做diff
+ *
+ * setDatas时只给新出现的数据分词，mediator更新数据时同步更新索引，
+ * 不再匹配的行会被去掉，新匹配的行会插入。开启后调用addData、deleteData等直接修改列表的方法
+ * (包括{@link UpdateInbox}的add、insert、delete)会抛出IllegalStateException，有序列表模式下的增加除外
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class SearchFilter {
+
+    private static final String TAG = "SearchFilter";
+
+    public interface TextExtractor {
+        /**
+         * 把需要搜索的文字加到texts里，比如昵称、备注
+         */
+        void appendTexts(@NonNull BaseMutableData data, @NonNull List<CharSequence> texts);
+    }
+
+    private final DiffAdapter mAdapter;
+    private final TextExtractor mExtractor;
+    private final List<BaseMutableData> mSource = new ArrayList<>();
+    private final Map<BaseMutableData, String[]> mTokens = new IdentityHashMap<>();
+    private final TreeMap<String, Set<BaseMutableData>> mPostings = new TreeMap<>();
+    private final List<CharSequence> mTextBuffer = new ArrayList<>();
+    private String mQuery = "";
+    private String[] mQueryTokens = new String[0];
+    /**
+     * 匹配的数据，null表示没有查询，全部显示
+     */
+    @Nullable
+    private Set<BaseMutableData> mMatched;
+    /**
+     * 内存紧张时分词的索引会被清空，下次使用时重建
+     */
+    private boolean mIndexed = true;
+
+    SearchFilter(@NonNull DiffAdapter adapter, @NonNull TextExtractor extractor) {
+        this.mAdapter = adapter;
+        this.mExtractor = extractor;
+    }
+
+    /**
+     * 主线程调用，结果在当前的更新完成后应用到列表上
+     */
+    public void setQuery(@Nullable CharSequence query) {
+        String text = query == null ? "" : query.toString();
+        if (text.equals(mQuery)) {
+            return;
+        }
+        String[] tokens = tokenize(text);
+        long startNanos = System.nanoTime();
+        ensureIndexed();
+        if (tokens.length == 0) {
+            mMatched = null;
+        } else {
+            Iterable<BaseMutableData> candidates = mMatched != null && narrows(mQueryTokens, tokens)
+                    ? mMatched : lookup(longest(tokens));
+            Set<BaseMutableData> matched = newIdentitySet();
+            for (BaseMutableData data : candidates) {
+                if (matches(mTokens.get(data), tokens)) {
+                    matched.add(data);
+                }
+            }
+            mMatched = matched;
+        }
+        Log.d(TAG, "query:" + text + " matched:" + (mMatched != null ? mMatched.size() : mSource.size())
+                + " cost:" + (System.nanoTime() - startNanos) / 1000 + "us");
+        mQuery = text;
+        mQueryTokens = tokens;
+        mAdapter.applySearchResult();
+    }
+
+    @NonNull
+    public String getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * 替换源列表，已经分过词的数据直接复用
+     *
+     * @return 匹配当前查询的数据
+     */
+    @NonNull
+    List<BaseMutableData> setSource(@NonNull List<? extends BaseMutableData> source) {
+        Set<BaseMutableData> kept = newIdentitySet();
+        mSource.clear();
+        for (BaseMutableData data : source) {
+            if (data == null) {
+                continue;
+            }
+            mSource.add(data);
+            kept.add(data);
+            if (!mTokens.containsKey(data)) {
+                index(data);
+            }
+        }
+        if (kept.size() < mTokens.size()) {
+            for (BaseMutableData data : new ArrayList<>(mTokens.keySet())) {
+                if (!kept.contains(data)) {
+                    unindex(data);
+                }
+            }
+        }
+        if (mMatched != null) {
+            Set<BaseMutableData> matched = newIdentitySet();
+            for (BaseMutableData data : lookup(longest(mQueryTokens))) {
+                if (matches(mTokens.get(data), mQueryTokens)) {
+                    matched.add(data);
+                }
+            }
+            mMatched = matched;
+        }
+        mIndexed = true;
+        return filtered();
+    }
+
+    @NonNull
+    List<BaseMutableData> getSource() {
+        return mSource;
+    }
+
+    @NonNull
+    List<BaseMutableData> filtered() {
+        if (mMatched == null) {
+            return new ArrayList<>(mSource);
+        }
+        List<BaseMutableData> filtered = new ArrayList<>(mMatched.size());
+        for (BaseMutableData data : mSource) {
+            if (mMatched.contains(data)) {
+                filtered.add(data);
+            }
+        }
+        return filtered;
+    }
+
+    boolean isMatched(@NonNull BaseMutableData data) {
+        ensureIndexed();
+        return mMatched == null ? mTokens.containsKey(data) : mMatched.contains(data);
+    }
+
+    /**
+     * 源列表里同一条数据(viewId和uniqueItemFeature相同)被更新，重新分词
+     *
+     * @return 被替换的旧数据，源列表里没有时返回null
+     */
+    @Nullable
+    BaseMutableData onDataUpdated(@NonNull BaseMutableData newData) {
+        ensureIndexed();
+        Object feature = newData.uniqueItemFeature();
+        for (int i = 0; i < mSource.size(); i++) {
+            BaseMutableData data = mSource.get(i);
+            if (data.getItemViewId() == newData.getItemViewId() && feature.equals(data.uniqueItemFeature())) {
+                unindex(data);
+                mSource.set(i, newData);
+                index(newData);
+                if (mMatched != null && matches(mTokens.get(newData), mQueryTokens)) {
+                    mMatched.add(newData);
+                }
+                return data;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 有序模式下源列表里插入或者替换的数据，位置由SortedMode决定，这里只更新索引
+     *
+     * @param replaced 被替换的旧数据，新插入时为null
+     */
+    void onSortedUpsert(@Nullable BaseMutableData replaced, @NonNull BaseMutableData data) {
+        ensureIndexed();
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        index(data);
+        if (mMatched != null && matches(mTokens.get(data), mQueryTokens)) {
+            mMatched.add(data);
+        }
+    }
+
+    /**
+     * 内存紧张时清空分词和前缀索引，当前的查询结果保留，下次查询或者数据更新时重新分词
+     */
+    void trimIndex() {
+        mTokens.clear();
+        mPostings.clear();
+        mIndexed = false;
+    }
+
+    private void ensureIndexed() {
+        if (mIndexed) {
+            return;
+        }
+        for (BaseMutableData data : mSource) {
+            index(data);
+        }
+        mIndexed = true;
+    }
+
+    private void index(BaseMutableData data) {
+        mTextBuffer.clear();
+        mExtractor.appendTexts(data, mTextBuffer);
+        List<String> tokens = new ArrayList<>();
+        for (CharSequence text : mTextBuffer) {
+            if (text != null) {
+                Collections.addAll(tokens, tokenize(text.toString()));
+            }
+        }
+        mTextBuffer.clear();
+        String[] rowTokens = tokens.toArray(new String[0]);
+        mTokens.put(data, rowTokens);
+        for (String token : rowTokens) {
+            Set<BaseMutableData> postings = mPostings.get(token);
+            if (postings == null) {
+                postings = newIdentitySet();
+                mPostings.put(token, postings);
+            }
+            postings.add(data);
+        }
+    }
+
+    private void unindex(BaseMutableData data) {
+        String[] rowTokens = mTokens.remove(data);
+        if (mMatched != null) {
+            mMatched.remove(data);
+        }
+        if (rowTokens == null) {
+            return;
+        }
+        for (String token : rowTokens) {
+            Set<BaseMutableData> postings = mPostings.get(token);
+            if (postings != null) {
+                postings.remove(data);
+                if (postings.isEmpty()) {
+                    mPostings.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * 有以prefix开头的词的所有数据
+     */
+    private Iterable<BaseMutableData> lookup(String prefix) {
+        Set<BaseMutableData> result = newIdentitySet();
+        for (Set<BaseMutableData> postings : mPostings.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .values()) {
+            result.addAll(postings);
+        }
+        return result;
+    }
+
+    private static boolean matches(@Nullable String[] rowTokens, String[] queryTokens) {
+        if (rowTokens == null) {
+            return false;
+        }
+        for (String query : queryTokens) {
+            boolean found = false;
+            for (String token : rowTokens) {
+                if (token.startsWith(query)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 新的查询是不是在旧的查询后面继续输入，这时结果只会变少
+     */
+    private static boolean narrows(String[] oldTokens, String[] newTokens) {
+        if (newTokens.length < oldTokens.length) {
+            return false;
+        }
+        for (int i = 0; i < oldTokens.length; i++) {
+            if (!newTokens[i].startsWith(oldTokens[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String longest(String[] tokens) {
+        String longest = tokens[0];
+        for (String token : tokens) {
+            if (token.length() > longest.length()) {
+                longest = token;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * 按字母数字连续的片段分词并转成小写，汉字没有分隔，每个字是一个词
+     */
+    static String[] tokenize(@NonNull String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean ideograph = Character.UnicodeBlock.of(c) == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS;
+            if (Character.isLetterOrDigit(c) && !ideograph) {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+            if (ideograph) {
+                tokens.add(String.valueOf(c));
+            }
+        }
+        if (start >= 0) {
+            tokens.add(text.substring(start).toLowerCase(Locale.US));
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static Set<BaseMutableData> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<BaseMutableData, Boolean>());
+    }
+}
@@ -0,0 +1,167 @@
+package com.silencedut.diffadapter;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * 多个DiffAdapter(比如同一个Activity里的多个tab、ViewPager的多个页面)共享的缓存池，
+ * viewType就是registerHolder时的layout id，相同layout的holder可以在不同的列表之间复用
+ *
+ * 每种类型的容量根据观察到的数据自动调整：至少能放下同时可见的最大数量加上预取的余量，
+ * 如果有holder因为池满被丢弃之后又重新创建了同类型的holder，说明容量不够，再增加一个。
+ * 内存紧张时释放空闲的holder
+ *
+ * holder创建时的Context是创建它的adapter的，所以只在同一个Activity里共享
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool implements ComponentCallbacks2 {
+
+    private static final String TAG = "SharedViewPool";
+    private static final int DEFAULT_MAX_SCRAP = 5;
+    /**
+     * GapWorker预取的数量
+     */
+    private static final int PREFETCH_SLACK = 2;
+    private static final int MAX_CAPACITY = 64;
+
+    private final SparseArray<TypeStats> mTypeStats = new SparseArray<>();
+    private final Context mAppContext;
+
+    public SharedViewPool(@NonNull Context context) {
+        this.mAppContext = context.getApplicationContext();
+        mAppContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * 不再使用时调用，取消内存回调的注册
+     */
+    public void release() {
+        mAppContext.unregisterComponentCallbacks(this);
+        clear();
+    }
+
+    @Override
+    public void setMaxRecycledViews(int viewType, int max) {
+        TypeStats stats = getStats(viewType);
+        stats.capacity = Math.max(stats.capacity, Math.min(max, MAX_CAPACITY));
+        super.setMaxRecycledViews(viewType, stats.capacity);
+    }
+
+    @Override
+    public void putRecycledView(RecyclerView.ViewHolder scrap) {
+        TypeStats stats = getStats(scrap.getItemViewType());
+        stats.recycled++;
+        if (getRecycledViewCount(scrap.getItemViewType()) >= stats.capacity) {
+            stats.droppedSinceCreate = true;
+        }
+        super.putRecycledView(scrap);
+    }
+
+    void onHolderCreated(int viewType) {
+        TypeStats stats = getStats(viewType);
+        stats.created++;
+        if (stats.droppedSinceCreate) {
+            stats.droppedSinceCreate = false;
+            updateCapacity(viewType, stats, stats.capacity + 1);
+        }
+    }
+
+    void onHolderAttached(int viewType) {
+        TypeStats stats = getStats(viewType);
+        stats.visible++;
+        if (stats.visible > stats.peakVisible) {
+            stats.peakVisible = stats.visible;
+            updateCapacity(viewType, stats, stats.peakVisible + PREFETCH_SLACK);
+        }
+    }
+
+    void onHolderDetached(int viewType) {
+        TypeStats stats = getStats(viewType);
+        stats.visible = Math.max(0, stats.visible - 1);
+    }
+
+    /**
+     * 每种类型只保留keepPerType个空闲的holder
+     */
+    public void trim(int keepPerType) {
+        for (int i = 0; i < mTypeStats.size(); i++) {
+            int viewType = mTypeStats.keyAt(i);
+            while (getRecycledViewCount(viewType) > keepPerType) {
+                if (getRecycledView(viewType) == null) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @NonNull
+    public String dump() {
+        StringBuilder builder = new StringBuilder("SharedViewPool");
+        for (int i = 0; i < mTypeStats.size(); i++) {
+            int viewType = mTypeStats.keyAt(i);
+            TypeStats stats = mTypeStats.valueAt(i);
+            builder.append("\n0x").append(Integer.toHexString(viewType))
+                    .append(" capacity:").append(stats.capacity)
+                    .append(" idle:").append(getRecycledViewCount(viewType))
+                    .append(" created:").append(stats.created)
+                    .append(" recycled:").append(stats.recycled)
+                    .append(" peakVisible:").append(stats.peakVisible);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        Log.d(TAG, "onTrimMemory " + level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trim(0);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trim(PREFETCH_SLACK);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void updateCapacity(int viewType, TypeStats stats, int capacity) {
+        capacity = Math.min(capacity, MAX_CAPACITY);
+        if (capacity > stats.capacity) {
+            stats.capacity = capacity;
+            super.setMaxRecycledViews(viewType, capacity);
+            Log.d(TAG, "capacity 0x" + Integer.toHexString(viewType) + " -> " + capacity);
+        }
+    }
+
+    private TypeStats getStats(int viewType) {
+        TypeStats stats = mTypeStats.get(viewType);
+        if (stats == null) {
+            stats = new TypeStats();
+            mTypeStats.put(viewType, stats);
+        }
+        return stats;
+    }
+
+    private static class TypeStats {
+        int capacity = DEFAULT_MAX_SCRAP;
+        int created;
+        int recycled;
+        int visible;
+        int peakVisible;
+        boolean droppedSinceCreate;
+    }
+}
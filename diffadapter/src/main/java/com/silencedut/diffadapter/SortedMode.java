@@ -0,0 +1,293 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 有序列表模式：列表始终按comparator排序，新数据用二分查找找到位置，
+ * 排序值变化的数据只产生一次move和change，批量更新合并两个有序列表，不需要整个列表做diff
+ *
+ * uniqueItemFeature相同(并且viewId相同)的数据是同一条，已经存在时替换
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+class SortedMode {
+
+    private final Comparator<? super BaseMutableData> mComparator;
+    /**
+     * (viewId, uniqueItemFeature)到mIndexedList里的数据，通过数据的排序值二分查找它的位置。
+     * 列表被替换或者被其它方式修改过时重建
+     */
+    private final Map<Key, BaseMutableData> mIndex = new HashMap<>();
+    @Nullable
+    private List<BaseMutableData> mIndexedList;
+
+    SortedMode(@NonNull Comparator<? super BaseMutableData> comparator) {
+        this.mComparator = comparator;
+    }
+
+    void sort(@NonNull List<BaseMutableData> datas) {
+        Collections.sort(datas, mComparator);
+    }
+
+    /**
+     * 插入或者替换一条数据
+     *
+     * @return 被替换的数据，新插入时返回null
+     */
+    @Nullable
+    BaseMutableData upsert(@NonNull List<BaseMutableData> list, @NonNull BaseMutableData data,
+                           @NonNull ListUpdateCallback callback) {
+        BaseMutableData oldData = find(list, data);
+        upsert(list, data, oldData, Collections.<String>emptySet(), callback);
+        return oldData;
+    }
+
+    /**
+     * @param oldData     列表里要被替换的数据，为null时插入。list是源列表排好序的一部分(比如搜索时显示的行)时由调用方提供
+     * @param payloadKeys 替换时除了data自己的payloadKeys之外还要通知的key
+     */
+    void upsert(@NonNull List<BaseMutableData> list, @NonNull BaseMutableData data, @Nullable BaseMutableData oldData,
+                @NonNull Set<String> payloadKeys, @NonNull ListUpdateCallback callback) {
+        int oldPosition = oldData != null ? positionOf(list, oldData) : -1;
+        if (list == mIndexedList) {
+            mIndex.put(new Key(data), data);
+        }
+        if (oldPosition < 0) {
+            int position = insertionPoint(list, data);
+            list.add(position, data);
+            callback.onInserted(position, 1);
+            return;
+        }
+        if (fitsAt(list, oldPosition, data)) {
+            list.set(oldPosition, data);
+            callback.onChanged(oldPosition, 1, payload(oldData, data, payloadKeys));
+            return;
+        }
+        list.remove(oldPosition);
+        int position = insertionPoint(list, data);
+        list.add(position, data);
+        callback.onMoved(oldPosition, position);
+        callback.onChanged(position, 1, payload(oldData, data, payloadKeys));
+    }
+
+    /**
+     * 列表里的一行被删除，索引里去掉它，不用整个重建
+     */
+    void onRemoved(@NonNull List<BaseMutableData> list, @NonNull BaseMutableData removed) {
+        if (list != mIndexedList) {
+            return;
+        }
+        Key key = new Key(removed);
+        if (mIndex.get(key) == removed) {
+            mIndex.remove(key);
+        }
+    }
+
+    /**
+     * 批量插入或者替换：位置不变的原地替换，其余的先删除，再和剩下的有序列表做一次归并，连续插入的合并成范围通知
+     */
+    void upsertAll(@NonNull List<BaseMutableData> list, @NonNull List<? extends BaseMutableData> datas,
+                   @NonNull ListUpdateCallback callback) {
+        Map<Key, BaseMutableData> incoming = new LinkedHashMap<>();
+        for (BaseMutableData data : datas) {
+            if (data != null) {
+                incoming.put(new Key(data), data);
+            }
+        }
+
+        boolean[] removed = new boolean[list.size()];
+        List<BaseMutableData> toInsert = new ArrayList<>();
+        for (BaseMutableData data : incoming.values()) {
+            BaseMutableData oldData = find(list, data);
+            int oldPosition = oldData != null ? positionOf(list, oldData) : -1;
+            if (oldPosition >= 0) {
+                if (!removed[oldPosition] && fitsAt(list, oldPosition, data)) {
+                    list.set(oldPosition, data);
+                    mIndex.put(new Key(data), data);
+                    callback.onChanged(oldPosition, 1, payload(oldData, data, Collections.<String>emptySet()));
+                    continue;
+                }
+                removed[oldPosition] = true;
+            }
+            toInsert.add(data);
+        }
+
+        int end = list.size();
+        for (int i = list.size() - 1; i >= -1; i--) {
+            if (i >= 0 && removed[i]) {
+                continue;
+            }
+            if (end > i + 1) {
+                list.subList(i + 1, end).clear();
+                callback.onRemoved(i + 1, end - i - 1);
+            }
+            end = i;
+        }
+
+        if (toInsert.isEmpty()) {
+            return;
+        }
+        sort(toInsert);
+        List<BaseMutableData> merged = new ArrayList<>(list.size() + toInsert.size());
+        int i = 0;
+        int j = 0;
+        while (j < toInsert.size()) {
+            if (i < list.size() && mComparator.compare(list.get(i), toInsert.get(j)) <= 0) {
+                merged.add(list.get(i++));
+                continue;
+            }
+            int runStart = merged.size();
+            while (j < toInsert.size() && (i >= list.size() || mComparator.compare(toInsert.get(j), list.get(i)) < 0)) {
+                merged.add(toInsert.get(j++));
+            }
+            callback.onInserted(runStart, merged.size() - runStart);
+        }
+        while (i < list.size()) {
+            merged.add(list.get(i++));
+        }
+        list.clear();
+        list.addAll(merged);
+        for (BaseMutableData data : toInsert) {
+            mIndex.put(new Key(data), data);
+        }
+    }
+
+    /**
+     * 列表里和data是同一条的数据，没有时返回null
+     */
+    @Nullable
+    BaseMutableData find(@NonNull List<BaseMutableData> list, @NonNull BaseMutableData data) {
+        Key key = new Key(data);
+        if (list != mIndexedList || mIndex.size() != list.size()) {
+            rebuildIndex(list);
+        }
+        BaseMutableData oldData = mIndex.get(key);
+        if (oldData != null && positionOf(list, oldData) < 0) {
+            // 列表被deleteData等方式修改过
+            rebuildIndex(list);
+            oldData = mIndex.get(key);
+        }
+        return oldData;
+    }
+
+    /**
+     * 按data的排序值二分查找它在列表里的位置，排序值被原地修改过的数据找不到时退回遍历
+     *
+     * @return 不在列表里时返回-1
+     */
+    int positionOf(@NonNull List<BaseMutableData> list, @NonNull BaseMutableData data) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mComparator.compare(list.get(mid), data) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < list.size() && mComparator.compare(list.get(i), data) == 0; i++) {
+            if (list.get(i) == data) {
+                return i;
+            }
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 内存紧张时清空索引，下次查找时重建
+     */
+    void trimIndex() {
+        mIndex.clear();
+        mIndexedList = null;
+    }
+
+    private void rebuildIndex(List<BaseMutableData> list) {
+        mIndex.clear();
+        for (BaseMutableData data : list) {
+            mIndex.put(new Key(data), data);
+        }
+        mIndexedList = list;
+    }
+
+    /**
+     * 相等的数据插在后面，保持插入顺序
+     */
+    private int insertionPoint(List<BaseMutableData> list, BaseMutableData data) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mComparator.compare(list.get(mid), data) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean fitsAt(List<BaseMutableData> list, int position, BaseMutableData data) {
+        return (position == 0 || mComparator.compare(list.get(position - 1), data) <= 0)
+                && (position == list.size() - 1 || mComparator.compare(data, list.get(position + 1)) <= 0);
+    }
+
+    /**
+     * newData的payloadKeys是它自己的集合，bind之后会被清空，发出去的是副本
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Object payload(BaseMutableData oldData, BaseMutableData newData, Set<String> extraKeys) {
+        Set<String> payloadKeys = new HashSet<>(newData.getPayloadKeys());
+        payloadKeys.addAll(extraKeys);
+        payloadKeys.addAll(oldData.getPayloadKeys(newData));
+        return payloadKeys.isEmpty() ? null : payloadKeys;
+    }
+
+    private static final class Key {
+        final int viewId;
+        final Object feature;
+
+        Key(BaseMutableData data) {
+            this.viewId = data.getItemViewId();
+            this.feature = data.uniqueItemFeature();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return viewId == key.viewId && (feature == null ? key.feature == null : feature.equals(key.feature));
+        }
+
+        @Override
+        public int hashCode() {
+            return viewId * 31 + (feature != null ? feature.hashCode() : 0);
+        }
+    }
+}
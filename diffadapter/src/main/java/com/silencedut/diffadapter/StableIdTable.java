@@ -0,0 +1,91 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把viewId和uniqueItemFeature映射成stable id，第一次出现时分配一个递增的id，不是哈希，不会冲突。
+ * 同一条数据在整个adapter的生命周期里id不变
+ *
+ * 表里的数据远多于列表时只保留列表里还有的
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class StableIdTable {
+
+    private static final int PRUNE_SLACK = 64;
+
+    private final SparseArray<Map<Object, Long>> mIds = new SparseArray<>();
+    private long mNextId;
+    private int mCount;
+
+    long idOf(@NonNull BaseMutableData data) {
+        Map<Object, Long> ids = mIds.get(data.getItemViewId());
+        if (ids == null) {
+            ids = new HashMap<>();
+            mIds.put(data.getItemViewId(), ids);
+        }
+        Object feature = data.uniqueItemFeature();
+        Long id = ids.get(feature);
+        if (id == null) {
+            id = mNextId++;
+            ids.put(feature, id);
+            mCount++;
+        }
+        return id;
+    }
+
+    /**
+     * 列表替换后调用，表的大小超过列表两倍时去掉已经不在列表里的数据
+     */
+    void pruneIfNeeded(@NonNull List<BaseMutableData> currentList) {
+        if (mCount <= currentList.size() * 2 + PRUNE_SLACK) {
+            return;
+        }
+        prune(currentList);
+    }
+
+    /**
+     * 内存紧张时调用，只保留列表里还有的数据，它们的id不变，之后重新出现的数据分配新的id
+     */
+    void trim(@NonNull List<BaseMutableData> currentList) {
+        if (mCount > currentList.size()) {
+            prune(currentList);
+        }
+    }
+
+    private void prune(@NonNull List<BaseMutableData> currentList) {
+        SparseArray<Map<Object, Long>> kept = new SparseArray<>();
+        int count = 0;
+        for (BaseMutableData data : currentList) {
+            if (data == null) {
+                continue;
+            }
+            Map<Object, Long> ids = mIds.get(data.getItemViewId());
+            Long id = ids != null ? ids.get(data.uniqueItemFeature()) : null;
+            if (id == null) {
+                continue;
+            }
+            Map<Object, Long> keptIds = kept.get(data.getItemViewId());
+            if (keptIds == null) {
+                keptIds = new HashMap<>();
+                kept.put(data.getItemViewId(), keptIds);
+            }
+            if (keptIds.put(data.uniqueItemFeature(), id) == null) {
+                count++;
+            }
+        }
+        mIds.clear();
+        for (int i = 0; i < kept.size(); i++) {
+            mIds.put(kept.keyAt(i), kept.valueAt(i));
+        }
+        mCount = count;
+    }
+}
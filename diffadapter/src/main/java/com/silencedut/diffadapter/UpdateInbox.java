@@ -0,0 +1,304 @@
+package com.silencedut.diffadapter;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 可以在任意线程调用的修改入口，socket、数据库等线程不用每条消息都post一个Runnable到主线程
+ *
+ * 修改先放进一个有界的无锁队列(按槽位序号CAS的环形数组)，主线程每帧最多取一次，
+ * 这一帧收到的所有修改在一次列表修改里按顺序执行。队列满时按overflowPolicy处理：
+ * {@link #OVERFLOW_BLOCK}等待主线程取走，{@link #OVERFLOW_DROP_OLDEST}丢掉最早的一条，
+ * {@link #OVERFLOW_COALESCE}时update直接替换队列里同一个key还没执行的add、insert或update的数据，
+ * 在原来的位置执行，适合状态更新这样的消息；不能合并的修改和OVERFLOW_BLOCK一样等待
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class UpdateInbox {
+
+    private static final String TAG = "UpdateInbox";
+    public static final int OVERFLOW_BLOCK = 0;
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+    public static final int OVERFLOW_COALESCE = 2;
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+    private static final long BLOCK_PARK_NANOS = 1000000;
+
+    static final int OP_ADD = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_UPDATE = 2;
+    static final int OP_DELETE = 3;
+
+    private final DiffAdapter mAdapter;
+    private final int mOverflowPolicy;
+    private final int mMask;
+    private final AtomicReferenceArray<Op> mSlots;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mHead = new AtomicLong();
+    /**
+     * {@link #OVERFLOW_COALESCE}时队列里每个key最后一次add、insert或update，只记录在队列里的修改，不会超过队列容量
+     */
+    private final ConcurrentHashMap<Object, Op> mQueued = new ConcurrentHashMap<>();
+    private final AtomicInteger mDroppedCount = new AtomicInteger();
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                postFrameCallback();
+            } else {
+                mMainHandler.postDelayed(mDrainRunnable, FALLBACK_FRAME_DELAY);
+            }
+        }
+    };
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    UpdateInbox(@NonNull DiffAdapter adapter, int capacity, int overflowPolicy) {
+        this.mAdapter = adapter;
+        this.mOverflowPolicy = overflowPolicy;
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mMask = size - 1;
+        this.mSlots = new AtomicReferenceArray<>(size);
+        this.mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    public void add(@NonNull BaseMutableData data) {
+        post(new Op(OP_ADD, -1, data, data.uniqueItemFeature()));
+    }
+
+    public void insert(int position, @NonNull BaseMutableData data) {
+        post(new Op(OP_INSERT, position, data, data.uniqueItemFeature()));
+    }
+
+    /**
+     * 替换列表里uniqueItemFeature相同的数据，和{@link DiffAdapter#updateData(BaseMutableData)}一样
+     */
+    public void update(@NonNull BaseMutableData data) {
+        post(new Op(OP_UPDATE, -1, data, data.uniqueItemFeature()));
+    }
+
+    public void delete(@NonNull Object uniqueItemFeature) {
+        post(new Op(OP_DELETE, -1, null, uniqueItemFeature));
+    }
+
+    /**
+     * 因为队列满被丢掉或者合并掉的修改数量
+     */
+    public int getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    private void post(Op op) {
+        while (!offer(op)) {
+            if (!onFull(op)) {
+                break;
+            }
+        }
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mMainHandler.post(mScheduleFrame);
+        }
+    }
+
+    /**
+     * @return 是否需要再次放入队列
+     */
+    private boolean onFull(Op op) {
+        switch (mOverflowPolicy) {
+            case OVERFLOW_DROP_OLDEST:
+                if (poll() != null) {
+                    mDroppedCount.incrementAndGet();
+                }
+                return true;
+            case OVERFLOW_COALESCE:
+                if (op.type == OP_UPDATE && coalesce(op)) {
+                    return false;
+                }
+                awaitDrain();
+                return true;
+            default:
+                awaitDrain();
+                return true;
+        }
+    }
+
+    private void awaitDrain() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            drain();
+        } else {
+            if (mDrainScheduled.compareAndSet(false, true)) {
+                mMainHandler.post(mScheduleFrame);
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    /**
+     * @return 是否合并到了队列里同一个key的修改，主线程已经取走时返回false
+     */
+    private boolean coalesce(Op op) {
+        Op queued = mQueued.get(op.key);
+        if (queued == null) {
+            return false;
+        }
+        if (queued.replace(op.data)) {
+            mDroppedCount.incrementAndGet();
+            return true;
+        }
+        mQueued.remove(op.key, queued);
+        return false;
+    }
+
+    private boolean offer(Op op) {
+        while (true) {
+            long tail = mTail.get();
+            int index = (int) (tail & mMask);
+            long diff = mSequences.get(index) - tail;
+            if (diff == 0) {
+                if (mTail.compareAndSet(tail, tail + 1)) {
+                    mSlots.set(index, op);
+                    mSequences.set(index, tail + 1);
+                    if (mOverflowPolicy == OVERFLOW_COALESCE) {
+                        if (op.type == OP_DELETE) {
+                            // 删除之后的update不能合并到删除之前的修改里
+                            mQueued.remove(op.key);
+                        } else {
+                            mQueued.put(op.key, op);
+                        }
+                    }
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 主线程取数据，{@link #OVERFLOW_DROP_OLDEST}时写入的线程也会调用
+     */
+    private Op poll() {
+        while (true) {
+            long head = mHead.get();
+            int index = (int) (head & mMask);
+            long diff = mSequences.get(index) - (head + 1);
+            if (diff == 0) {
+                if (mHead.compareAndSet(head, head + 1)) {
+                    Op op = mSlots.getAndSet(index, null);
+                    mSequences.set(index, head + mMask + 1);
+                    return op;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 主线程调用，取出所有修改一次执行
+     */
+    void drain() {
+        mDrainScheduled.set(false);
+        List<Op> ops = new ArrayList<>();
+        Op op;
+        while ((op = poll()) != null) {
+            op.take();
+            if (mOverflowPolicy == OVERFLOW_COALESCE) {
+                mQueued.remove(op.key, op);
+            }
+            ops.add(op);
+        }
+        if (!ops.isEmpty()) {
+            Log.d(TAG, "drain " + ops.size());
+            mAdapter.applyInboxOps(ops);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    drain();
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    static final class Op {
+        final int type;
+        final int position;
+        final Object key;
+        /**
+         * 主线程取出之后的数据
+         */
+        BaseMutableData data;
+        /**
+         * 还在队列里时可以被同一个key之后的update替换，主线程取出时置为null
+         */
+        private final AtomicReference<BaseMutableData> mPending;
+
+        Op(int type, int position, BaseMutableData data, Object key) {
+            this.type = type;
+            this.position = position;
+            this.data = data;
+            this.key = key;
+            this.mPending = new AtomicReference<>(data);
+        }
+
+        boolean replace(BaseMutableData newData) {
+            while (true) {
+                BaseMutableData current = mPending.get();
+                if (current == null) {
+                    return false;
+                }
+                if (mPending.compareAndSet(current, newData)) {
+                    return true;
+                }
+            }
+        }
+
+        void take() {
+            BaseMutableData latest = mPending.getAndSet(null);
+            if (latest != null) {
+                data = latest;
+            }
+        }
+    }
+}
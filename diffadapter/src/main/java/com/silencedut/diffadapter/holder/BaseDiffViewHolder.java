@@ -34,6 +34,10 @@ public abstract class BaseDiffViewHolder<T extends BaseMutableData> extends Recy
     private Context mContext;
     private LayoutInflater mLayoutInflater;
     private T mData;
+    /**
+     * 最近一次调用updateItem或者updatePartWithPayload时的位置
+     */
+    private int mBoundPosition = RecyclerView.NO_POSITION;
 
     protected LayoutInflater getLayoutInflater() {
         return mLayoutInflater;
@@ -55,11 +59,52 @@ public abstract class BaseDiffViewHolder<T extends BaseMutableData> extends Recy
         this.mLayoutInflater = LayoutInflater.from(this.mContext);
     }
 
+    /**
+     * 使用共享缓存池时holder可能被另一个DiffAdapter复用，绑定数据前切换到当前的adapter
+     */
+    public final void attachAdapter(@NonNull DiffAdapter adapter) {
+        this.mBaseAdapter = adapter;
+    }
+
+    /**
+     * 新数据和已经绑定的是同一条、UI相同并且位置没变时只替换数据，不调用{@link #updateItem(BaseMutableData, int)}，
+     * 只用于stable id下全量刷新时跳过没有变化的行。全量刷新时行可能换了位置，位置变了要重新绑定，
+     * 否则updateItem里保存的position是旧的。原地修改的数据和绑定的是同一个对象，这里发现不了变化，
+     * 明确通知修改的行需要用{@link #update(BaseMutableData, int)}
+     *
+     * @return 是否跳过了绑定
+     */
+    @SuppressWarnings("unchecked")
+    public final boolean updateIfUIChanged(@NonNull T data, int position) {
+        T bound = mData;
+        if (position != mBoundPosition) {
+            update(data, position);
+            return false;
+        }
+        if (bound == data || bound != null && bound.getClass() == data.getClass()
+                && bound.getItemViewId() == data.getItemViewId()
+                && bound.uniqueItemFeature().equals(data.uniqueItemFeature()) && bound.areUISame(data)) {
+            this.mData = data;
+            return true;
+        }
+        update(data, position);
+        return false;
+    }
+
     public final void update(@NonNull T data, int position) {
         this.mData = data;
+        this.mBoundPosition = position;
         updateItem(data,position);
     }
 
+    /**
+     * 局部刷新，调用{@link #updatePartWithPayload(BaseMutableData, Set, int)}并记录绑定的位置
+     */
+    public final void updatePart(@NonNull T data, @NonNull Set<String> payloadKeys, int position) {
+        this.mBoundPosition = position;
+        updatePartWithPayload(data, payloadKeys, position);
+    }
+
     /**
      * default update item way , which payload is empty
      * @param data
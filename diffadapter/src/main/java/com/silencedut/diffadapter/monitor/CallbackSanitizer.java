@@ -0,0 +1,243 @@
+package com.silencedut.diffadapter.monitor;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 调试用：检查数据类的回调是否够快、结果是否稳定。diff会调用上百万次uniqueItemFeature、areUISame、
+ * appendPayloadKeys，mediator每次更新都会调用appendMatchFeature，一个慢的或者结果不确定的实现会让diff变慢甚至出错
+ *
+ * 按sampleRate抽样，抽到的调用记录耗时(按数据类和回调统计直方图)，并且用同样的参数再调用一次比较结果，
+ * 结果不同或者feature的equals和hashCode不一致时记录下来，{@link #dump(int)}输出最慢的和有问题的数据类
+ *
+ * 只在debuggable的应用里生效，见{@link #isAllowed(Context)}
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class CallbackSanitizer {
+
+    private static final String TAG = "CallbackSanitizer";
+
+    public static final int CALLBACK_UNIQUE_FEATURE = 0;
+    public static final int CALLBACK_UI_SAME = 1;
+    public static final int CALLBACK_PAYLOAD_KEYS = 2;
+    public static final int CALLBACK_MATCH_FEATURE = 3;
+    private static final int CALLBACK_COUNT = 4;
+    private static final String[] CALLBACK_NAMES = {"uniqueItemFeature", "areUISame", "appendPayloadKeys",
+            "appendMatchFeature"};
+
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+    /**
+     * 第i个桶是[2^(i-1), 2^i)微秒，第0个桶是小于1微秒，最后一个桶包括更慢的
+     */
+    private static final int BUCKET_COUNT = 16;
+    private static final int MAX_ISSUES = 50;
+
+    private final int mSampleRate;
+    private final AtomicInteger mCallCount = new AtomicInteger();
+    private final Map<Class, Stats[]> mStats = new HashMap<>();
+    private final Set<String> mIssues = new LinkedHashSet<>();
+
+    public CallbackSanitizer() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate 每sampleRate次调用检查一次，1表示每次都检查
+     */
+    public CallbackSanitizer(int sampleRate) {
+        this.mSampleRate = Math.max(1, sampleRate);
+    }
+
+    public static boolean isAllowed(@NonNull Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    @NonNull
+    public Object uniqueItemFeature(@NonNull BaseMutableData data) {
+        if (!sample()) {
+            return data.uniqueItemFeature();
+        }
+        long start = System.nanoTime();
+        Object feature = data.uniqueItemFeature();
+        record(data.getClass(), CALLBACK_UNIQUE_FEATURE, System.nanoTime() - start);
+        Object again = data.uniqueItemFeature();
+        if (!feature.equals(again) || !again.equals(feature)) {
+            issue(data.getClass(), "uniqueItemFeature is not stable: " + feature + " / " + again);
+        } else if (feature.hashCode() != again.hashCode()) {
+            issue(data.getClass(), "uniqueItemFeature equals but hashCode differs: " + feature.getClass().getName());
+        }
+        return feature;
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean areUISame(@NonNull BaseMutableData oldItem, @NonNull BaseMutableData newItem) {
+        if (!sample()) {
+            return oldItem.areUISame(newItem);
+        }
+        long start = System.nanoTime();
+        boolean same = oldItem.areUISame(newItem);
+        record(oldItem.getClass(), CALLBACK_UI_SAME, System.nanoTime() - start);
+        if (same != oldItem.areUISame(newItem)) {
+            issue(oldItem.getClass(), "areUISame returns different results for the same items");
+        }
+        if (!oldItem.areUISame(oldItem)) {
+            issue(oldItem.getClass(), "areUISame is false for the item itself");
+        }
+        return same;
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public Set<String> payloadKeys(@NonNull BaseMutableData oldItem, @NonNull BaseMutableData newItem) {
+        if (!sample()) {
+            return oldItem.getPayloadKeys(newItem);
+        }
+        long start = System.nanoTime();
+        Set<String> keys = oldItem.getPayloadKeys(newItem);
+        record(oldItem.getClass(), CALLBACK_PAYLOAD_KEYS, System.nanoTime() - start);
+        Set<String> first = new HashSet<>();
+        Set<String> second = new HashSet<>();
+        oldItem.appendPayloadKeys(newItem, first);
+        oldItem.appendPayloadKeys(newItem, second);
+        if (!first.equals(second)) {
+            issue(oldItem.getClass(), "appendPayloadKeys is not stable: " + first + " / " + second);
+        }
+        return keys;
+    }
+
+    @NonNull
+    public Set<Object> matchFeatures(@NonNull BaseMutableData data) {
+        if (!sample()) {
+            return data.matchChangeFeatures();
+        }
+        long start = System.nanoTime();
+        Set<Object> features = data.matchChangeFeatures();
+        record(data.getClass(), CALLBACK_MATCH_FEATURE, System.nanoTime() - start);
+        Set<Object> first = new HashSet<>();
+        Set<Object> second = new HashSet<>();
+        data.appendMatchFeature(first);
+        data.appendMatchFeature(second);
+        if (!first.equals(second)) {
+            issue(data.getClass(), "appendMatchFeature is not stable: " + first + " / " + second);
+        }
+        return features;
+    }
+
+    /**
+     * @param maxEntries 最多输出多少个(数据类, 回调)，按抽样的总耗时排序
+     */
+    @NonNull
+    public synchronized String dump(int maxEntries) {
+        List<Stats> all = new ArrayList<>();
+        for (Stats[] stats : mStats.values()) {
+            for (Stats stat : stats) {
+                if (stat != null) {
+                    all.add(stat);
+                }
+            }
+        }
+        Collections.sort(all, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats o1, Stats o2) {
+                // Long.compare需要API 19
+                return o1.totalNanos < o2.totalNanos ? 1 : (o1.totalNanos > o2.totalNanos ? -1 : 0);
+            }
+        });
+        StringBuilder builder = new StringBuilder("CallbackSanitizer sampleRate:").append(mSampleRate);
+        for (int i = 0; i < Math.min(maxEntries, all.size()); i++) {
+            Stats stats = all.get(i);
+            builder.append('\n').append(stats.dataClass.getSimpleName()).append('.')
+                    .append(CALLBACK_NAMES[stats.callback])
+                    .append(String.format(Locale.US, " samples:%d avg:%.2fus max:%.2fus |", stats.samples,
+                            stats.totalNanos / 1000f / stats.samples, stats.maxNanos / 1000f));
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                if (stats.buckets[bucket] > 0) {
+                    builder.append(' ').append(bucketName(bucket)).append(':').append(stats.buckets[bucket]);
+                }
+            }
+        }
+        if (!mIssues.isEmpty()) {
+            builder.append("\nissues:");
+            for (String issue : mIssues) {
+                builder.append("\n  ").append(issue);
+            }
+        }
+        return builder.toString();
+    }
+
+    public synchronized void reset() {
+        mStats.clear();
+        mIssues.clear();
+    }
+
+    private boolean sample() {
+        return mCallCount.incrementAndGet() % mSampleRate == 0;
+    }
+
+    private synchronized void record(Class dataClass, int callback, long nanos) {
+        Stats[] stats = mStats.get(dataClass);
+        if (stats == null) {
+            stats = new Stats[CALLBACK_COUNT];
+            mStats.put(dataClass, stats);
+        }
+        Stats stat = stats[callback];
+        if (stat == null) {
+            stat = new Stats(dataClass, callback);
+            stats[callback] = stat;
+        }
+        stat.samples++;
+        stat.totalNanos += nanos;
+        stat.maxNanos = Math.max(stat.maxNanos, nanos);
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        stat.buckets[bucket]++;
+    }
+
+    private synchronized void issue(Class dataClass, String message) {
+        if (mIssues.size() < MAX_ISSUES && mIssues.add(dataClass.getSimpleName() + ": " + message)) {
+            Log.w(TAG, dataClass.getName() + ": " + message);
+        }
+    }
+
+    private static String bucketName(int bucket) {
+        if (bucket == 0) {
+            return "<1us";
+        }
+        if (bucket == BUCKET_COUNT - 1) {
+            return ">=" + (1 << (bucket - 1)) + "us";
+        }
+        return (1 << (bucket - 1)) + "-" + (1 << bucket) + "us";
+    }
+
+    private static class Stats {
+        final Class dataClass;
+        final int callback;
+        final long[] buckets = new long[BUCKET_COUNT];
+        long samples;
+        long totalNanos;
+        long maxNanos;
+
+        Stats(Class dataClass, int callback) {
+            this.dataClass = dataClass;
+            this.callback = callback;
+        }
+    }
+}
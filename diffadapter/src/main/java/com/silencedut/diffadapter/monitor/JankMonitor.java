@@ -0,0 +1,355 @@
+package com.silencedut.diffadapter.monitor;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseIntArray;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 卡顿归因：按帧统计{@link com.silencedut.diffadapter.DiffAdapter}在这一帧里做了哪些操作，
+ * 超过阈值的帧连同操作记录保存在一个容量固定的缓冲里，只保留最慢的那些帧，可以随时{@link #dump()}出来
+ *
+ * 帧耗时用{@link Choreographer}相邻两次回调的frameTimeNanos差值来算，两次回调之间发生的adapter操作都归到这一帧，
+ * 因为minSdk是14，没有用只在API 24以上才有的FrameMetrics
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class JankMonitor {
+
+    private static final String TAG = "JankMonitor";
+
+    public static final int OP_LATCH = 0;
+    public static final int OP_INSERT = 1;
+    public static final int OP_REMOVE = 2;
+    public static final int OP_MOVE = 3;
+    public static final int OP_CHANGE = 4;
+    public static final int OP_CREATE = 5;
+    public static final int OP_BIND = 6;
+    public static final int OP_PAYLOAD_BIND = 7;
+    public static final int OP_MEDIATOR = 8;
+    private static final int OP_COUNT = 9;
+    private static final String[] OP_NAMES = {"latch", "insert", "remove", "move", "change", "create", "bind",
+            "payloadBind", "mediator"};
+
+    public static final long DEFAULT_JANK_THRESHOLD_MS = 17;
+    public static final int DEFAULT_MAX_FRAMES = 20;
+
+    private final long mJankThresholdNanos;
+    private final JankFrame[] mWorstFrames;
+    private int mWorstFrameCount;
+
+    /**
+     * 当前帧正在累计的数据，帧结束时如果没有卡顿直接重置，不产生新对象
+     */
+    private final int[] mOpCounts = new int[OP_COUNT];
+    private final long[] mOpNanos = new long[OP_COUNT];
+    private final SparseIntArray mBindTypes = new SparseIntArray();
+    private final SparseIntArray mPayloadBindTypes = new SparseIntArray();
+    private long mLatchedGeneration = -1;
+    private long mLastFrameTimeNanos;
+    private long mTotalFrames;
+    private long mJankFrames;
+
+    private boolean mStarted;
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private final RecyclerView.AdapterDataObserver mDataObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            onOperation(OP_CHANGE, 1, 0);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onOperation(OP_CHANGE, itemCount, 0);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            onOperation(OP_CHANGE, itemCount, 0);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onOperation(OP_INSERT, itemCount, 0);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onOperation(OP_REMOVE, itemCount, 0);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            onOperation(OP_MOVE, itemCount, 0);
+        }
+    };
+
+    public JankMonitor() {
+        this(DEFAULT_JANK_THRESHOLD_MS, DEFAULT_MAX_FRAMES);
+    }
+
+    /**
+     * @param jankThresholdMs 超过这个时长的帧认为是卡顿帧
+     * @param maxFrames       最多保留多少个最慢的帧
+     */
+    public JankMonitor(long jankThresholdMs, int maxFrames) {
+        this.mJankThresholdNanos = jankThresholdMs * 1000000L;
+        this.mWorstFrames = new JankFrame[Math.max(1, maxFrames)];
+    }
+
+    /**
+     * 监听adapter所有的notify，不管是diff结果还是直接的增删改
+     */
+    public RecyclerView.AdapterDataObserver getDataObserver() {
+        return mDataObserver;
+    }
+
+    public void start() {
+        if (mStarted || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        mStarted = true;
+        mLastFrameTimeNanos = 0;
+        resetCurrentFrame();
+        postFrameCallback();
+    }
+
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+    }
+
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * 记录一次adapter操作
+     *
+     * @param op      操作类型，OP_开头的常量
+     * @param count   影响的条目数
+     * @param nanos   操作耗时，不可测量时传0
+     */
+    public void onOperation(int op, int count, long nanos) {
+        if (!mStarted) {
+            return;
+        }
+        mOpCounts[op] += count;
+        mOpNanos[op] += nanos;
+    }
+
+    public void onBind(int viewType, boolean withPayload, long nanos) {
+        if (!mStarted) {
+            return;
+        }
+        SparseIntArray types = withPayload ? mPayloadBindTypes : mBindTypes;
+        types.put(viewType, types.get(viewType) + 1);
+        onOperation(withPayload ? OP_PAYLOAD_BIND : OP_BIND, 1, nanos);
+    }
+
+    public void onLatch(long generation, long nanos) {
+        if (!mStarted) {
+            return;
+        }
+        mLatchedGeneration = generation;
+        onOperation(OP_LATCH, 1, nanos);
+    }
+
+    public long getTotalFrames() {
+        return mTotalFrames;
+    }
+
+    public long getJankFrames() {
+        return mJankFrames;
+    }
+
+    /**
+     * @return 保存的卡顿帧，按耗时从大到小排列
+     */
+    @NonNull
+    public List<JankFrame> getWorstFrames() {
+        List<JankFrame> frames = new ArrayList<>(mWorstFrameCount);
+        for (int i = 0; i < mWorstFrameCount; i++) {
+            frames.add(mWorstFrames[i]);
+        }
+        Collections.sort(frames, new Comparator<JankFrame>() {
+            @Override
+            public int compare(JankFrame o1, JankFrame o2) {
+                return o1.durationNanos > o2.durationNanos ? -1 : (o1.durationNanos == o2.durationNanos ? 0 : 1);
+            }
+        });
+        return frames;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mWorstFrameCount; i++) {
+            mWorstFrames[i] = null;
+        }
+        mWorstFrameCount = 0;
+        mTotalFrames = 0;
+        mJankFrames = 0;
+        resetCurrentFrame();
+    }
+
+    @NonNull
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("JankMonitor frames:").append(mTotalFrames).append(" jank:").append(mJankFrames).append('\n');
+        for (JankFrame frame : getWorstFrames()) {
+            builder.append(frame).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (!mStarted) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0) {
+            long duration = frameTimeNanos - mLastFrameTimeNanos;
+            mTotalFrames++;
+            if (duration > mJankThresholdNanos) {
+                mJankFrames++;
+                recordJank(mLastFrameTimeNanos, duration);
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        resetCurrentFrame();
+        postFrameCallback();
+    }
+
+    private void recordJank(long frameTimeNanos, long duration) {
+        int slot;
+        if (mWorstFrameCount < mWorstFrames.length) {
+            slot = mWorstFrameCount++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < mWorstFrames.length; i++) {
+                if (mWorstFrames[i].durationNanos < mWorstFrames[slot].durationNanos) {
+                    slot = i;
+                }
+            }
+            if (mWorstFrames[slot].durationNanos >= duration) {
+                return;
+            }
+        }
+        JankFrame frame = new JankFrame(frameTimeNanos, duration, mLatchedGeneration, mOpCounts.clone(),
+                mOpNanos.clone(), mBindTypes.clone(), mPayloadBindTypes.clone());
+        mWorstFrames[slot] = frame;
+        Log.d(TAG, "jank " + frame);
+    }
+
+    private void resetCurrentFrame() {
+        for (int i = 0; i < OP_COUNT; i++) {
+            mOpCounts[i] = 0;
+            mOpNanos[i] = 0;
+        }
+        mBindTypes.clear();
+        mPayloadBindTypes.clear();
+        mLatchedGeneration = -1;
+    }
+
+    /**
+     * 一个卡顿帧以及这一帧里adapter做的操作
+     */
+    public static class JankFrame {
+        public final long frameTimeNanos;
+        public final long durationNanos;
+        /**
+         * 这一帧latch的generation，没有latch为-1
+         */
+        public final long latchedGeneration;
+        private final int[] opCounts;
+        private final long[] opNanos;
+        /**
+         * viewType到全量bind次数
+         */
+        public final SparseIntArray bindTypes;
+        /**
+         * viewType到payload bind次数
+         */
+        public final SparseIntArray payloadBindTypes;
+
+        JankFrame(long frameTimeNanos, long durationNanos, long latchedGeneration, int[] opCounts, long[] opNanos,
+                  SparseIntArray bindTypes, SparseIntArray payloadBindTypes) {
+            this.frameTimeNanos = frameTimeNanos;
+            this.durationNanos = durationNanos;
+            this.latchedGeneration = latchedGeneration;
+            this.opCounts = opCounts;
+            this.opNanos = opNanos;
+            this.bindTypes = bindTypes;
+            this.payloadBindTypes = payloadBindTypes;
+        }
+
+        public int getOpCount(int op) {
+            return opCounts[op];
+        }
+
+        public long getOpNanos(int op) {
+            return opNanos[op];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.US, "frame %.1fms", durationNanos / 1000000f));
+            if (latchedGeneration >= 0) {
+                builder.append(" latch generation ").append(latchedGeneration);
+            }
+            for (int i = 0; i < OP_COUNT; i++) {
+                if (opCounts[i] > 0) {
+                    builder.append(", ").append(OP_NAMES[i]).append(':').append(opCounts[i]);
+                    if (opNanos[i] > 0) {
+                        builder.append(String.format(Locale.US, "(%.1fms)", opNanos[i] / 1000000f));
+                    }
+                }
+            }
+            appendTypes(builder, " bind types", bindTypes);
+            appendTypes(builder, " payload bind types", payloadBindTypes);
+            return builder.toString();
+        }
+
+        private static void appendTypes(StringBuilder builder, String name, SparseIntArray types) {
+            if (types.size() == 0) {
+                return;
+            }
+            builder.append(',').append(name).append('{');
+            for (int i = 0; i < types.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append("0x").append(Integer.toHexString(types.keyAt(i))).append('=').append(types.valueAt(i));
+            }
+            builder.append('}');
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.silencedut.diffadapter.paging;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.List;
+
+/**
+ * @author agent
+ * @date 2026/10/19
+ * 分页模式下按页加载数据，由{@link PagedController}根据滑动位置调用
+ */
+public interface PageLoader<T extends BaseMutableData> {
+
+    /**
+     * 加载一页数据，可以在任意线程回调结果，同一页可能因为被释放后又滑回来而加载多次
+     *
+     * @param page     页码，从0开始
+     * @param pageSize 每页的数量
+     * @param callback 加载结果
+     */
+    void loadPage(int page, int pageSize, @NonNull Callback<T> callback);
+
+    interface Callback<T> {
+
+        /**
+         * @param datas    这一页的数据
+         * @param lastPage 是否已经是最后一页
+         */
+        void onPageLoaded(@NonNull List<T> datas, boolean lastPage);
+
+        void onPageFailed();
+    }
+}
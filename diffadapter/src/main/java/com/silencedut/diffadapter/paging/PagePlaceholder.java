@@ -0,0 +1,36 @@
+package com.silencedut.diffadapter.paging;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+/**
+ * @author agent
+ * @date 2026/10/19
+ * 分页模式下还没加载或者已经被释放的页用占位数据填充，保持列表位置不变，
+ * 同一个{@link PagedController}的所有占位行共用一个对象，需要给placeholder的layout注册对应的Holder
+ */
+public class PagePlaceholder extends BaseMutableData<PagePlaceholder> {
+
+    private final int mViewId;
+
+    PagePlaceholder(int viewId) {
+        this.mViewId = viewId;
+    }
+
+    @NonNull
+    @Override
+    public Object uniqueItemFeature() {
+        return this;
+    }
+
+    @Override
+    public boolean areUISame(@NonNull PagePlaceholder data) {
+        return true;
+    }
+
+    @Override
+    public int getItemViewId() {
+        return mViewId;
+    }
+}
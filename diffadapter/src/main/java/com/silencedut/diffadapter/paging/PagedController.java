@@ -0,0 +1,279 @@
+package com.silencedut.diffadapter.paging;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author agent
+ * @date 2026/10/19
+ *
+ * 分页模式：根据滑动位置按页加载数据，距离可见区域超过prefetchDistance的页先加载，
+ * 离可见区域太远的页释放成占位数据，同时加载的页数不超过maxLoadedPages左右，不管滑多远内存都是有限的
+ *
+ * 每页的加载和释放都通过{@link DiffAdapter#replaceDatas(int, int, List)}只替换这一页，diff也只在这一页里做，
+ * 释放的页保留原来的行数，列表位置不会变化。使用分页模式时不要再调用setDatas等直接修改列表的方法
+ */
+public class PagedController<T extends BaseMutableData> {
+
+    private static final String TAG = "PagedController";
+    private static final int STATE_LOADING = 0;
+    private static final int STATE_LOADED = 1;
+    private static final int STATE_DROPPED = 2;
+    private static final int STATE_FAILED = 3;
+    private static final int DEFAULT_MAX_LOADED_PAGES = 5;
+
+    private final DiffAdapter mAdapter;
+    private final PageLoader<T> mLoader;
+    private final int mPageSize;
+    private final PagePlaceholder mPlaceholder;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int mPrefetchDistance;
+    private int mMaxLoadedPages = DEFAULT_MAX_LOADED_PAGES;
+
+    private final List<Page> mPages = new ArrayList<>();
+    private boolean mReachedEnd;
+    private int mLoadToken;
+    @Nullable
+    private RecyclerView mRecyclerView;
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            onViewportChanged();
+        }
+    };
+
+    /**
+     * @param pageSize          每页的数量
+     * @param placeholderViewId 占位行的layout id，需要调用{@link DiffAdapter#registerHolder(Class, int)}注册对应的Holder
+     */
+    public PagedController(@NonNull DiffAdapter adapter, @NonNull PageLoader<T> loader, int pageSize,
+                           int placeholderViewId) {
+        this.mAdapter = adapter;
+        this.mLoader = loader;
+        this.mPageSize = Math.max(1, pageSize);
+        this.mPlaceholder = new PagePlaceholder(placeholderViewId);
+        this.mPrefetchDistance = mPageSize;
+    }
+
+    /**
+     * @param prefetchDistance 可见区域前后多少行以内的页需要提前加载，默认是一页
+     */
+    public PagedController<T> setPrefetchDistance(int prefetchDistance) {
+        this.mPrefetchDistance = Math.max(0, prefetchDistance);
+        return this;
+    }
+
+    /**
+     * @param maxLoadedPages 可见区域以外保留的已加载页数，超过的页释放成占位数据
+     */
+    public PagedController<T> setMaxLoadedPages(int maxLoadedPages) {
+        this.mMaxLoadedPages = Math.max(1, maxLoadedPages);
+        return this;
+    }
+
+    public void attach(@NonNull RecyclerView recyclerView) {
+        detach();
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(mScrollListener);
+    }
+
+    public void detach() {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(mScrollListener);
+            mRecyclerView = null;
+        }
+    }
+
+    /**
+     * 清空列表从第一页开始加载，也用于下拉刷新
+     */
+    public void start() {
+        mLoadToken++;
+        mPages.clear();
+        mReachedEnd = false;
+        mAdapter.replaceDatas(0, Integer.MAX_VALUE, Collections.<BaseMutableData>emptyList());
+        appendPage();
+    }
+
+    /**
+     * 重新加载失败的页
+     */
+    public void retry() {
+        for (Page page : mPages) {
+            if (page.state == STATE_FAILED) {
+                load(page);
+            }
+        }
+    }
+
+    public int getLoadedPageCount() {
+        int count = 0;
+        for (Page page : mPages) {
+            if (page.state == STATE_LOADED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void appendPage() {
+        Page page = new Page(mPages.size());
+        page.size = mPageSize;
+        int start = rowCount();
+        mPages.add(page);
+        mAdapter.replaceDatas(start, 0, placeholders(page.size));
+        load(page);
+    }
+
+    private void load(final Page page) {
+        page.state = STATE_LOADING;
+        final int token = ++mLoadToken;
+        page.token = token;
+        mLoader.loadPage(page.index, mPageSize, new PageLoader.Callback<T>() {
+            @Override
+            public void onPageLoaded(@NonNull final List<T> datas, final boolean lastPage) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(page, token, datas, lastPage);
+                    }
+                });
+            }
+
+            @Override
+            public void onPageFailed() {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (page.token == token) {
+                            page.state = STATE_FAILED;
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLoaded(Page page, int token, List<T> datas, boolean lastPage) {
+        if (page.token != token || page.index >= mPages.size() || mPages.get(page.index) != page) {
+            return;
+        }
+        mAdapter.replaceDatas(startOf(page), page.size, datas);
+        page.size = datas.size();
+        page.state = STATE_LOADED;
+        if (lastPage && page.index == mPages.size() - 1) {
+            mReachedEnd = true;
+        }
+        onViewportChanged();
+    }
+
+    private void onViewportChanged() {
+        RecyclerView recyclerView = mRecyclerView;
+        if (recyclerView == null || mPages.isEmpty()) {
+            return;
+        }
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            View child = recyclerView.getChildAt(i);
+            int position = recyclerView.getChildLayoutPosition(child);
+            if (position != RecyclerView.NO_POSITION) {
+                first = Math.min(first, position);
+                last = Math.max(last, position);
+            }
+        }
+        if (last < 0) {
+            first = 0;
+            last = 0;
+        }
+        int from = Math.max(0, first - mPrefetchDistance);
+        int to = last + mPrefetchDistance;
+
+        int firstNeeded = -1;
+        int lastNeeded = -1;
+        int start = 0;
+        for (Page page : mPages) {
+            int end = start + page.size;
+            if (end > from && start <= to || page.size == 0 && start >= from && start <= to) {
+                if (firstNeeded < 0) {
+                    firstNeeded = page.index;
+                }
+                lastNeeded = page.index;
+                if (page.state == STATE_DROPPED) {
+                    load(page);
+                }
+            }
+            start = end;
+        }
+
+        Page lastPage = mPages.get(mPages.size() - 1);
+        if (to >= start && !mReachedEnd && lastPage.state == STATE_LOADED) {
+            appendPage();
+        }
+        if (firstNeeded >= 0) {
+            dropFarPages(firstNeeded, lastNeeded);
+        }
+    }
+
+    private void dropFarPages(int firstNeeded, int lastNeeded) {
+        int extra = Math.max(0, (mMaxLoadedPages - (lastNeeded - firstNeeded + 1)) / 2);
+        int keepFrom = firstNeeded - extra;
+        int keepTo = lastNeeded + extra;
+        int start = 0;
+        for (Page page : mPages) {
+            if (page.state == STATE_LOADED && (page.index < keepFrom || page.index > keepTo)) {
+                mAdapter.replaceDatas(start, page.size, placeholders(page.size));
+                page.state = STATE_DROPPED;
+                Log.d(TAG, "drop page " + page.index);
+            }
+            start += page.size;
+        }
+    }
+
+    private List<BaseMutableData> placeholders(int count) {
+        return Collections.<BaseMutableData>nCopies(count, mPlaceholder);
+    }
+
+    private int startOf(Page target) {
+        int start = 0;
+        for (Page page : mPages) {
+            if (page == target) {
+                break;
+            }
+            start += page.size;
+        }
+        return start;
+    }
+
+    private int rowCount() {
+        int count = 0;
+        for (Page page : mPages) {
+            count += page.size;
+        }
+        return count;
+    }
+
+    private static class Page {
+        final int index;
+        int size;
+        int state;
+        int token;
+
+        Page(int index) {
+            this.index = index;
+        }
+    }
+}
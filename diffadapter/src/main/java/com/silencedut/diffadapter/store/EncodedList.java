@@ -0,0 +1,414 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * 紧凑的列表表示：注册了{@link ItemCodec}的行编码后存放在池化的{@link ByteBuffer} slab里，
+ * 每行只占几个int，不再保留BaseMutableData对象以及它的两个HashSet，对象只在get(比如onBindViewHolder)时解码，
+ * 最近解码的少量对象放在LRU里。没有注册codec的类型按原来的方式保存对象
+ *
+ * diff时两行都是编码的，同一条数据按viewId和key的哈希判断，内容是否相同直接比较编码后的字节
+ *
+ * 每行的位置用一个int保存(slab序号 << 16 | offset)，记录长度写在slab里记录的前两个字节，
+ * 后台diff读的时候即使主线程在改这一行也不会读到不一致的位置和长度
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class EncodedList extends AbstractList<BaseMutableData> implements RandomAccess {
+
+    private static final int OBJECT_ROW = -1;
+    private static final int DECODED_CACHE_SIZE = 32;
+    private static final int MAX_RECORD = SlabPool.SLAB_SIZE - 2;
+    /**
+     * 每行在几个数组里占用的字节数，4个int和1个引用
+     */
+    public static final int ROW_BYTES = 20;
+
+    private final SparseArray<ItemCodec> mCodecs;
+    private final RecordWriter mWriter = new RecordWriter(256);
+    private final LruCache<Integer, BaseMutableData> mDecoded = new LruCache<>(DECODED_CACHE_SIZE);
+    private SlabPool.Slab[] mSlabs = new SlabPool.Slab[4];
+    private int mSlabCount;
+    private int mSlabUsed = SlabPool.SLAB_SIZE;
+    private int mLiveBytes;
+    private int mDeadBytes;
+
+    private int mSize;
+    private int[] mLocations = new int[16];
+    private int[] mViewIds = new int[16];
+    private int[] mKeyHashes = new int[16];
+    private int[] mRowIds = new int[16];
+    private Object[] mObjects = new Object[16];
+    private int mNextRowId;
+
+    /**
+     * 编码数据使用direct buffer还是堆内存，需要在创建列表之前调用
+     */
+    public static void setDirectSlabs(boolean direct) {
+        SlabPool.setDirect(direct);
+    }
+
+    /**
+     * 释放slab池里空闲的slab
+     *
+     * @return 释放的字节数
+     */
+    public static long trimSlabPool() {
+        return SlabPool.trim();
+    }
+
+    /**
+     * @param codecs viewId到codec，没有codec的类型保存对象
+     */
+    public EncodedList(@NonNull SparseArray<ItemCodec> codecs) {
+        this.mCodecs = codecs;
+    }
+
+    public EncodedList(@NonNull SparseArray<ItemCodec> codecs, @NonNull Collection<? extends BaseMutableData> datas) {
+        this(codecs);
+        ensureCapacity(datas.size());
+        for (BaseMutableData data : datas) {
+            add(mSize, data);
+        }
+    }
+
+    @Override
+    public BaseMutableData get(int index) {
+        checkIndex(index);
+        if (mLocations[index] == OBJECT_ROW) {
+            return (BaseMutableData) mObjects[index];
+        }
+        BaseMutableData data = mDecoded.get(mRowIds[index]);
+        if (data == null) {
+            data = decode(index);
+            mDecoded.put(mRowIds[index], data);
+        }
+        return data;
+    }
+
+    /**
+     * 和get一样，但解码的对象不放进缓存，查找时不会把正在显示的行挤出去
+     */
+    @NonNull
+    public BaseMutableData peek(int index) {
+        checkIndex(index);
+        if (mLocations[index] == OBJECT_ROW) {
+            return (BaseMutableData) mObjects[index];
+        }
+        BaseMutableData data = mDecoded.get(mRowIds[index]);
+        return data != null ? data : decode(index);
+    }
+
+    public int getItemViewId(int index) {
+        checkIndex(index);
+        return mViewIds[index];
+    }
+
+    /**
+     * 从fromIndex开始按viewId和key的哈希查找，只解码哈希相同的行确认key
+     *
+     * @return 没有找到时返回-1
+     */
+    public int indexOfItem(int viewId, @NonNull Object key, int fromIndex) {
+        int keyHash = key.hashCode();
+        for (int i = Math.max(0, fromIndex); i < mSize; i++) {
+            if (mViewIds[i] == viewId && mKeyHashes[i] == keyHash && key.equals(peek(i).uniqueItemFeature())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public BaseMutableData set(int index, BaseMutableData data) {
+        BaseMutableData old = peek(index);
+        releaseRow(index);
+        writeRow(index, data);
+        return old;
+    }
+
+    @Override
+    public void add(int index, BaseMutableData data) {
+        if (index < 0 || index > mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+        ensureCapacity(mSize + 1);
+        int moved = mSize - index;
+        if (moved > 0) {
+            System.arraycopy(mLocations, index, mLocations, index + 1, moved);
+            System.arraycopy(mViewIds, index, mViewIds, index + 1, moved);
+            System.arraycopy(mKeyHashes, index, mKeyHashes, index + 1, moved);
+            System.arraycopy(mRowIds, index, mRowIds, index + 1, moved);
+            System.arraycopy(mObjects, index, mObjects, index + 1, moved);
+        }
+        mSize++;
+        modCount++;
+        writeRow(index, data);
+    }
+
+    @Override
+    public BaseMutableData remove(int index) {
+        BaseMutableData old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            releaseRow(i);
+        }
+        int moved = mSize - toIndex;
+        System.arraycopy(mLocations, toIndex, mLocations, fromIndex, moved);
+        System.arraycopy(mViewIds, toIndex, mViewIds, fromIndex, moved);
+        System.arraycopy(mKeyHashes, toIndex, mKeyHashes, fromIndex, moved);
+        System.arraycopy(mRowIds, toIndex, mRowIds, fromIndex, moved);
+        System.arraycopy(mObjects, toIndex, mObjects, fromIndex, moved);
+        int newSize = mSize - (toIndex - fromIndex);
+        Arrays.fill(mObjects, newSize, mSize, null);
+        mSize = newSize;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, mSize);
+    }
+
+    public boolean isEncoded(int index) {
+        return mLocations[index] != OBJECT_ROW;
+    }
+
+    /**
+     * 两行都是编码的时候才能调用
+     */
+    public boolean isSameItem(int index, @NonNull EncodedList other, int otherIndex) {
+        return mViewIds[index] == other.mViewIds[otherIndex] && mKeyHashes[index] == other.mKeyHashes[otherIndex];
+    }
+
+    /**
+     * 两行都是编码的时候才能调用，直接比较编码后的字节
+     */
+    public boolean isSameContent(int index, @NonNull EncodedList other, int otherIndex) {
+        int location = mLocations[index];
+        int otherLocation = other.mLocations[otherIndex];
+        if (location == OBJECT_ROW || otherLocation == OBJECT_ROW) {
+            return false;
+        }
+        SlabPool.Slab[] slabs = mSlabs;
+        SlabPool.Slab[] otherSlabs = other.mSlabs;
+        if ((location >>> 16) >= slabs.length || (otherLocation >>> 16) >= otherSlabs.length) {
+            return false;
+        }
+        ByteBuffer buffer = slabs[location >>> 16].buffer;
+        ByteBuffer otherBuffer = otherSlabs[otherLocation >>> 16].buffer;
+        int offset = location & 0xFFFF;
+        int otherOffset = otherLocation & 0xFFFF;
+        if (buffer == otherBuffer && offset == otherOffset) {
+            return true;
+        }
+        int length = buffer.getShort(offset) & 0xFFFF;
+        if (length != (otherBuffer.getShort(otherOffset) & 0xFFFF)
+                || offset + 2 + length > buffer.capacity() || otherOffset + 2 + length > otherBuffer.capacity()) {
+            return false;
+        }
+        for (int i = 2; i < length + 2; i++) {
+            if (buffer.get(offset + i) != otherBuffer.get(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 拷贝一份，无效数据不多时和原列表共用slab，之后两边的写入都从新的slab开始；否则只复制有效的记录
+     */
+    @NonNull
+    public EncodedList copy() {
+        EncodedList copy = new EncodedList(mCodecs);
+        copy.ensureCapacity(mSize);
+        System.arraycopy(mViewIds, 0, copy.mViewIds, 0, mSize);
+        System.arraycopy(mKeyHashes, 0, copy.mKeyHashes, 0, mSize);
+        System.arraycopy(mObjects, 0, copy.mObjects, 0, mSize);
+        for (int i = 0; i < mSize; i++) {
+            copy.mRowIds[i] = copy.mNextRowId++;
+        }
+        copy.mSize = mSize;
+        if (mDeadBytes > mLiveBytes) {
+            for (int i = 0; i < mSize; i++) {
+                int location = mLocations[i];
+                copy.mLocations[i] = location == OBJECT_ROW ? OBJECT_ROW : copy.copyRecord(mSlabs[location >>> 16].buffer,
+                        location & 0xFFFF);
+            }
+        } else {
+            System.arraycopy(mLocations, 0, copy.mLocations, 0, mSize);
+            copy.mSlabs = Arrays.copyOf(mSlabs, mSlabs.length);
+            copy.mSlabCount = mSlabCount;
+            for (int i = 0; i < mSlabCount; i++) {
+                mSlabs[i].refs++;
+            }
+            copy.mLiveBytes = mLiveBytes;
+            copy.mDeadBytes = mDeadBytes;
+            mSlabUsed = SlabPool.SLAB_SIZE;
+        }
+        return copy;
+    }
+
+    /**
+     * 主线程调用，不再使用时把slab还给池。还在读这个列表的后台diff需要先{@link #retainSlabs()}
+     */
+    public void release() {
+        for (int i = 0; i < mSlabCount; i++) {
+            SlabPool.release(mSlabs[i]);
+        }
+        mSlabCount = 0;
+        mSlabUsed = SlabPool.SLAB_SIZE;
+        mDecoded.evictAll();
+    }
+
+    /**
+     * 主线程调用，清空解码的缓存，数组缩小到实际行数
+     *
+     * @return 数组大约释放的字节数，不包括解码缓存里的对象
+     */
+    public long trimMemory() {
+        mDecoded.evictAll();
+        int unused = mLocations.length - mSize;
+        if (unused <= 0) {
+            return 0;
+        }
+        mLocations = Arrays.copyOf(mLocations, mSize);
+        mViewIds = Arrays.copyOf(mViewIds, mSize);
+        mKeyHashes = Arrays.copyOf(mKeyHashes, mSize);
+        mRowIds = Arrays.copyOf(mRowIds, mSize);
+        mObjects = Arrays.copyOf(mObjects, mSize);
+        return (long) unused * ROW_BYTES;
+    }
+
+    /**
+     * 主线程调用，后台读取期间保证slab不会被其它列表复用，读完之后在主线程调用{@link #releaseSlabs(Object)}
+     */
+    @NonNull
+    public Object retainSlabs() {
+        SlabPool.Slab[] slabs = Arrays.copyOf(mSlabs, mSlabCount);
+        for (SlabPool.Slab slab : slabs) {
+            slab.refs++;
+        }
+        return slabs;
+    }
+
+    public static void releaseSlabs(@NonNull Object retained) {
+        for (SlabPool.Slab slab : (SlabPool.Slab[]) retained) {
+            SlabPool.release(slab);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeRow(int index, BaseMutableData data) {
+        int viewId = data.getItemViewId();
+        mViewIds[index] = viewId;
+        mKeyHashes[index] = data.uniqueItemFeature().hashCode();
+        mRowIds[index] = mNextRowId++;
+        ItemCodec codec = mCodecs.get(viewId);
+        if (codec != null) {
+            mWriter.reset();
+            codec.encode(data, mWriter);
+        }
+        if (codec == null || mWriter.size() > MAX_RECORD) {
+            mLocations[index] = OBJECT_ROW;
+            mObjects[index] = data;
+            return;
+        }
+        int length = mWriter.size();
+        ensureSlab(length + 2);
+        ByteBuffer buffer = mSlabs[mSlabCount - 1].buffer;
+        buffer.putShort(mSlabUsed, (short) length);
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(mSlabUsed + 2);
+        mWriter.writeTo(duplicate);
+        mObjects[index] = null;
+        mLocations[index] = (mSlabCount - 1) << 16 | mSlabUsed;
+        mSlabUsed += length + 2;
+        mLiveBytes += length + 2;
+        mDecoded.put(mRowIds[index], data);
+    }
+
+    private BaseMutableData decode(int index) {
+        int location = mLocations[index];
+        ByteBuffer buffer = mSlabs[location >>> 16].buffer;
+        int offset = location & 0xFFFF;
+        int length = buffer.getShort(offset) & 0xFFFF;
+        return mCodecs.get(mViewIds[index]).decode(mViewIds[index], new RecordReader().reset(buffer, offset + 2, length));
+    }
+
+    private int copyRecord(ByteBuffer source, int offset) {
+        int length = (source.getShort(offset) & 0xFFFF) + 2;
+        ensureSlab(length);
+        ByteBuffer buffer = mSlabs[mSlabCount - 1].buffer;
+        for (int i = 0; i < length; i++) {
+            buffer.put(mSlabUsed + i, source.get(offset + i));
+        }
+        int location = (mSlabCount - 1) << 16 | mSlabUsed;
+        mSlabUsed += length;
+        mLiveBytes += length;
+        return location;
+    }
+
+    private void releaseRow(int index) {
+        int location = mLocations[index];
+        if (location != OBJECT_ROW) {
+            int length = (mSlabs[location >>> 16].buffer.getShort(location & 0xFFFF) & 0xFFFF) + 2;
+            mLiveBytes -= length;
+            mDeadBytes += length;
+        }
+        mDecoded.remove(mRowIds[index]);
+    }
+
+    private void ensureSlab(int length) {
+        if (mSlabUsed + length <= SlabPool.SLAB_SIZE) {
+            return;
+        }
+        if (mSlabCount == mSlabs.length) {
+            mSlabs = Arrays.copyOf(mSlabs, mSlabCount * 2);
+        }
+        mSlabs[mSlabCount++] = SlabPool.obtain();
+        mSlabUsed = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mLocations.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mLocations.length * 2);
+        mLocations = Arrays.copyOf(mLocations, newCapacity);
+        mViewIds = Arrays.copyOf(mViewIds, newCapacity);
+        mKeyHashes = Arrays.copyOf(mKeyHashes, newCapacity);
+        mRowIds = Arrays.copyOf(mRowIds, newCapacity);
+        mObjects = Arrays.copyOf(mObjects, newCapacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+/**
+ * @author agent
+ * @date 2026/10/19
+ * 把数据编码成字节保存，显示时再解码成对象，编码和解码的字段顺序需要一致
+ */
+public interface ItemCodec<T extends BaseMutableData> {
+
+    void encode(@NonNull T data, @NonNull RecordWriter out);
+
+    /**
+     * @param viewId 编码时数据的{@link BaseMutableData#getItemViewId()}
+     */
+    @NonNull
+    T decode(int viewId, @NonNull RecordReader in);
+}
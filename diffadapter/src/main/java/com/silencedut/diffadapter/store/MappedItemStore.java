@@ -0,0 +1,365 @@
+package com.silencedut.diffadapter.store;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 保存在文件里的列表数据，用于百万行级别的聊天记录等，堆内存里只保留正在显示的少量对象
+ *
+ * 两个文件：name.dat按追加的方式保存记录，每条记录是16字节的头(长度、viewId、key的哈希和内容的哈希)
+ * 加上{@link ItemCodec}编码后的数据；name.idx是固定大小的索引，每行8字节，只记录这一行的记录在name.dat里的offset。
+ * 两个文件都按16MB分段用{@link MappedByteBuffer}读写，一条记录不会跨段。
+ * 位置、数量、viewType以及diff需要的key和内容比较都只读记录头，不用解码整条数据
+ *
+ * 写文件在单独的后台线程，写完之后回到主线程才对列表可见，所以{@link #size()}和通知都在主线程。
+ * 记录写入后不再修改，更新一行是在后台线程追加一条新记录，回到主线程再一次写入8字节的offset切换过去，
+ * 主线程和后台diff读到的要么是旧记录要么是新记录，不会读到写了一半的数据。旧记录的空间不回收
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class MappedItemStore<T extends BaseMutableData> implements Closeable {
+
+    private static final String TAG = "MappedItemStore";
+    private static final int MAGIC = 0x44414d53;
+    private static final int VERSION = 2;
+    static final int SEGMENT_SIZE = 16 << 20;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 8;
+    private static final int HEADER_COUNT = 8;
+    private static final int HEADER_DATA_END = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int RECORD_LENGTH = 0;
+    private static final int RECORD_VIEW_ID = 4;
+    private static final int RECORD_KEY_HASH = 8;
+    private static final int RECORD_CONTENT_HASH = 12;
+
+    private final ItemCodec<T> mCodec;
+    private final RandomAccessFile mIndexFile;
+    private final RandomAccessFile mDataFile;
+    private final List<MappedByteBuffer> mIndexSegments = new ArrayList<>();
+    private final List<MappedByteBuffer> mDataSegments = new ArrayList<>();
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 只在写线程访问
+     */
+    private final RecordWriter mWriter = new RecordWriter(256);
+    private int mWrittenCount;
+    private long mDataEnd;
+
+    /**
+     * 只在主线程访问
+     */
+    private int mVisibleCount;
+    private int mSubmittedCount;
+    private int mEpoch;
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    public MappedItemStore(@NonNull File dir, @NonNull String name, @NonNull ItemCodec<T> codec) throws IOException {
+        this.mCodec = codec;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        this.mIndexFile = new RandomAccessFile(new File(dir, name + ".idx"), "rw");
+        this.mDataFile = new RandomAccessFile(new File(dir, name + ".dat"), "rw");
+        MappedByteBuffer header = segment(mIndexSegments, mIndexFile, 0);
+        if (header.getInt(0) == MAGIC && header.getInt(4) == VERSION) {
+            mWrittenCount = header.getInt(HEADER_COUNT);
+            mDataEnd = header.getLong(HEADER_DATA_END);
+        } else {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            writeHeader();
+        }
+        mVisibleCount = mWrittenCount;
+        mSubmittedCount = mWrittenCount;
+        Log.d(TAG, "open " + name + " rows:" + mWrittenCount);
+    }
+
+    public interface Listener {
+
+        void onInserted(int start, int count);
+
+        void onChanged(int position);
+
+        void onReset();
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 主线程调用，已经写完并对列表可见的行数
+     */
+    public int size() {
+        return mVisibleCount;
+    }
+
+    public void append(@NonNull T data) {
+        List<T> datas = new ArrayList<>(1);
+        datas.add(data);
+        append(datas);
+    }
+
+    /**
+     * 主线程调用，在后台线程写入，写完后通知{@link Listener#onInserted(int, int)}
+     */
+    public void append(@NonNull List<? extends T> datas) {
+        if (datas.isEmpty()) {
+            return;
+        }
+        final List<T> copy = new ArrayList<>(datas);
+        final int start = mSubmittedCount;
+        final int epoch = mEpoch;
+        mSubmittedCount += copy.size();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 新的行在主线程提交之前不会被读到，可以直接写索引
+                for (int i = 0; i < copy.size(); i++) {
+                    putOffset(start + i, writeRecord(copy.get(i)));
+                }
+                mWrittenCount = start + copy.size();
+                writeHeader();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (epoch != mEpoch) {
+                            return;
+                        }
+                        mVisibleCount = start + copy.size();
+                        for (Listener listener : new ArrayList<>(mListeners)) {
+                            listener.onInserted(start, copy.size());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 主线程调用，替换position这一行
+     */
+    public void update(final int position, @NonNull final T data) {
+        if (position < 0 || position >= mSubmittedCount) {
+            return;
+        }
+        final int epoch = mEpoch;
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long offset = writeRecord(data);
+                writeHeader();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (epoch != mEpoch) {
+                            return;
+                        }
+                        putOffset(position, offset);
+                        for (Listener listener : new ArrayList<>(mListeners)) {
+                            listener.onChanged(position);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 主线程调用，立即对列表清空，文件在后台重置
+     */
+    public void clear() {
+        mEpoch++;
+        mVisibleCount = 0;
+        mSubmittedCount = 0;
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onReset();
+        }
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mWrittenCount = 0;
+                mDataEnd = 0;
+                writeHeader();
+            }
+        });
+    }
+
+    /**
+     * 解码一行数据
+     */
+    @NonNull
+    public T read(int position) {
+        long offset = getOffset(position);
+        ByteBuffer data = dataSegment(offset);
+        int record = (int) (offset % SEGMENT_SIZE);
+        return mCodec.decode(data.getInt(record + RECORD_VIEW_ID), new RecordReader().reset(data,
+                record + RECORD_HEADER_SIZE, data.getInt(record + RECORD_LENGTH)));
+    }
+
+    public int getViewId(int position) {
+        return recordInt(position, RECORD_VIEW_ID);
+    }
+
+    public int getKeyHash(int position) {
+        return recordInt(position, RECORD_KEY_HASH);
+    }
+
+    public int getContentHash(int position) {
+        return recordInt(position, RECORD_CONTENT_HASH);
+    }
+
+    /**
+     * 两行编码后的数据是否完全相同，先比较长度和内容的哈希
+     */
+    public boolean isSameRecord(int position, int otherPosition) {
+        long offset = getOffset(position);
+        long otherOffset = getOffset(otherPosition);
+        if (offset == otherOffset) {
+            return true;
+        }
+        ByteBuffer data = dataSegment(offset);
+        ByteBuffer otherData = dataSegment(otherOffset);
+        int record = (int) (offset % SEGMENT_SIZE);
+        int otherRecord = (int) (otherOffset % SEGMENT_SIZE);
+        int length = data.getInt(record + RECORD_LENGTH);
+        if (length != otherData.getInt(otherRecord + RECORD_LENGTH)
+                || data.getInt(record + RECORD_CONTENT_HASH) != otherData.getInt(otherRecord + RECORD_CONTENT_HASH)) {
+            return false;
+        }
+        for (int i = RECORD_HEADER_SIZE; i < RECORD_HEADER_SIZE + length; i++) {
+            if (data.get(record + i) != otherData.get(otherRecord + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 等待还没写完的数据写入后关闭文件
+     */
+    @Override
+    public void close() {
+        mListeners.clear();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (MappedByteBuffer segment : mIndexSegments) {
+                        segment.force();
+                    }
+                    for (MappedByteBuffer segment : mDataSegments) {
+                        segment.force();
+                    }
+                    mIndexFile.close();
+                    mDataFile.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "close error", e);
+                }
+            }
+        });
+        mWriteExecutor.shutdown();
+    }
+
+    /**
+     * 写线程调用，在数据文件末尾追加一条记录
+     *
+     * @return 记录的offset
+     */
+    private long writeRecord(T data) {
+        mWriter.reset();
+        mCodec.encode(data, mWriter);
+        int length = mWriter.size();
+        if (RECORD_HEADER_SIZE + length > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("record too large " + length);
+        }
+        long offset = mDataEnd;
+        if (offset % SEGMENT_SIZE + RECORD_HEADER_SIZE + length > SEGMENT_SIZE) {
+            offset = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        }
+        ByteBuffer segment = dataSegment(offset).duplicate();
+        segment.position((int) (offset % SEGMENT_SIZE));
+        segment.putInt(length);
+        segment.putInt(data.getItemViewId());
+        segment.putInt(data.uniqueItemFeature().hashCode());
+        segment.putInt(mWriter.contentHash());
+        mWriter.writeTo(segment);
+        mDataEnd = offset + RECORD_HEADER_SIZE + length;
+        return offset;
+    }
+
+    /**
+     * 对齐的8字节一次写入，读线程看到的是旧的或者新的offset
+     */
+    private void putOffset(int position, long offset) {
+        indexSegment(position).putLong(entryOffset(position), offset);
+    }
+
+    private long getOffset(int position) {
+        return indexSegment(position).getLong(entryOffset(position));
+    }
+
+    private int recordInt(int position, int field) {
+        long offset = getOffset(position);
+        return dataSegment(offset).getInt((int) (offset % SEGMENT_SIZE) + field);
+    }
+
+    private ByteBuffer dataSegment(long offset) {
+        return segment(mDataSegments, mDataFile, (int) (offset / SEGMENT_SIZE));
+    }
+
+    private void writeHeader() {
+        MappedByteBuffer header = segment(mIndexSegments, mIndexFile, 0);
+        header.putInt(HEADER_COUNT, mWrittenCount);
+        header.putLong(HEADER_DATA_END, mDataEnd);
+    }
+
+    private ByteBuffer indexSegment(int position) {
+        return segment(mIndexSegments, mIndexFile, (int) ((HEADER_SIZE + (long) position * ENTRY_SIZE) / SEGMENT_SIZE));
+    }
+
+    private static int entryOffset(int position) {
+        return (int) ((HEADER_SIZE + (long) position * ENTRY_SIZE) % SEGMENT_SIZE);
+    }
+
+    /**
+     * 读写两个线程都会调用，按需映射新的分段
+     */
+    private MappedByteBuffer segment(List<MappedByteBuffer> segments, RandomAccessFile file, int index) {
+        synchronized (segments) {
+            try {
+                while (segments.size() <= index) {
+                    segments.add(file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                            (long) segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("map segment " + index + " failed", e);
+            }
+            return segments.get(index);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按{@link RecordWriter}的格式顺序读取一条数据，只读传入的ByteBuffer，不改变它的position
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class RecordReader {
+
+    private ByteBuffer mBuffer;
+    private int mPosition;
+    private int mLimit;
+
+    public RecordReader() {
+    }
+
+    /**
+     * 指向buffer里[offset, offset + length)这一条记录，用于复用同一个reader
+     */
+    public RecordReader reset(ByteBuffer buffer, int offset, int length) {
+        this.mBuffer = buffer;
+        this.mPosition = offset;
+        this.mLimit = offset + length;
+        return this;
+    }
+
+    public int getByte() {
+        check(1);
+        return mBuffer.get(mPosition++);
+    }
+
+    public boolean getBoolean() {
+        return getByte() != 0;
+    }
+
+    public int getInt() {
+        check(4);
+        int value = mBuffer.getInt(mPosition);
+        mPosition += 4;
+        return value;
+    }
+
+    public long getLong() {
+        check(8);
+        long value = mBuffer.getLong(mPosition);
+        mPosition += 8;
+        return value;
+    }
+
+    public float getFloat() {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    public double getDouble() {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    public int getVarInt() {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = getByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Nullable
+    public String getString() {
+        int length = getVarInt();
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        check(length);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(mPosition + i);
+        }
+        mPosition += length;
+        return new String(bytes, RecordWriter.UTF_8);
+    }
+
+    public int remaining() {
+        return mLimit - mPosition;
+    }
+
+    private void check(int length) {
+        if (mPosition + length > mLimit) {
+            throw new IllegalStateException("read beyond record " + mPosition + "+" + length + ">" + mLimit);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 编码一条数据用的缓冲，可以重复使用，只在扩容时分配内存
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class RecordWriter {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] mBuffer;
+    private int mSize;
+
+    public RecordWriter() {
+        this(64);
+    }
+
+    public RecordWriter(int capacity) {
+        mBuffer = new byte[Math.max(16, capacity)];
+    }
+
+    public RecordWriter putByte(int value) {
+        ensure(1);
+        mBuffer[mSize++] = (byte) value;
+        return this;
+    }
+
+    public RecordWriter putBoolean(boolean value) {
+        return putByte(value ? 1 : 0);
+    }
+
+    public RecordWriter putInt(int value) {
+        ensure(4);
+        mBuffer[mSize++] = (byte) (value >>> 24);
+        mBuffer[mSize++] = (byte) (value >>> 16);
+        mBuffer[mSize++] = (byte) (value >>> 8);
+        mBuffer[mSize++] = (byte) value;
+        return this;
+    }
+
+    public RecordWriter putLong(long value) {
+        putInt((int) (value >>> 32));
+        return putInt((int) value);
+    }
+
+    public RecordWriter putFloat(float value) {
+        return putInt(Float.floatToIntBits(value));
+    }
+
+    public RecordWriter putDouble(double value) {
+        return putLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * 长度用varint写，null写成0，其它长度加1
+     */
+    public RecordWriter putString(@Nullable String value) {
+        if (value == null) {
+            return putVarInt(0);
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        putVarInt(bytes.length + 1);
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public RecordWriter putVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            mBuffer[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) value;
+        return this;
+    }
+
+    public RecordWriter putBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, mBuffer, mSize, length);
+        mSize += length;
+        return this;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void reset() {
+        mSize = 0;
+    }
+
+    /**
+     * 写到buffer的当前位置
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(mBuffer, 0, mSize);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    /**
+     * 编码后字节的哈希，用来不解码判断内容是否相同
+     */
+    public int contentHash() {
+        int hash = 1;
+        for (int i = 0; i < mSize; i++) {
+            hash = 31 * hash + mBuffer[i];
+        }
+        return hash;
+    }
+
+    private void ensure(int extra) {
+        if (mSize + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+        }
+    }
+}
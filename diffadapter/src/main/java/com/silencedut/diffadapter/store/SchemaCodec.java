@@ -0,0 +1,231 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 根据数据类的字段自动生成的{@link ItemCodec}，按字段名排序后依次编码，
+ * 支持基本类型、对应的包装类型和String，数据类需要有无参构造函数。BaseMutableData自己的字段不编码
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class SchemaCodec<T extends BaseMutableData> implements ItemCodec<T> {
+
+    private static final int TYPE_INT = 0;
+    private static final int TYPE_LONG = 1;
+    private static final int TYPE_BOOLEAN = 2;
+    private static final int TYPE_FLOAT = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_SHORT = 5;
+    private static final int TYPE_BYTE = 6;
+    private static final int TYPE_CHAR = 7;
+    private static final int TYPE_STRING = 8;
+    private static final int TYPE_BOXED = 16;
+
+    private final Constructor<T> mConstructor;
+    private final Field[] mFields;
+    private final int[] mTypes;
+
+    public SchemaCodec(@NonNull Class<T> dataClass) {
+        try {
+            mConstructor = dataClass.getDeclaredConstructor();
+            mConstructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(dataClass + " needs a no-arg constructor", e);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> cls = dataClass; cls != null && cls != BaseMutableData.class; cls = cls.getSuperclass()) {
+            for (Field field : cls.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        Collections.sort(fields, new Comparator<Field>() {
+            @Override
+            public int compare(Field o1, Field o2) {
+                int result = o1.getDeclaringClass().getName().compareTo(o2.getDeclaringClass().getName());
+                return result != 0 ? result : o1.getName().compareTo(o2.getName());
+            }
+        });
+        mFields = fields.toArray(new Field[0]);
+        mTypes = new int[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            mTypes[i] = typeOf(mFields[i]);
+        }
+    }
+
+    @Override
+    public void encode(@NonNull T data, @NonNull RecordWriter out) {
+        try {
+            for (int i = 0; i < mFields.length; i++) {
+                Field field = mFields[i];
+                int type = mTypes[i];
+                if (type >= TYPE_BOXED) {
+                    Object value = field.get(data);
+                    out.putBoolean(value != null);
+                    if (value != null) {
+                        writeBoxed(type - TYPE_BOXED, value, out);
+                    }
+                    continue;
+                }
+                switch (type) {
+                    case TYPE_INT:
+                        out.putInt(field.getInt(data));
+                        break;
+                    case TYPE_LONG:
+                        out.putLong(field.getLong(data));
+                        break;
+                    case TYPE_BOOLEAN:
+                        out.putBoolean(field.getBoolean(data));
+                        break;
+                    case TYPE_FLOAT:
+                        out.putFloat(field.getFloat(data));
+                        break;
+                    case TYPE_DOUBLE:
+                        out.putDouble(field.getDouble(data));
+                        break;
+                    case TYPE_SHORT:
+                        out.putVarInt(field.getShort(data));
+                        break;
+                    case TYPE_BYTE:
+                        out.putByte(field.getByte(data));
+                        break;
+                    case TYPE_CHAR:
+                        out.putVarInt(field.getChar(data));
+                        break;
+                    default:
+                        out.putString((String) field.get(data));
+                        break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public T decode(int viewId, @NonNull RecordReader in) {
+        try {
+            T data = mConstructor.newInstance();
+            for (int i = 0; i < mFields.length; i++) {
+                Field field = mFields[i];
+                int type = mTypes[i];
+                if (type >= TYPE_BOXED) {
+                    field.set(data, in.getBoolean() ? readValue(type - TYPE_BOXED, in) : null);
+                } else if (type == TYPE_STRING) {
+                    field.set(data, in.getString());
+                } else {
+                    field.set(data, readValue(type, in));
+                }
+            }
+            return data;
+        } catch (Exception e) {
+            throw new IllegalStateException("decode " + mConstructor.getDeclaringClass() + " failed", e);
+        }
+    }
+
+    private static void writeBoxed(int type, Object value, RecordWriter out) {
+        switch (type) {
+            case TYPE_INT:
+                out.putInt((Integer) value);
+                break;
+            case TYPE_LONG:
+                out.putLong((Long) value);
+                break;
+            case TYPE_BOOLEAN:
+                out.putBoolean((Boolean) value);
+                break;
+            case TYPE_FLOAT:
+                out.putFloat((Float) value);
+                break;
+            case TYPE_DOUBLE:
+                out.putDouble((Double) value);
+                break;
+            case TYPE_SHORT:
+                out.putVarInt((Short) value);
+                break;
+            case TYPE_BYTE:
+                out.putByte((Byte) value);
+                break;
+            default:
+                out.putVarInt((Character) value);
+                break;
+        }
+    }
+
+    private static Object readValue(int type, RecordReader in) {
+        switch (type) {
+            case TYPE_INT:
+                return in.getInt();
+            case TYPE_LONG:
+                return in.getLong();
+            case TYPE_BOOLEAN:
+                return in.getBoolean();
+            case TYPE_FLOAT:
+                return in.getFloat();
+            case TYPE_DOUBLE:
+                return in.getDouble();
+            case TYPE_SHORT:
+                return (short) in.getVarInt();
+            case TYPE_BYTE:
+                return (byte) in.getByte();
+            default:
+                return (char) in.getVarInt();
+        }
+    }
+
+    private static int typeOf(Field field) {
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            return TYPE_INT;
+        } else if (type == long.class) {
+            return TYPE_LONG;
+        } else if (type == boolean.class) {
+            return TYPE_BOOLEAN;
+        } else if (type == float.class) {
+            return TYPE_FLOAT;
+        } else if (type == double.class) {
+            return TYPE_DOUBLE;
+        } else if (type == short.class) {
+            return TYPE_SHORT;
+        } else if (type == byte.class) {
+            return TYPE_BYTE;
+        } else if (type == char.class) {
+            return TYPE_CHAR;
+        } else if (type == String.class) {
+            return TYPE_STRING;
+        } else if (type == Integer.class) {
+            return TYPE_BOXED + TYPE_INT;
+        } else if (type == Long.class) {
+            return TYPE_BOXED + TYPE_LONG;
+        } else if (type == Boolean.class) {
+            return TYPE_BOXED + TYPE_BOOLEAN;
+        } else if (type == Float.class) {
+            return TYPE_BOXED + TYPE_FLOAT;
+        } else if (type == Double.class) {
+            return TYPE_BOXED + TYPE_DOUBLE;
+        } else if (type == Short.class) {
+            return TYPE_BOXED + TYPE_SHORT;
+        } else if (type == Byte.class) {
+            return TYPE_BOXED + TYPE_BYTE;
+        } else if (type == Character.class) {
+            return TYPE_BOXED + TYPE_CHAR;
+        }
+        throw new IllegalArgumentException("unsupported field " + field);
+    }
+}
@@ -0,0 +1,67 @@
+package com.silencedut.diffadapter.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * {@link EncodedList}用的定长ByteBuffer池，所有列表共用，只在主线程分配和归还
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class SlabPool {
+
+    /**
+     * 记录在slab里的offset用16位保存
+     */
+    static final int SLAB_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = 16;
+    private static final ArrayDeque<Slab> sPool = new ArrayDeque<>();
+    private static boolean sDirect;
+
+    private SlabPool() {
+    }
+
+    /**
+     * direct buffer不占用Java堆，但是分配更慢，默认使用堆内存
+     */
+    static void setDirect(boolean direct) {
+        sDirect = direct;
+        sPool.clear();
+    }
+
+    /**
+     * 清空池里空闲的slab
+     *
+     * @return 释放的字节数
+     */
+    static long trim() {
+        long released = (long) sPool.size() * SLAB_SIZE;
+        sPool.clear();
+        return released;
+    }
+
+    static Slab obtain() {
+        Slab slab = sPool.poll();
+        if (slab == null) {
+            slab = new Slab(sDirect ? ByteBuffer.allocateDirect(SLAB_SIZE) : ByteBuffer.allocate(SLAB_SIZE));
+        }
+        slab.refs = 1;
+        return slab;
+    }
+
+    static void release(Slab slab) {
+        if (--slab.refs == 0 && sPool.size() < MAX_POOLED) {
+            sPool.add(slab);
+        }
+    }
+
+    static final class Slab {
+        final ByteBuffer buffer;
+        int refs;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.ListUpdateCallback;
+import android.util.LruCache;
+import android.util.SparseIntArray;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * DiffAdapter使用{@link MappedItemStore}时的列表，只读，get时才解码并放进一个小的LRU缓存
+ *
+ * 列表的大小只在{@link #attach(ListUpdateCallback)}之后才跟随store变化，
+ * 这样后台diff和latch看到的大小是一致的
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public final class StoreBackedList extends AbstractList<BaseMutableData> implements RandomAccess {
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final MappedItemStore<? extends BaseMutableData> mStore;
+    private final LruCache<Integer, BaseMutableData> mCache;
+    private int mSize;
+    @Nullable
+    private ListUpdateCallback mCallback;
+    private boolean mChangedWhileDetached;
+    /**
+     * 通过{@link #set(int, BaseMutableData)}写入、还没写完的行，adapter已经通知过，写完时不再通知
+     */
+    private final SparseIntArray mPendingWrites = new SparseIntArray();
+
+    private final MappedItemStore.Listener mStoreListener = new MappedItemStore.Listener() {
+        @Override
+        public void onInserted(int start, int count) {
+            if (mCallback != null) {
+                mSize = start + count;
+                mCallback.onInserted(start, count);
+            }
+        }
+
+        @Override
+        public void onChanged(int position) {
+            int pending = mPendingWrites.get(position);
+            if (pending > 0) {
+                if (pending == 1) {
+                    mPendingWrites.delete(position);
+                } else {
+                    mPendingWrites.put(position, pending - 1);
+                }
+                return;
+            }
+            mCache.remove(position);
+            if (mCallback != null) {
+                if (position < mSize) {
+                    mCallback.onChanged(position, 1, null);
+                }
+            } else {
+                mChangedWhileDetached = true;
+            }
+        }
+
+        @Override
+        public void onReset() {
+            mPendingWrites.clear();
+            if (mCallback != null) {
+                int oldSize = mSize;
+                mSize = 0;
+                mCache.evictAll();
+                mCallback.onRemoved(0, oldSize);
+            } else {
+                mChangedWhileDetached = true;
+            }
+        }
+    };
+
+    public StoreBackedList(@NonNull MappedItemStore<? extends BaseMutableData> store, int cacheSize) {
+        this.mStore = store;
+        this.mCache = new LruCache<>(Math.max(1, cacheSize));
+        this.mSize = store.size();
+        store.addListener(mStoreListener);
+    }
+
+    @NonNull
+    public MappedItemStore<? extends BaseMutableData> getStore() {
+        return mStore;
+    }
+
+    @Override
+    public BaseMutableData get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+        BaseMutableData data = mCache.get(index);
+        if (data == null) {
+            data = mStore.read(index);
+            mCache.put(index, data);
+        }
+        return data;
+    }
+
+    /**
+     * 写入store，调用者负责通知这一行变化，store写完之后不会再通知一次
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public BaseMutableData set(int index, BaseMutableData data) {
+        BaseMutableData old = peek(index);
+        ((MappedItemStore<BaseMutableData>) mStore).update(index, data);
+        mPendingWrites.put(index, mPendingWrites.get(index) + 1);
+        mCache.put(index, data);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 缓存里有就直接返回，否则解码但不放进缓存，查找时不会把正在显示的行挤出去
+     */
+    @NonNull
+    public BaseMutableData peek(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+        BaseMutableData data = mCache.get(index);
+        return data != null ? data : mStore.read(index);
+    }
+
+    /**
+     * 从fromIndex开始按索引里的viewId和key的哈希查找，只解码哈希相同的行确认key
+     *
+     * @return 没有找到时返回-1
+     */
+    public int indexOfItem(int viewId, @NonNull Object key, int fromIndex) {
+        int keyHash = key.hashCode();
+        for (int i = Math.max(0, fromIndex); i < mSize; i++) {
+            if (mStore.getViewId(i) == viewId && mStore.getKeyHash(i) == keyHash
+                    && key.equals(peek(i).uniqueItemFeature())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getItemViewId(int index) {
+        return mStore.getViewId(index);
+    }
+
+    /**
+     * 两行是否是同一条数据，先比较记录头里的viewId和key的哈希，哈希相同时再解码确认key
+     */
+    public boolean isSameItem(int index, @NonNull StoreBackedList other, int otherIndex) {
+        return mStore.getViewId(index) == other.mStore.getViewId(otherIndex)
+                && mStore.getKeyHash(index) == other.mStore.getKeyHash(otherIndex)
+                && peek(index).uniqueItemFeature().equals(other.peek(otherIndex).uniqueItemFeature());
+    }
+
+    /**
+     * 同一个store时比较编码后的数据，否则内容哈希相同时再解码比较
+     */
+    @SuppressWarnings("unchecked")
+    public boolean isSameContent(int index, @NonNull StoreBackedList other, int otherIndex) {
+        if (mStore == other.mStore) {
+            return mStore.isSameRecord(index, otherIndex);
+        }
+        if (mStore.getContentHash(index) != other.mStore.getContentHash(otherIndex)) {
+            return false;
+        }
+        BaseMutableData data = peek(index);
+        BaseMutableData otherData = other.peek(otherIndex);
+        return data.getClass() == otherData.getClass() && data.areUISame(otherData);
+    }
+
+    /**
+     * 内存紧张时清空解码的缓存，之后get时重新从文件读取
+     */
+    public void trimMemory() {
+        mCache.evictAll();
+    }
+
+    /**
+     * 被adapter使用时调用，和store同步大小，之后store的变化会通知给callback
+     */
+    public void attach(@NonNull ListUpdateCallback callback) {
+        int oldSize = mSize;
+        mSize = mStore.size();
+        mCache.evictAll();
+        mCallback = callback;
+        if (mChangedWhileDetached && Math.min(oldSize, mSize) > 0) {
+            callback.onChanged(0, Math.min(oldSize, mSize), null);
+        }
+        mChangedWhileDetached = false;
+        if (mSize > oldSize) {
+            callback.onInserted(oldSize, mSize - oldSize);
+        } else if (mSize < oldSize) {
+            callback.onRemoved(mSize, oldSize - mSize);
+        }
+    }
+
+    /**
+     * 不再被adapter使用，大小固定不变
+     */
+    public void detach() {
+        mCallback = null;
+    }
+
+    /**
+     * 不再使用时取消对store的监听
+     */
+    public void release() {
+        detach();
+        mStore.removeListener(mStoreListener);
+    }
+}
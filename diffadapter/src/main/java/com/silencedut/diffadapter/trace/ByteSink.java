@@ -0,0 +1,63 @@
+package com.silencedut.diffadapter.trace;
+
+import java.util.Arrays;
+
+/**
+ * 主线程上写事件用的缓冲，只在扩容时分配内存
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class ByteSink {
+
+    private byte[] mBuffer;
+    private int mSize;
+
+    ByteSink(int capacity) {
+        mBuffer = new byte[capacity];
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    void writeSignedVarInt(int value) {
+        writeVarInt(TraceFormat.zigZag(value));
+    }
+
+    void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mSize, bytes.length);
+        mSize += bytes.length;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    byte[] drain() {
+        byte[] bytes = Arrays.copyOf(mBuffer, mSize);
+        mSize = 0;
+        return bytes;
+    }
+
+    private void ensure(int extra) {
+        if (mSize + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+        }
+    }
+}
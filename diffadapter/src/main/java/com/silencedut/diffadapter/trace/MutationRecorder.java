@@ -0,0 +1,298 @@
+package com.silencedut.diffadapter.trace;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 录制{@link com.silencedut.diffadapter.DiffAdapter}所有公开的数据变更和mediator的更新，
+ * 通过{@link com.silencedut.diffadapter.DiffAdapter#setMutationRecorder(MutationRecorder)}开启，用{@link TraceReplayer}回放
+ *
+ * 只记录时间，key的hashCode，内容指纹，数量和payload key，不记录任何业务内容。
+ * 内容指纹由uniqueItemFeature和这条数据被更新过的payload key推算，同样的流量每次录制的结果一样；
+ * setDatas时换成新对象但没有通过updateData、mediator更新的内容变化看不到，和原地修改数据一样
+ * 事件先写到内存缓冲里，超过一定大小后在单独的线程写到文件
+ *
+ * record开头的方法由DiffAdapter在主线程调用
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class MutationRecorder {
+
+    private static final String TAG = "MutationRecorder";
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream mOutputStream;
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+    private final ByteSink mSink = new ByteSink(FLUSH_THRESHOLD * 2);
+    private final Map<String, Integer> mStringIds = new HashMap<>();
+    /**
+     * 被更新过的数据的内容版本，没有更新过的是0
+     */
+    private final Map<Object, Integer> mRevisions = new HashMap<>();
+    private long mLastEventTime;
+    private long mEventCount;
+    private boolean mClosed;
+
+    public MutationRecorder(@NonNull File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public MutationRecorder(@NonNull OutputStream outputStream) {
+        this.mOutputStream = new BufferedOutputStream(outputStream);
+        mLastEventTime = SystemClock.uptimeMillis();
+        writeInt(TraceFormat.MAGIC);
+        mSink.writeByte(TraceFormat.VERSION);
+        mSink.writeVarLong(System.currentTimeMillis());
+    }
+
+    public void recordSetDatas(@NonNull List<? extends BaseMutableData> datas) {
+        if (begin(TraceFormat.OP_SET_DATAS)) {
+            writeRows(datas);
+            end();
+        }
+    }
+
+    public void recordClear() {
+        if (begin(TraceFormat.OP_CLEAR)) {
+            mRevisions.clear();
+            end();
+        }
+    }
+
+    public void recordAdd(@NonNull List<? extends BaseMutableData> datas) {
+        if (begin(TraceFormat.OP_ADD)) {
+            writeRows(datas);
+            end();
+        }
+    }
+
+    public void recordInsert(int position, @NonNull List<? extends BaseMutableData> datas) {
+        if (begin(TraceFormat.OP_INSERT)) {
+            mSink.writeSignedVarInt(position);
+            writeRows(datas);
+            end();
+        }
+    }
+
+    public void recordDelete(@NonNull Object uniqueItemFeature) {
+        if (begin(TraceFormat.OP_DELETE)) {
+            mSink.writeSignedVarInt(uniqueItemFeature.hashCode());
+            end();
+        }
+    }
+
+    public void recordDeleteRange(int startPosition, int size) {
+        if (begin(TraceFormat.OP_DELETE_RANGE)) {
+            mSink.writeSignedVarInt(startPosition);
+            mSink.writeSignedVarInt(size);
+            end();
+        }
+    }
+
+    public void recordUpdate(@NonNull BaseMutableData newData, @NonNull Collection<String> payloadKeys) {
+        if (begin(TraceFormat.OP_UPDATE)) {
+            writeUpdatedRow(newData, payloadKeys);
+            end();
+        }
+    }
+
+    /**
+     * 有序列表模式插入或者更新的数据，在真正执行时记录
+     *
+     * @param positions 每条数据执行后在列表里的位置，升序
+     */
+    public void recordSortedAdd(@NonNull List<? extends BaseMutableData> datas, @NonNull int[] positions) {
+        if (begin(TraceFormat.OP_SORTED_ADD)) {
+            writeRows(datas);
+            for (int position : positions) {
+                mSink.writeVarInt(position);
+            }
+            end();
+        }
+    }
+
+    /**
+     * 聊天模式一帧追加的消息
+     */
+    public void recordAppendCapped(int capacity, @NonNull List<? extends BaseMutableData> datas) {
+        if (begin(TraceFormat.OP_APPEND_CAPPED)) {
+            mSink.writeVarInt(capacity);
+            writeRows(datas);
+            end();
+        }
+    }
+
+    /**
+     * 开启搜索时显示的行变化，查询变化或者更新后匹配结果变化时记录显示的行
+     */
+    public void recordSearch(@NonNull List<? extends BaseMutableData> shown) {
+        if (begin(TraceFormat.OP_SEARCH)) {
+            writeRows(shown);
+            end();
+        }
+    }
+
+    /**
+     * 一次mediator的更新，之后需要调用matchedCount次{@link #recordMediatorRow}
+     */
+    public void recordMediatorStart(@NonNull Object matchFeature, int matchedCount) {
+        if (begin(TraceFormat.OP_MEDIATOR)) {
+            mSink.writeSignedVarInt(matchFeature.hashCode());
+            mSink.writeVarInt(matchedCount);
+        }
+    }
+
+    public void recordMediatorRow(@Nullable BaseMutableData newData, @NonNull Collection<String> payloadKeys) {
+        if (mClosed) {
+            return;
+        }
+        writeUpdatedRow(newData, payloadKeys);
+        end();
+    }
+
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * 把缓冲里的事件写到文件并关闭，之后的记录都会被忽略
+     */
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        flush();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mOutputStream.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "close trace error", e);
+                }
+            }
+        });
+        mWriteExecutor.shutdown();
+    }
+
+    private boolean begin(int op) {
+        if (mClosed) {
+            return false;
+        }
+        long now = SystemClock.uptimeMillis();
+        mSink.writeByte(op);
+        mSink.writeVarLong(now - mLastEventTime);
+        mLastEventTime = now;
+        mEventCount++;
+        return true;
+    }
+
+    private void end() {
+        if (mSink.size() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (mSink.size() == 0) {
+            return;
+        }
+        final byte[] bytes = mSink.drain();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mOutputStream.write(bytes);
+                    mOutputStream.flush();
+                } catch (IOException e) {
+                    Log.e(TAG, "write trace error", e);
+                }
+            }
+        });
+    }
+
+    private void writeRows(List<? extends BaseMutableData> datas) {
+        mSink.writeVarInt(datas.size());
+        for (BaseMutableData data : datas) {
+            writeRow(data);
+        }
+    }
+
+    private void writeRow(@Nullable BaseMutableData data) {
+        if (data == null) {
+            mSink.writeSignedVarInt(0);
+            mSink.writeVarInt(0);
+            mSink.writeSignedVarInt(0);
+            return;
+        }
+        Object feature = data.uniqueItemFeature();
+        Integer revision = mRevisions.get(feature);
+        mSink.writeSignedVarInt(feature.hashCode());
+        mSink.writeVarInt(data.getItemViewId());
+        mSink.writeSignedVarInt(feature.hashCode() * 31 + (revision != null ? revision : 0));
+    }
+
+    /**
+     * 更新的数据内容版本加一，并且和这次的payload key有关，同一行同样的更新顺序得到同样的指纹
+     */
+    private void writeUpdatedRow(@Nullable BaseMutableData data, Collection<String> payloadKeys) {
+        if (data != null) {
+            int keysHash = 0;
+            for (String key : payloadKeys) {
+                keysHash += key.hashCode();
+            }
+            Object feature = data.uniqueItemFeature();
+            Integer revision = mRevisions.get(feature);
+            mRevisions.put(feature, (revision != null ? revision : 0) * 31 + keysHash + 1);
+        }
+        writeRow(data);
+        writePayloadKeys(payloadKeys);
+    }
+
+    /**
+     * payload key是开发者定义的常量，第一次出现时写入字符串，之后只写编号
+     */
+    private void writePayloadKeys(Collection<String> payloadKeys) {
+        mSink.writeVarInt(payloadKeys.size());
+        for (String key : payloadKeys) {
+            Integer id = mStringIds.get(key);
+            if (id != null) {
+                mSink.writeVarInt(id);
+            } else {
+                int newId = mStringIds.size();
+                mStringIds.put(key, newId);
+                byte[] bytes = key.getBytes(UTF_8);
+                mSink.writeVarInt(newId);
+                mSink.writeVarInt(bytes.length);
+                mSink.writeBytes(bytes);
+            }
+        }
+    }
+
+    private void writeInt(int value) {
+        mSink.writeByte(value >>> 24);
+        mSink.writeByte(value >>> 16);
+        mSink.writeByte(value >>> 8);
+        mSink.writeByte(value);
+    }
+}
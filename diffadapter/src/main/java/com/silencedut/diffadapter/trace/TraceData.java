@@ -0,0 +1,57 @@
+package com.silencedut.diffadapter.trace;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 回放时代替原始数据的行，只有key，viewId和内容指纹
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class TraceData extends BaseMutableData<TraceData> {
+
+    final int key;
+    final int viewId;
+    int content;
+    /**
+     * 录制时mediator匹配到这一行用的特征，回放前加进来保证匹配到同样的行
+     */
+    final Set<Object> mediatorFeatures = new HashSet<>();
+
+    TraceData(int key, int viewId, int content) {
+        this.key = key;
+        this.viewId = viewId;
+        this.content = content;
+    }
+
+    public int getContent() {
+        return content;
+    }
+
+    @NonNull
+    @Override
+    public Object uniqueItemFeature() {
+        return key;
+    }
+
+    @Override
+    public boolean areUISame(@NonNull TraceData data) {
+        return content == data.content;
+    }
+
+    @Override
+    public void appendMatchFeature(@NonNull Set<Object> allMatchFeatures) {
+        super.appendMatchFeature(allMatchFeatures);
+        allMatchFeatures.addAll(mediatorFeatures);
+    }
+
+    @Override
+    public int getItemViewId() {
+        return viewId;
+    }
+}
@@ -0,0 +1,93 @@
+package com.silencedut.diffadapter.trace;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 录制文件的格式：
+ * 文件头 MAGIC + VERSION + 开始时间(varlong)，之后每个事件为 opcode(1 byte) + 距上个事件的毫秒数(varlong) + 事件数据
+ * 数据里只有key的hashCode，内容指纹，数量，位置和payload key，不包含任何业务数据
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x44415452;
+    static final int VERSION = 1;
+
+    /**
+     * setDatas: count, 每行 key, viewId, content
+     */
+    static final int OP_SET_DATAS = 1;
+    static final int OP_CLEAR = 2;
+    /**
+     * addData/addDatas: count, 每行 key, viewId, content
+     */
+    static final int OP_ADD = 3;
+    /**
+     * insertData: position, count, 每行 key, viewId, content
+     */
+    static final int OP_INSERT = 4;
+    /**
+     * deleteData(BaseMutableData)/deleteData(Object): key
+     */
+    static final int OP_DELETE = 5;
+    /**
+     * deleteData(int, int): start, size
+     */
+    static final int OP_DELETE_RANGE = 6;
+    /**
+     * updateData: key, viewId, content, payload keys
+     */
+    static final int OP_UPDATE = 7;
+    /**
+     * mediator: matchFeature, count, 每行 key, viewId, content, payload keys
+     */
+    static final int OP_MEDIATOR = 8;
+    /**
+     * addSortedData/addSortedDatas: count, 每行 key, viewId, content, 之后每行执行后的位置
+     */
+    static final int OP_SORTED_ADD = 9;
+    /**
+     * 聊天模式追加: capacity, count, 每行 key, viewId, content
+     */
+    static final int OP_APPEND_CAPPED = 10;
+    /**
+     * 搜索结果变化: count, 每行显示的 key, viewId, content
+     */
+    static final int OP_SEARCH = 11;
+
+    private TraceFormat() {
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (shift < 64) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    static int readVarInt(InputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+}
@@ -0,0 +1,368 @@
+package com.silencedut.diffadapter.trace;
+
+import android.arch.lifecycle.MutableLiveData;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.LiveChatController;
+import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.utils.UpdatePayloadFunction;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 把{@link MutationRecorder}录制的文件回放到一个adapter上，可以按录制时的节奏(或按倍速)回放，也可以不等待直接回放，
+ * 用来在同样的流量下对比不同实现的性能
+ *
+ * 回放的数据是{@link TraceData}，需要注册能展示它的Holder，或者通过{@link #setViewIdOverride(int)}统一成一种Holder
+ *
+ * 录制时的比较器和搜索条件没有保存：有序列表的插入按录制的位置删除再插入，搜索结果的变化用setDatas替换成显示的行，
+ * 聊天模式的追加通过{@link LiveChatController}回放
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class TraceReplayer {
+
+    private static final String TAG = "TraceReplayer";
+
+    private final DiffAdapter mAdapter;
+    private final List<TraceEvent> mEvents;
+    private final long mStartWallTime;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<TraceEvent> mMediatorSource = new MutableLiveData<>();
+    private int mViewIdOverride;
+    private float mSpeed;
+    private int mNextEvent;
+    private long mReplayStart;
+    @Nullable
+    private LiveChatController mLiveChatController;
+    @Nullable
+    private Callback mCallback;
+
+    private final Runnable mNextRunnable = new Runnable() {
+        @Override
+        public void run() {
+            replayNext();
+        }
+    };
+
+    public TraceReplayer(@NonNull DiffAdapter adapter, @NonNull File trace) throws IOException {
+        this(adapter, new FileInputStream(trace));
+    }
+
+    /**
+     * 会在构造时读完并关闭输入流
+     */
+    public TraceReplayer(@NonNull DiffAdapter adapter, @NonNull InputStream trace) throws IOException {
+        this.mAdapter = adapter;
+        InputStream in = new BufferedInputStream(trace);
+        try {
+            int magic = (in.read() << 24) | (in.read() << 16) | (in.read() << 8) | in.read();
+            if (magic != TraceFormat.MAGIC || in.read() != TraceFormat.VERSION) {
+                throw new IOException("not a diffadapter trace");
+            }
+            mStartWallTime = TraceFormat.readVarLong(in);
+            mEvents = readEvents(in);
+        } finally {
+            in.close();
+        }
+
+        adapter.addUpdateMediator(mMediatorSource, new UpdatePayloadFunction<TraceEvent, TraceData>() {
+            @Override
+            public Object providerMatchFeature(@NonNull TraceEvent input) {
+                return input.matchFeature;
+            }
+
+            @Override
+            public TraceData applyChange(@NonNull TraceEvent input, @NonNull TraceData originalData,
+                                         @NonNull Set<String> payloadKeys) {
+                for (int i = 0; i < input.keys.length; i++) {
+                    if (input.keys[i] == originalData.key) {
+                        originalData.content = input.contents[i];
+                        Collections.addAll(payloadKeys, input.payloadKeys[i]);
+                        break;
+                    }
+                }
+                return originalData;
+            }
+        });
+    }
+
+    /**
+     * 所有行都使用这个viewId，0表示使用录制时的viewId
+     */
+    public void setViewIdOverride(int viewId) {
+        this.mViewIdOverride = viewId;
+    }
+
+    public int getEventCount() {
+        return mEvents.size();
+    }
+
+    /**
+     * 录制开始时的系统时间
+     */
+    public long getStartWallTime() {
+        return mStartWallTime;
+    }
+
+    /**
+     * 开始回放，必须在主线程调用
+     *
+     * @param speed 回放速度，1为录制时的节奏，2为两倍速，小于等于0时不等待，每个事件在主线程的下一个消息里执行
+     */
+    public void start(float speed, @Nullable Callback callback) {
+        mHandler.removeCallbacks(mNextRunnable);
+        mSpeed = speed;
+        mCallback = callback;
+        mNextEvent = 0;
+        mReplayStart = SystemClock.uptimeMillis();
+        scheduleNext();
+    }
+
+    public void stop() {
+        mHandler.removeCallbacks(mNextRunnable);
+    }
+
+    private void scheduleNext() {
+        if (mNextEvent >= mEvents.size()) {
+            long duration = SystemClock.uptimeMillis() - mReplayStart;
+            Log.d(TAG, "replay finished " + mEvents.size() + " events in " + duration + "ms");
+            if (mCallback != null) {
+                mCallback.onFinished(mEvents.size(), duration);
+            }
+            return;
+        }
+        long delay = mSpeed > 0 ? (long) (mEvents.get(mNextEvent).deltaMs / mSpeed) : 0;
+        mHandler.postDelayed(mNextRunnable, delay);
+    }
+
+    private void replayNext() {
+        apply(mEvents.get(mNextEvent++));
+        scheduleNext();
+    }
+
+    private void apply(TraceEvent event) {
+        switch (event.op) {
+            case TraceFormat.OP_SET_DATAS:
+                mAdapter.setDatas(rows(event));
+                break;
+            case TraceFormat.OP_CLEAR:
+                mAdapter.clear();
+                break;
+            case TraceFormat.OP_ADD:
+                List<TraceData> added = rows(event);
+                if (added.size() == 1) {
+                    mAdapter.addData(added.get(0));
+                } else {
+                    mAdapter.addDatas(added);
+                }
+                break;
+            case TraceFormat.OP_INSERT:
+                mAdapter.insertData(event.position, rows(event));
+                break;
+            case TraceFormat.OP_DELETE:
+                mAdapter.deleteData((Object) event.matchFeature);
+                break;
+            case TraceFormat.OP_DELETE_RANGE:
+                mAdapter.deleteData(event.position, event.size);
+                break;
+            case TraceFormat.OP_UPDATE:
+                TraceData updated = row(event, 0);
+                Collections.addAll(updated.getPayloadKeys(), event.payloadKeys[0]);
+                mAdapter.updateData(updated);
+                break;
+            case TraceFormat.OP_SORTED_ADD:
+                List<TraceData> sorted = rows(event);
+                for (TraceData data : sorted) {
+                    mAdapter.deleteData(data.uniqueItemFeature());
+                }
+                // 位置是升序的，按顺序插入后和录制时的列表一样
+                for (int i = 0; i < sorted.size(); i++) {
+                    mAdapter.insertData(event.positions[i], Collections.singletonList(sorted.get(i)));
+                }
+                break;
+            case TraceFormat.OP_APPEND_CAPPED:
+                if (mLiveChatController == null) {
+                    mLiveChatController = new LiveChatController(mAdapter, event.size);
+                }
+                mLiveChatController.appendAll(rows(event));
+                break;
+            case TraceFormat.OP_SEARCH:
+                mAdapter.setDatas(rows(event));
+                break;
+            case TraceFormat.OP_MEDIATOR:
+                for (BaseMutableData data : mAdapter.getDatas()) {
+                    if (data instanceof TraceData && contains(event.keys, ((TraceData) data).key)) {
+                        ((TraceData) data).mediatorFeatures.add(event.matchFeature);
+                    }
+                }
+                mMediatorSource.setValue(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private List<TraceData> rows(TraceEvent event) {
+        List<TraceData> rows = new ArrayList<>(event.keys.length);
+        for (int i = 0; i < event.keys.length; i++) {
+            rows.add(row(event, i));
+        }
+        return rows;
+    }
+
+    private TraceData row(TraceEvent event, int index) {
+        return new TraceData(event.keys[index], mViewIdOverride != 0 ? mViewIdOverride : event.viewIds[index],
+                event.contents[index]);
+    }
+
+    private static boolean contains(int[] keys, int key) {
+        for (int k : keys) {
+            if (k == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<TraceEvent> readEvents(InputStream in) throws IOException {
+        List<TraceEvent> events = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        while (true) {
+            int op = in.read();
+            if (op < 0) {
+                return events;
+            }
+            try {
+                events.add(readEvent(op, in, strings));
+            } catch (EOFException e) {
+                Log.w(TAG, "trace truncated after " + events.size() + " events");
+                return events;
+            }
+        }
+    }
+
+    private static TraceEvent readEvent(int op, InputStream in, List<String> strings) throws IOException {
+        TraceEvent event = new TraceEvent(op, TraceFormat.readVarLong(in));
+        switch (op) {
+            case TraceFormat.OP_SET_DATAS:
+            case TraceFormat.OP_ADD:
+            case TraceFormat.OP_SEARCH:
+                readRows(event, in, TraceFormat.readVarInt(in), null);
+                break;
+            case TraceFormat.OP_SORTED_ADD:
+                readRows(event, in, TraceFormat.readVarInt(in), null);
+                event.positions = new int[event.keys.length];
+                for (int i = 0; i < event.positions.length; i++) {
+                    event.positions[i] = TraceFormat.readVarInt(in);
+                }
+                break;
+            case TraceFormat.OP_APPEND_CAPPED:
+                event.size = TraceFormat.readVarInt(in);
+                readRows(event, in, TraceFormat.readVarInt(in), null);
+                break;
+            case TraceFormat.OP_INSERT:
+                event.position = readSigned(in);
+                readRows(event, in, TraceFormat.readVarInt(in), null);
+                break;
+            case TraceFormat.OP_DELETE:
+                event.matchFeature = readSigned(in);
+                break;
+            case TraceFormat.OP_DELETE_RANGE:
+                event.position = readSigned(in);
+                event.size = readSigned(in);
+                break;
+            case TraceFormat.OP_UPDATE:
+                readRows(event, in, 1, strings);
+                break;
+            case TraceFormat.OP_MEDIATOR:
+                event.matchFeature = readSigned(in);
+                readRows(event, in, TraceFormat.readVarInt(in), strings);
+                break;
+            case TraceFormat.OP_CLEAR:
+                break;
+            default:
+                throw new IOException("unknown op " + op);
+        }
+        return event;
+    }
+
+    private static void readRows(TraceEvent event, InputStream in, int count, @Nullable List<String> strings)
+            throws IOException {
+        event.keys = new int[count];
+        event.viewIds = new int[count];
+        event.contents = new int[count];
+        event.payloadKeys = new String[count][];
+        for (int i = 0; i < count; i++) {
+            event.keys[i] = readSigned(in);
+            event.viewIds[i] = TraceFormat.readVarInt(in);
+            event.contents[i] = readSigned(in);
+            event.payloadKeys[i] = strings != null ? readPayloadKeys(in, strings) : new String[0];
+        }
+    }
+
+    private static String[] readPayloadKeys(InputStream in, List<String> strings) throws IOException {
+        String[] keys = new String[TraceFormat.readVarInt(in)];
+        for (int i = 0; i < keys.length; i++) {
+            int id = TraceFormat.readVarInt(in);
+            if (id == strings.size()) {
+                byte[] bytes = new byte[TraceFormat.readVarInt(in)];
+                int read = 0;
+                while (read < bytes.length) {
+                    int n = in.read(bytes, read, bytes.length - read);
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    read += n;
+                }
+                strings.add(new String(bytes, "UTF-8"));
+            } else if (id > strings.size()) {
+                throw new IOException("undefined payload key " + id);
+            }
+            keys[i] = strings.get(id);
+        }
+        return keys;
+    }
+
+    private static int readSigned(InputStream in) throws IOException {
+        return TraceFormat.unZigZag(TraceFormat.readVarInt(in));
+    }
+
+    public interface Callback {
+        void onFinished(int events, long durationMs);
+    }
+
+    static class TraceEvent {
+        final int op;
+        final long deltaMs;
+        int position;
+        int size;
+        int matchFeature;
+        int[] keys = new int[0];
+        int[] viewIds = new int[0];
+        int[] contents = new int[0];
+        int[] positions = new int[0];
+        String[][] payloadKeys = new String[0][];
+
+        TraceEvent(int op, long deltaMs) {
+            this.op = op;
+            this.deltaMs = deltaMs;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量里的通知按范围合并、互相抵消，payload合并时不修改原来的集合
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CoalescingUpdateCallbackTest {
+
+    private final List<String> mEvents = new ArrayList<>();
+    private final List<Object> mPayloads = new ArrayList<>();
+    private CoalescingUpdateCallback mCallback;
+
+    @Before
+    public void setUp() {
+        RecyclerView.Adapter adapter = new RecyclerView.Adapter() {
+            @NonNull
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            }
+
+            @Override
+            public int getItemCount() {
+                return 10;
+            }
+        };
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                mEvents.add("all");
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mEvents.add("insert " + positionStart + "," + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mEvents.add("remove " + positionStart + "," + itemCount);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+                mEvents.add("change " + positionStart + "," + itemCount);
+                mPayloads.add(payload);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                mEvents.add("move " + fromPosition + "," + toPosition);
+            }
+        });
+        mCallback = new CoalescingUpdateCallback(adapter);
+    }
+
+    @Test
+    public void adjacentInsertsAndRemovesMerge() {
+        mCallback.beginBatch();
+        mCallback.onInserted(2, 1);
+        mCallback.onInserted(3, 2);
+        mCallback.onInserted(2, 1);
+        mCallback.endBatch();
+        mCallback.beginBatch();
+        mCallback.onRemoved(5, 1);
+        mCallback.onRemoved(4, 1);
+        mCallback.endBatch();
+
+        assertEquals(Arrays.asList("insert 2,4", "remove 4,2"), mEvents);
+    }
+
+    @Test
+    public void insertedThenRemovedCancels() {
+        mCallback.beginBatch();
+        mCallback.onInserted(0, 3);
+        mCallback.onChanged(1, 1, null);
+        mCallback.onRemoved(0, 3);
+        mCallback.endBatch();
+
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void samePayloadSharedByMergedRange() {
+        Set<String> payload = new HashSet<>(Collections.singleton(TestData.KEY_TEXT));
+        mCallback.beginBatch();
+        mCallback.onChanged(3, 1, payload);
+        mCallback.onChanged(4, 1, new HashSet<>(payload));
+        mCallback.endBatch();
+
+        assertEquals(Collections.singletonList("change 3,2"), mEvents);
+        assertSame(payload, mPayloads.get(0));
+    }
+
+    @Test
+    public void sameRowPayloadsUnionWithoutMutation() {
+        Set<String> first = new HashSet<>(Collections.singleton("a"));
+        Set<String> second = new HashSet<>(Collections.singleton("b"));
+        mCallback.beginBatch();
+        mCallback.onChanged(1, 1, first);
+        mCallback.onChanged(1, 1, second);
+        mCallback.endBatch();
+
+        assertEquals(Collections.singletonList("change 1,1"), mEvents);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), mPayloads.get(0));
+        assertEquals(Collections.singleton("a"), first);
+        assertEquals(Collections.singleton("b"), second);
+    }
+
+    @Test
+    public void fullChangeWinsOverPayload() {
+        mCallback.beginBatch();
+        mCallback.onChanged(1, 1, new HashSet<>(Collections.singleton("a")));
+        mCallback.onChanged(1, 1, null);
+        mCallback.endBatch();
+
+        assertEquals(Collections.singletonList("change 1,1"), mEvents);
+        assertEquals(null, mPayloads.get(0));
+    }
+
+    @Test
+    public void dataSetChangedDropsPendingAndMarksRebind() {
+        mCallback.beginBatch();
+        mCallback.onInserted(0, 2);
+        mCallback.onDataSetChanged();
+        mCallback.endBatch();
+
+        assertEquals(Collections.singletonList("all"), mEvents);
+        assertTrue(mCallback.isFullRefreshBinding());
+        mCallback.onChanged(0, 1, null);
+        assertFalse(mCallback.isFullRefreshBinding());
+    }
+
+    @Test
+    public void bindDoesNotMutatePayload() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        DiffAdapter adapter = new DiffAdapter(activity);
+        adapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+        StableIdTest.CountingHolder holder = new StableIdTest.CountingHolder(new View(activity), adapter);
+        Set<String> payload = new HashSet<>(Collections.singleton(TestData.KEY_TEXT));
+
+        adapter.onBindViewHolder(holder, 0, Collections.<Object>singletonList(payload));
+        adapter.onBindViewHolder(holder, 1, Collections.<Object>singletonList(payload));
+
+        assertEquals(Collections.singleton(TestData.KEY_TEXT), payload);
+    }
+}
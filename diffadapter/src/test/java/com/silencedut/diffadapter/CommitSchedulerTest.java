@@ -0,0 +1,91 @@
+package com.silencedut.diffadapter;
+
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 后台diff期间从RecyclerView上detach，diff完成后仍然要提交，不能一直处于等待状态；
+ * 排队的修改之后的updateData也排在后面执行
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CommitSchedulerTest {
+
+    private final List<Runnable> mDiffTasks = new ArrayList<>();
+    private FragmentActivity mActivity;
+    private DiffAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(mActivity);
+        TestData.deferDiffs(mAdapter, mDiffTasks);
+    }
+
+    @Test
+    public void detachDuringDiffStillCommits() {
+        RecyclerView recyclerView = new RecyclerView(mActivity);
+        recyclerView.setLayoutManager(new LinearLayoutManager(mActivity));
+        recyclerView.setAdapter(mAdapter);
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+
+        mAdapter.setDatas(Arrays.asList(new TestData(2, "b"), new TestData(3, "c")));
+        TestData.runDiffTasks(mDiffTasks);
+        recyclerView.setAdapter(null);
+        ShadowLooper.idleMainLooper();
+
+        assertFalse(mAdapter.hasPendingUpdates());
+        assertEquals(2, mAdapter.getItemCount());
+        assertEquals(3L, mAdapter.getDatas().get(1).uniqueItemFeature());
+    }
+
+    @Test
+    public void mutationQueuedBehindDiffIsReplayed() {
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a")));
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        mAdapter.addData(new TestData(3, "c"));
+        TestData.runDiffTasks(mDiffTasks);
+        ShadowLooper.idleMainLooper();
+
+        assertFalse(mAdapter.hasPendingUpdates());
+        assertEquals(3, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void updateQueuedBehindDiffIsApplied() {
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b"), new TestData(4, "d")));
+        // diff还没完成，add排队，之后的update也要排在它后面，作用在新列表上
+        mAdapter.addData(new TestData(3, "c"));
+        mAdapter.updateData(new TestData(3, "updated"));
+        mAdapter.updateData(new TestData(1, "updated"));
+        assertEquals(2, mAdapter.getItemCount());
+        assertEquals("1:a", mAdapter.getDatas().get(0).toString());
+
+        TestData.runDiffTasks(mDiffTasks);
+        ShadowLooper.idleMainLooper();
+        assertFalse(mAdapter.hasPendingUpdates());
+        assertEquals(4, mAdapter.getItemCount());
+        assertEquals("1:updated", mAdapter.getDatas().get(0).toString());
+        assertEquals("4:d", mAdapter.getDatas().get(2).toString());
+        assertEquals("3:updated", mAdapter.getDatas().get(3).toString());
+    }
+}
@@ -0,0 +1,190 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按数据的key命中，内容被原地修改过时不再使用缓存的结果
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DiffResultCacheTest {
+
+    private final DiffResultCache mCache = new DiffResultCache(DiffResultCache.DEFAULT_MAX_ENTRIES);
+
+    @Test
+    public void sameKeysAndContentHit() {
+        put(list("a", "b", "c"), list("a", "c", "d"));
+
+        // 不同的对象，key和内容都一样
+        List<TestData> oldList = list("a", "b", "c");
+        List<TestData> newList = list("a", "c", "d");
+        DiffUtil.DiffResult result = get(oldList, newList);
+        assertNotNull(result);
+        assertEquals(dispatch(DiffUtil.calculateDiff(new Callback(oldList, newList))), dispatch(result));
+    }
+
+    @Test
+    public void differentKeysMiss() {
+        put(list("a", "b"), list("a", "b", "c"));
+
+        assertNull(get(list("a", "b"), list("a", "b", "d")));
+        assertNull(get(list("b", "a"), list("a", "b", "c")));
+    }
+
+    @Test
+    public void inPlaceContentChangeMisses() {
+        List<TestData> oldList = list("a", "b", "c");
+        List<TestData> newList = list("a", "b", "c");
+        put(oldList, newList);
+        assertNotNull(get(oldList, newList));
+
+        newList.get(1).text = "changed";
+        assertNull(get(oldList, newList));
+    }
+
+    @Test
+    public void hitReadsCurrentListsForPayloads() {
+        List<TestData> cachedOld = list("a", "b");
+        List<TestData> cachedNew = list("a", "b");
+        cachedNew.get(0).text = "x";
+        put(cachedOld, cachedNew);
+
+        List<TestData> oldList = list("a", "b");
+        List<TestData> newList = list("a", "b");
+        newList.get(0).text = "y";
+        DiffUtil.DiffResult result = get(oldList, newList);
+        assertNotNull(result);
+        List<Object> payloads = new ArrayList<>();
+        assertEquals(Collections.singletonList("change 0,1"), dispatch(result, payloads));
+        assertEquals("y", payloads.get(0));
+    }
+
+    @Test
+    public void releaseUnbindsDispatchedLists() {
+        List<TestData> oldList = list("a", "b");
+        List<TestData> newList = list("b", "c");
+        Callback callback = new Callback(oldList, newList);
+        DiffResultCache.RebindableCallback rebindable = DiffResultCache.rebindable(callback);
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(rebindable);
+        mCache.put(DiffResultCache.keysOf(oldList), DiffResultCache.keysOf(newList), rebindable, result);
+        assertTrue(rebindable.isBound());
+
+        mCache.release(result, callback);
+        assertFalse(rebindable.isBound());
+
+        // 命中后绑定到当前的列表，用之前的callback解除不会影响这次绑定
+        Callback current = new Callback(list("a", "b"), list("b", "c"));
+        assertNotNull(mCache.get(DiffResultCache.keysOf(oldList), DiffResultCache.keysOf(newList), current));
+        mCache.release(result, callback);
+        assertTrue(rebindable.isBound());
+        mCache.release(result, current);
+        assertFalse(rebindable.isBound());
+    }
+
+    private void put(List<TestData> oldList, List<TestData> newList) {
+        DiffResultCache.RebindableCallback callback = DiffResultCache.rebindable(new Callback(oldList, newList));
+        mCache.put(DiffResultCache.keysOf(oldList), DiffResultCache.keysOf(newList), callback,
+                DiffUtil.calculateDiff(callback));
+    }
+
+    private DiffUtil.DiffResult get(List<TestData> oldList, List<TestData> newList) {
+        return mCache.get(DiffResultCache.keysOf(oldList), DiffResultCache.keysOf(newList),
+                new Callback(oldList, newList));
+    }
+
+    private static List<String> dispatch(DiffUtil.DiffResult result) {
+        return dispatch(result, new ArrayList<>());
+    }
+
+    private static List<String> dispatch(DiffUtil.DiffResult result, final List<Object> payloads) {
+        final List<String> events = new ArrayList<>();
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                events.add("insert " + position + "," + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                events.add("remove " + position + "," + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                events.add("move " + fromPosition + "," + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                events.add("change " + position + "," + count);
+                payloads.add(payload);
+            }
+        });
+        return events;
+    }
+
+    private static List<TestData> list(String... keys) {
+        List<TestData> list = new ArrayList<>();
+        for (String key : keys) {
+            list.add(new TestData(key.charAt(0), key));
+        }
+        return list;
+    }
+
+    /**
+     * payload是新数据的text，用来检查分发时读取的是哪个列表
+     */
+    private static final class Callback extends DiffUtil.Callback {
+
+        private final List<TestData> mOldList;
+        private final List<TestData> mNewList;
+
+        Callback(List<TestData> oldList, List<TestData> newList) {
+            this.mOldList = oldList;
+            this.mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).id == mNewList.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).areUISame(mNewList.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return mNewList.get(newItemPosition).text;
+        }
+    }
+}
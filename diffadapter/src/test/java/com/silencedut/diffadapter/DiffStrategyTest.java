@@ -0,0 +1,121 @@
+package com.silencedut.diffadapter;
+
+import android.support.v7.util.DiffUtil;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 头尾的增删直接得出通知，大部分数据都换了时全量刷新，其它情况才diff
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class DiffStrategyTest {
+
+    private final DiffStrategy mStrategy = new DiffStrategy();
+
+    @Test
+    public void appendAndNoChange() {
+        List<TestData> oldList = range(0, 10);
+
+        assertEquals(DiffStrategy.STRATEGY_APPEND, decide(oldList, range(0, 12)).strategy);
+        assertEquals(DiffStrategy.STRATEGY_NO_CHANGE, decide(oldList, range(0, 10)).strategy);
+    }
+
+    @Test
+    public void prependAndTruncate() {
+        List<TestData> oldList = range(5, 10);
+
+        assertEquals(DiffStrategy.STRATEGY_PREPEND, decide(oldList, range(0, 15)).strategy);
+        assertEquals(DiffStrategy.STRATEGY_TRUNCATE_TAIL, decide(oldList, range(5, 8)).strategy);
+        assertEquals(DiffStrategy.STRATEGY_TRUNCATE_HEAD, decide(oldList, range(8, 7)).strategy);
+    }
+
+    @Test
+    public void contentChangeIsNotAnAppend() {
+        List<TestData> oldList = range(0, 10);
+        List<TestData> newList = range(0, 12);
+        newList.get(3).text = "changed";
+
+        DiffStrategy.Decision decision = decide(oldList, newList);
+        assertEquals(DiffStrategy.STRATEGY_ASYNC_DIFF, decision.strategy);
+        assertNotNull(decision.diffResult);
+    }
+
+    @Test
+    public void mostlyReplacedListRefreshes() {
+        mStrategy.setFullRefresh(0.2f, 64);
+
+        DiffStrategy.Decision decision = decide(range(0, 100), range(1000, 100));
+        assertEquals(DiffStrategy.STRATEGY_FULL_REFRESH, decision.strategy);
+        assertNull(decision.diffResult);
+        // 小列表保留diff和动画
+        assertEquals(DiffStrategy.STRATEGY_ASYNC_DIFF, decide(range(0, 20), range(1000, 20)).strategy);
+    }
+
+    @Test
+    public void syncThresholdAndShortcutsOff() {
+        mStrategy.setSyncThreshold(16);
+        List<TestData> oldList = range(0, 10);
+        List<TestData> newList = range(0, 12);
+
+        assertTrue(mStrategy.isSync(oldList.size(), newList.size()));
+        assertFalse(mStrategy.isSync(10, 17));
+        DiffStrategy.Decision decision = mStrategy.decide(oldList, newList, new Callback(oldList, newList), true,
+                false);
+        assertEquals(DiffStrategy.STRATEGY_SYNC_DIFF, decision.strategy);
+        assertNotNull(decision.diffResult);
+    }
+
+    private DiffStrategy.Decision decide(List<TestData> oldList, List<TestData> newList) {
+        return mStrategy.decide(oldList, newList, new Callback(oldList, newList), false, true);
+    }
+
+    private static List<TestData> range(int start, int count) {
+        List<TestData> list = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            list.add(new TestData(i, "t" + i));
+        }
+        return list;
+    }
+
+    private static final class Callback extends DiffUtil.Callback {
+
+        private final List<TestData> mOldList;
+        private final List<TestData> mNewList;
+
+        Callback(List<TestData> oldList, List<TestData> newList) {
+            this.mOldList = oldList;
+            this.mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).id == mNewList.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).areUISame(mNewList.get(newItemPosition));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.widget.RecyclerView;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 大量变化分多帧分发时，每一帧adapter的列表大小都和已经发出的notify一致，分发完后和新列表一样
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FrameBudgetDispatcherTest {
+
+    private DiffAdapter mAdapter;
+    private int mNotifiedCount;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                mNotifiedCount = mAdapter.getItemCount();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mNotifiedCount += itemCount;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mNotifiedCount -= itemCount;
+            }
+        });
+    }
+
+    @Test
+    public void largeDiffIsSpreadOverFramesAndStaysConsistent() {
+        List<TestData> initial = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            initial.add(new TestData(i, "row" + i));
+        }
+        mAdapter.setDatas(initial);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1000, mNotifiedCount);
+
+        mAdapter.setDispatchFrameBudget(1);
+        List<TestData> everyOther = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 2) {
+            everyOther.add(initial.get(i));
+        }
+        mAdapter.setDatas(everyOther);
+        ShadowLooper.idleMainLooper();
+        assertTrue("500 removals should not fit in one frame", mAdapter.hasPendingUpdates());
+
+        for (int frame = 0; frame < 200 && mAdapter.hasPendingUpdates(); frame++) {
+            assertEquals(mNotifiedCount, mAdapter.getItemCount());
+            ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        }
+        assertFalse(mAdapter.hasPendingUpdates());
+        assertEquals(500, mNotifiedCount);
+        List<BaseMutableData> datas = mAdapter.getDatas();
+        for (int i = 0; i < everyOther.size(); i++) {
+            assertEquals(everyOther.get(i).id, ((TestData) datas.get(i)).id);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.silencedut.diffadapter;
+
+import android.support.v4.app.FragmentActivity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 页面stop之后的setDatas和直接修改都不开始diff，恢复时按顺序执行
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LifecycleSuspenderTest {
+
+    private final List<Runnable> mDiffTasks = new ArrayList<>();
+    private ActivityController<FragmentActivity> mController;
+    private DiffAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mController = Robolectric.buildActivity(FragmentActivity.class).setup();
+        mAdapter = new DiffAdapter(mController.get());
+        TestData.deferDiffs(mAdapter, mDiffTasks);
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void mutationWhileStoppedWaitsForResume() {
+        mController.pause().stop();
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b"), new TestData(3, "c")));
+        mAdapter.addData(new TestData(4, "d"));
+        mAdapter.updateData(new TestData(3, "updated"));
+
+        assertTrue(mDiffTasks.isEmpty());
+        assertEquals(2, mAdapter.getItemCount());
+
+        mController.start().resume();
+        TestData.runDiffTasks(mDiffTasks);
+        ShadowLooper.idleMainLooper();
+
+        assertFalse(mAdapter.hasPendingUpdates());
+        assertEquals(4, mAdapter.getItemCount());
+        assertEquals("3:updated", mAdapter.getDatas().get(2).toString());
+        assertEquals("4:d", mAdapter.getDatas().get(3).toString());
+    }
+
+    @Test
+    public void mutationWithoutHeldListRunsWhileStopped() {
+        mController.pause().stop();
+        mAdapter.addData(new TestData(3, "c"));
+        ShadowLooper.idleMainLooper();
+
+        assertTrue(mDiffTasks.isEmpty());
+        assertEquals(3, mAdapter.getItemCount());
+    }
+}
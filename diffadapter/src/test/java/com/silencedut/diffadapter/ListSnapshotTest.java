@@ -0,0 +1,121 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+import com.silencedut.diffadapter.store.ItemCodec;
+import com.silencedut.diffadapter.store.RecordReader;
+import com.silencedut.diffadapter.store.RecordWriter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 保存之后能恢复前maxRows行，损坏的文件不会按里面的行数分配内存
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ListSnapshotTest {
+
+    private static final int MAGIC = 0x44414c53;
+    private static final int VERSION = 1;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private final SparseArray<ItemCodec> mCodecs = new SparseArray<>();
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mCodecs.put(TestData.VIEW_ID, new TestCodec());
+        mFile = new File(mFolder.newFolder(), "snapshot");
+    }
+
+    @Test
+    public void savedRowsRestore() throws InterruptedException {
+        ListSnapshot snapshot = new ListSnapshot(mFile, mCodecs, 3);
+        List<BaseMutableData> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(new TestData(i, "row" + i, i));
+        }
+        snapshot.scheduleSave(rows);
+        snapshot.flush();
+        awaitFile();
+
+        List<BaseMutableData> restored = new ListSnapshot(mFile, mCodecs, 3).restore();
+        assertEquals(3, restored.size());
+        TestData last = (TestData) restored.get(2);
+        assertEquals(2L, last.id);
+        assertEquals("row2", last.text);
+        assertEquals(2, last.rank);
+    }
+
+    @Test
+    public void corruptCountIsRejected() throws IOException {
+        writeFile(Integer.MAX_VALUE, new byte[0]);
+
+        assertNull(new ListSnapshot(mFile, mCodecs, 500).restore());
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void truncatedRowIsRejected() throws IOException {
+        // 一行的头说长度是1000，文件里只有4个字节
+        writeFile(1, new byte[]{0, 0, 0, TestData.VIEW_ID, 0, 0, 0x03, (byte) 0xE8, 1, 2, 3, 4});
+
+        assertNull(new ListSnapshot(mFile, mCodecs, 500).restore());
+        assertFalse(mFile.exists());
+    }
+
+    private void writeFile(int count, byte[] rows) throws IOException {
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(mFile));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(count);
+            output.write(rows);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void awaitFile() throws InterruptedException {
+        for (int i = 0; i < 500 && !mFile.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(mFile.exists());
+    }
+
+    private static final class TestCodec implements ItemCodec<TestData> {
+
+        @Override
+        public void encode(@NonNull TestData data, @NonNull RecordWriter out) {
+            out.putLong(data.id).putString(data.text).putVarInt(data.rank);
+        }
+
+        @NonNull
+        @Override
+        public TestData decode(int viewId, @NonNull RecordReader in) {
+            return new TestData(in.getLong(), in.getString(), in.getVarInt());
+        }
+    }
+}
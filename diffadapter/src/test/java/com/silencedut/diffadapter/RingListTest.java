@@ -0,0 +1,79 @@
+package com.silencedut.diffadapter;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 环形列表在head绕回、中间插入删除和扩容之后的顺序和ArrayList一致
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class RingListTest {
+
+    @Test
+    public void headRemovalWrapsAround() {
+        RingList list = new RingList(4);
+        for (int i = 0; i < 4; i++) {
+            list.add(new TestData(i, "m"));
+        }
+        list.subList(0, 3).clear();
+        list.add(new TestData(4, "m"));
+        list.add(new TestData(5, "m"));
+        list.add(1, new TestData(6, "m"));
+
+        assertIds(list, 3, 6, 4, 5);
+        // 已满并且head不在0时扩容
+        list.add(new TestData(7, "m"));
+        list.add(new TestData(8, "m"));
+        assertIds(list, 3, 6, 4, 5, 7, 8);
+        list.remove(2);
+        assertIds(list, 3, 6, 5, 7, 8);
+    }
+
+    @Test
+    public void matchesArrayListUnderRandomOps() {
+        Random random = new Random(43);
+        RingList list = new RingList(8);
+        List<BaseMutableData> expected = new ArrayList<>();
+        for (int step = 0; step < 5000; step++) {
+            int op = random.nextInt(6);
+            TestData data = new TestData(step, "m");
+            if (op <= 1 || expected.isEmpty()) {
+                list.add(data);
+                expected.add(data);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size() + 1);
+                list.add(index, data);
+                expected.add(index, data);
+            } else if (op == 3) {
+                int count = 1 + random.nextInt(Math.min(4, expected.size()));
+                list.subList(0, count).clear();
+                expected.subList(0, count).clear();
+            } else if (op == 4) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, data), list.set(index, data));
+            }
+            assertEquals(expected, list);
+        }
+        list.clear();
+        assertEquals(0, list.size());
+    }
+
+    private static void assertIds(List<BaseMutableData> list, long... ids) {
+        assertEquals(ids.length, list.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], ((TestData) list.get(i)).id);
+        }
+    }
+}
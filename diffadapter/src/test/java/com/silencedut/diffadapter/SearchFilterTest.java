@@ -0,0 +1,140 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 按词前缀筛选，顺序和源列表一样，数据更新后重新判断是否匹配
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SearchFilterTest {
+
+    private DiffAdapter mAdapter;
+    private SearchFilter mFilter;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        mFilter = mAdapter.enableSearch(new SearchFilter.TextExtractor() {
+            @Override
+            public void appendTexts(@NonNull BaseMutableData data, @NonNull List<CharSequence> texts) {
+                texts.add(((TestData) data).text);
+            }
+        });
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "Alice Smith"), new TestData(2, "Bob"),
+                new TestData(3, "alan"), new TestData(4, "张三")));
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void tokenizeSplitsWordsAndIdeographs() {
+        assertArrayEquals(new String[]{"alice", "smith", "42"}, SearchFilter.tokenize("Alice-Smith 42"));
+        assertArrayEquals(new String[]{"张", "三", "bob"}, SearchFilter.tokenize("张三Bob"));
+    }
+
+    @Test
+    public void queryMatchesWordPrefixesInSourceOrder() {
+        query("al");
+        assertShown(1, 3);
+        // 继续输入只在上一次的结果里找
+        query("ali");
+        assertShown(1);
+        query("sm al");
+        assertShown(1);
+        query("张");
+        assertShown(4);
+        query("");
+        assertShown(1, 2, 3, 4);
+    }
+
+    @Test
+    public void updatedRowIsRefiltered() {
+        query("al");
+        mAdapter.updateData(new TestData(2, "Albert"));
+        ShadowLooper.idleMainLooper();
+        assertShown(1, 2, 3);
+
+        mAdapter.updateData(new TestData(1, "Carol"));
+        ShadowLooper.idleMainLooper();
+        assertShown(2, 3);
+        query("");
+        assertShown(1, 2, 3, 4);
+    }
+
+    @Test
+    public void setDatasKeepsQuery() {
+        query("b");
+        mAdapter.setDatas(Arrays.asList(new TestData(5, "Bea"), new TestData(2, "Bob"), new TestData(3, "alan")));
+        ShadowLooper.idleMainLooper();
+
+        assertShown(5, 2);
+        assertEquals("b", mFilter.getQuery());
+    }
+
+    @Test
+    public void directMutationsAreRejected() {
+        query("al");
+        try {
+            mAdapter.deleteData(1L);
+            fail("deleteData should be rejected while searching");
+        } catch (IllegalStateException expected) {
+            // 源列表和索引都没有变化
+        }
+        try {
+            mAdapter.addData(new TestData(5, "Alex"));
+            fail("addData should be rejected while searching");
+        } catch (IllegalStateException expected) {
+            // 源列表和索引都没有变化
+        }
+        ShadowLooper.idleMainLooper();
+        assertShown(1, 3);
+        query("");
+        assertShown(1, 2, 3, 4);
+    }
+
+    private void query(String query) {
+        mFilter.setQuery(query);
+        ShadowLooper.idleMainLooper();
+    }
+
+    private void assertShown(long... ids) {
+        List<Long> shown = new ArrayList<>();
+        for (TestData data : mAdapter.getData(TestData.class)) {
+            shown.add(data.id);
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long id : ids) {
+            expected.add(id);
+        }
+        assertEquals(expected, shown);
+        assertEquals(ids.length, mAdapter.getItemCount());
+    }
+}
@@ -0,0 +1,244 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 有序模式按key找到已有的行，排序值变化时只move一次；开启搜索时源列表和显示的列表都保持有序
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SortedModeTest {
+
+    private static final Comparator<BaseMutableData> BY_RANK = new Comparator<BaseMutableData>() {
+        @Override
+        public int compare(BaseMutableData o1, BaseMutableData o2) {
+            int rank1 = ((TestData) o1).rank;
+            int rank2 = ((TestData) o2).rank;
+            return rank1 < rank2 ? -1 : (rank1 == rank2 ? 0 : 1);
+        }
+    };
+
+    @Test
+    public void upsertMovesExistingRowOnce() {
+        SortedMode sortedMode = new SortedMode(BY_RANK);
+        List<BaseMutableData> list = new ArrayList<>();
+        CountingCallback callback = new CountingCallback();
+        for (int i = 0; i < 10; i++) {
+            sortedMode.upsert(list, new TestData(i, "row", i * 10), callback);
+        }
+        assertEquals(10, callback.inserted);
+
+        sortedMode.upsert(list, new TestData(2, "moved", 95), callback);
+        assertEquals(1, callback.moved);
+        assertEquals(10, list.size());
+        assertEquals("2:moved", list.get(9).toString());
+
+        // 列表被直接修改过之后仍然能找到已有的行
+        list.remove(0);
+        sortedMode.upsert(list, new TestData(5, "same", 50), callback);
+        assertEquals(9, list.size());
+        assertEquals(2, callback.changed);
+        assertSorted(list);
+    }
+
+    @Test
+    public void upsertAllReplacesAndMerges() {
+        SortedMode sortedMode = new SortedMode(BY_RANK);
+        List<BaseMutableData> list = new ArrayList<>();
+        CountingCallback callback = new CountingCallback();
+        sortedMode.upsertAll(list, Arrays.asList(new TestData(1, "a", 10), new TestData(2, "b", 20),
+                new TestData(3, "c", 30)), callback);
+        sortedMode.upsertAll(list, Arrays.asList(new TestData(1, "a", 35), new TestData(2, "b2", 20),
+                new TestData(4, "d", 5)), callback);
+
+        assertEquals(4, list.size());
+        assertEquals("4:d", list.get(0).toString());
+        assertEquals("2:b2", list.get(1).toString());
+        assertEquals("3:c", list.get(2).toString());
+        assertEquals("1:a", list.get(3).toString());
+    }
+
+    @Test
+    public void upsertSendsCopyOfPayloadKeys() {
+        SortedMode sortedMode = new SortedMode(BY_RANK);
+        List<BaseMutableData> list = new ArrayList<>();
+        CountingCallback callback = new CountingCallback();
+        sortedMode.upsert(list, new TestData(1, "a", 10), callback);
+
+        TestData newData = new TestData(1, "b", 10);
+        newData.getPayloadKeys().add("KEY_OWN");
+        sortedMode.upsert(list, newData, callback);
+
+        assertNotSame(newData.getPayloadKeys(), callback.lastPayload);
+        assertTrue(((Set<?>) callback.lastPayload).contains("KEY_OWN"));
+        assertTrue(((Set<?>) callback.lastPayload).contains(TestData.KEY_TEXT));
+    }
+
+    @Test
+    public void sameFeatureWithOtherViewIdIsAnotherRow() {
+        SortedMode sortedMode = new SortedMode(BY_RANK);
+        List<BaseMutableData> list = new ArrayList<>();
+        CountingCallback callback = new CountingCallback();
+        sortedMode.upsert(list, new TestData(1, "a", 10), callback);
+        sortedMode.upsert(list, new OtherViewData(1, "header", 5), callback);
+        sortedMode.upsert(list, new TestData(1, "a2", 20), callback);
+        sortedMode.upsert(list, new OtherViewData(1, "header2", 5), callback);
+
+        assertEquals(2, callback.inserted);
+        assertEquals(2, callback.changed);
+        assertEquals("1:header2", list.get(0).toString());
+        assertEquals("1:a2", list.get(1).toString());
+    }
+
+    @Test
+    public void updateAndAddDataKeepOrder() {
+        DiffAdapter adapter = newAdapter();
+        adapter.setSortedComparator(BY_RANK);
+        adapter.setDatas(Arrays.asList(new TestData(1, "a", 10), new TestData(2, "b", 20),
+                new TestData(3, "c", 30)));
+        ShadowLooper.idleMainLooper();
+
+        // 排序值变化的更新走二分查找，只move一次
+        adapter.updateData(new TestData(1, "a", 40));
+        adapter.addData(new TestData(4, "d", 15));
+        adapter.addDatas(Arrays.asList(new TestData(5, "e", 5), new TestData(2, "b2", 20)));
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "5:e", "4:d", "2:b2", "3:c", "1:a");
+
+        UpdateInbox inbox = adapter.getUpdateInbox();
+        inbox.add(new TestData(6, "f", 25));
+        inbox.insert(0, new TestData(7, "g", 50));
+        inbox.drain();
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "5:e", "4:d", "2:b2", "6:f", "3:c", "1:a", "7:g");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void insertDataIsRejected() {
+        DiffAdapter adapter = newAdapter();
+        adapter.setSortedComparator(BY_RANK);
+        adapter.insertData(0, Arrays.asList(new TestData(1, "a", 10)));
+    }
+
+    @Test
+    public void addSortedDataKeepsSearchSourceInSync() {
+        DiffAdapter adapter = newAdapter();
+        adapter.setSortedComparator(BY_RANK);
+        SearchFilter searchFilter = adapter.enableSearch(new SearchFilter.TextExtractor() {
+            @Override
+            public void appendTexts(@NonNull BaseMutableData data, @NonNull List<CharSequence> texts) {
+                texts.add(((TestData) data).text);
+            }
+        });
+        adapter.setDatas(Arrays.asList(new TestData(1, "apple", 30), new TestData(2, "banana", 20),
+                new TestData(3, "apricot", 10)));
+        ShadowLooper.idleMainLooper();
+        searchFilter.setQuery("ap");
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "3:apricot", "1:apple");
+
+        adapter.addSortedData(new TestData(4, "apex", 15));
+        adapter.addSortedData(new TestData(5, "cherry", 5));
+        adapter.addSortedData(new TestData(1, "apple", 1));
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "1:apple", "3:apricot", "4:apex");
+
+        // 不再匹配的行被去掉
+        adapter.addSortedData(new TestData(3, "date", 10));
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "1:apple", "4:apex");
+
+        searchFilter.setQuery("");
+        ShadowLooper.idleMainLooper();
+        assertRows(adapter, "1:apple", "5:cherry", "3:date", "4:apex", "2:banana");
+    }
+
+    private static DiffAdapter newAdapter() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        DiffAdapter adapter = new DiffAdapter(activity);
+        adapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        return adapter;
+    }
+
+    private static void assertRows(DiffAdapter adapter, String... rows) {
+        List<BaseMutableData> datas = adapter.getDatas();
+        assertEquals(rows.length, datas.size());
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i], datas.get(i).toString());
+        }
+    }
+
+    private static void assertSorted(List<BaseMutableData> list) {
+        for (int i = 1; i < list.size(); i++) {
+            assertEquals(true, BY_RANK.compare(list.get(i - 1), list.get(i)) <= 0);
+        }
+    }
+
+    private static final class CountingCallback implements ListUpdateCallback {
+        int inserted;
+        int moved;
+        int changed;
+        Object lastPayload;
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            moved++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            changed += count;
+            lastPayload = payload;
+        }
+    }
+
+    private static final class OtherViewData extends TestData {
+
+        OtherViewData(long id, String text, int rank) {
+            super(id, text, rank);
+        }
+
+        @Override
+        public int getItemViewId() {
+            return VIEW_ID + 1;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+import android.view.View;
+
+import com.silencedut.diffadapter.holder.BaseDiffViewHolder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * stable id下只有全量刷新时位置没变的行可以跳过重新绑定，明确通知修改的行总是绑定
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StableIdTest {
+
+    private DiffAdapter mAdapter;
+    private CountingHolder mHolder;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setUseStableIds(true);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+        mHolder = new CountingHolder(new View(activity), mAdapter);
+        bind();
+        assertEquals(1, mHolder.binds);
+    }
+
+    @Test
+    public void inPlaceUpdateAlwaysBinds() {
+        // 即使刚全量刷新过，原地修改后的通知也要绑定
+        mAdapter.mUpdateCallback.onDataSetChanged();
+        TestData data = mAdapter.getData(TestData.class).get(0);
+        data.text = "changed";
+        mAdapter.updateData(data);
+        ShadowLooper.idleMainLooper();
+        bind();
+
+        assertEquals(2, mHolder.binds);
+        assertEquals("changed", mHolder.boundText);
+    }
+
+    @Test
+    public void fullRefreshSkipsUnchangedRows() {
+        mAdapter.mUpdateCallback.onDataSetChanged();
+        bind();
+        assertEquals(1, mHolder.binds);
+
+        // 之后明确通知的修改不再跳过
+        mAdapter.mUpdateCallback.onChanged(0, 1, null);
+        bind();
+        assertEquals(2, mHolder.binds);
+    }
+
+    @Test
+    public void fullRefreshRebindsMovedRows() {
+        mAdapter.setDatas(Arrays.asList(new TestData(2, "b"), new TestData(1, "a")));
+        ShadowLooper.idleMainLooper();
+        mAdapter.mUpdateCallback.onDataSetChanged();
+        // 同一条数据、UI相同，但是换了位置
+        mAdapter.onBindViewHolder(mHolder, 1, Collections.emptyList());
+
+        assertEquals(2, mHolder.binds);
+        assertEquals(1, mHolder.boundPosition);
+    }
+
+    private void bind() {
+        mAdapter.onBindViewHolder(mHolder, 0, Collections.emptyList());
+    }
+
+    static final class CountingHolder extends BaseDiffViewHolder<TestData> {
+
+        int binds;
+        String boundText;
+        int boundPosition;
+
+        CountingHolder(View itemView, DiffAdapter adapter) {
+            super(itemView, adapter);
+        }
+
+        @Override
+        public void updateItem(@NonNull TestData data, int position) {
+            binds++;
+            boundText = data.text;
+            boundPosition = position;
+        }
+
+        @Override
+        public int getItemViewId() {
+            return TestData.VIEW_ID;
+        }
+    }
+}
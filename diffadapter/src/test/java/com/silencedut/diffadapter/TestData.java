@@ -0,0 +1,86 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 单元测试用的数据，id唯一，text变化表示UI变化，rank用于排序；
+ * 还有需要控制后台diff什么时候完成的测试共用的方法
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+public class TestData extends BaseMutableData<TestData> {
+
+    public static final int VIEW_ID = 1;
+    public static final String KEY_TEXT = "KEY_TEXT";
+
+    public final long id;
+    public String text;
+    public int rank;
+
+    public TestData(long id, String text) {
+        this(id, text, 0);
+    }
+
+    public TestData(long id, String text, int rank) {
+        this.id = id;
+        this.text = text;
+        this.rank = rank;
+    }
+
+    @NonNull
+    @Override
+    public Object uniqueItemFeature() {
+        return id;
+    }
+
+    @Override
+    public boolean areUISame(@NonNull TestData data) {
+        return text.equals(data.text) && rank == data.rank;
+    }
+
+    @Override
+    public void appendPayloadKeys(@NonNull TestData newData, @NonNull Set<String> payloadKeys) {
+        if (!text.equals(newData.text)) {
+            payloadKeys.add(KEY_TEXT);
+        }
+    }
+
+    @Override
+    public int getItemViewId() {
+        return VIEW_ID;
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + text;
+    }
+
+    /**
+     * 每次setDatas都在后台diff，后台任务放进tasks，调用{@link #runDiffTasks(List)}时才执行
+     */
+    public static void deferDiffs(@NonNull DiffAdapter adapter, @NonNull final List<Runnable> tasks) {
+        adapter.setDiffStrategy(new DiffStrategy().setSyncThreshold(0).setFullRefresh(0, 0));
+        adapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                tasks.add(command);
+            }
+        });
+    }
+
+    public static void runDiffTasks(@NonNull List<Runnable> tasks) {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : pending) {
+            task.run();
+        }
+    }
+}
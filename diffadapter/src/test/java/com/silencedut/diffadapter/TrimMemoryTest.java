@@ -0,0 +1,112 @@
+package com.silencedut.diffadapter;
+
+import android.content.ComponentCallbacks2;
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 内存紧张时清空的索引在下次使用时重建，列表里还有的行stable id不变
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TrimMemoryTest {
+
+    private static final Comparator<BaseMutableData> BY_RANK = new Comparator<BaseMutableData>() {
+        @Override
+        public int compare(BaseMutableData o1, BaseMutableData o2) {
+            int rank1 = ((TestData) o1).rank;
+            int rank2 = ((TestData) o2).rank;
+            return rank1 < rank2 ? -1 : (rank1 == rank2 ? 0 : 1);
+        }
+    };
+
+    private DiffAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void searchAndSortedIndexesAreRebuilt() {
+        mAdapter.setSortedComparator(BY_RANK);
+        SearchFilter searchFilter = mAdapter.enableSearch(new SearchFilter.TextExtractor() {
+            @Override
+            public void appendTexts(@NonNull BaseMutableData data, @NonNull List<CharSequence> texts) {
+                texts.add(((TestData) data).text);
+            }
+        });
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "apple", 10), new TestData(2, "banana", 20),
+                new TestData(3, "apricot", 30)));
+        ShadowLooper.idleMainLooper();
+
+        mAdapter.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        searchFilter.setQuery("ap");
+        ShadowLooper.idleMainLooper();
+        assertRows("1:apple", "3:apricot");
+
+        mAdapter.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        // 索引清空后已有的行仍然被替换，不会重复插入
+        mAdapter.addSortedData(new TestData(1, "apple", 40));
+        ShadowLooper.idleMainLooper();
+        assertRows("3:apricot", "1:apple");
+
+        searchFilter.setQuery("");
+        ShadowLooper.idleMainLooper();
+        assertRows("2:banana", "3:apricot", "1:apple");
+    }
+
+    @Test
+    public void stableIdsOfCurrentRowsSurviveTrim() {
+        mAdapter.setUseStableIds(true);
+        mAdapter.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+        long first = mAdapter.getItemId(0);
+        long second = mAdapter.getItemId(1);
+        mAdapter.setDatas(Arrays.asList(new TestData(2, "b")));
+        ShadowLooper.idleMainLooper();
+
+        mAdapter.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(second, mAdapter.getItemId(0));
+
+        // 被去掉的行重新出现时分配新的id
+        mAdapter.setDatas(Arrays.asList(new TestData(2, "b"), new TestData(1, "a")));
+        ShadowLooper.idleMainLooper();
+        assertEquals(second, mAdapter.getItemId(0));
+        assertNotEquals(first, mAdapter.getItemId(1));
+    }
+
+    private void assertRows(String... rows) {
+        List<BaseMutableData> datas = mAdapter.getDatas();
+        assertEquals(rows.length, datas.size());
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i], datas.get(i).toString());
+        }
+    }
+}
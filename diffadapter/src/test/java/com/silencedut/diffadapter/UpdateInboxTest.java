@@ -0,0 +1,98 @@
+package com.silencedut.diffadapter;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 队列满时只有update合并到同一个key还在队列里的修改，其它修改等待主线程取走，顺序不变
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UpdateInboxTest {
+
+    private DiffAdapter mAdapter;
+    private UpdateInbox mInbox;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        mAdapter.setUpdateInbox(4, UpdateInbox.OVERFLOW_COALESCE);
+        mInbox = mAdapter.getUpdateInbox();
+    }
+
+    @Test
+    public void updateMergesIntoQueuedAdd() {
+        mInbox.add(new TestData(1, "a"));
+        mInbox.add(new TestData(2, "a"));
+        mInbox.update(new TestData(1, "b"));
+        mInbox.add(new TestData(3, "a"));
+        // 队列已满，合并到还没执行的add(2)和update(1)
+        mInbox.update(new TestData(2, "c"));
+        mInbox.update(new TestData(1, "d"));
+        drain();
+
+        assertEquals(2, mInbox.getDroppedCount());
+        assertRows("1:d", "2:c", "3:a");
+    }
+
+    @Test
+    public void addWhenFullWaitsInsteadOfCoalescing() {
+        for (int i = 1; i <= 6; i++) {
+            mInbox.add(new TestData(i, "a"));
+        }
+        mInbox.update(new TestData(5, "b"));
+        drain();
+
+        assertEquals(0, mInbox.getDroppedCount());
+        assertRows("1:a", "2:a", "3:a", "4:a", "5:b", "6:a");
+    }
+
+    @Test
+    public void updateIsNotMergedAcrossDelete() {
+        mInbox.add(new TestData(1, "a"));
+        mInbox.update(new TestData(1, "b"));
+        mInbox.delete(1L);
+        mInbox.add(new TestData(2, "a"));
+        mInbox.update(new TestData(1, "c"));
+        drain();
+
+        assertEquals(0, mInbox.getDroppedCount());
+        assertRows("2:a");
+    }
+
+    private void drain() {
+        mInbox.drain();
+        ShadowLooper.idleMainLooper();
+    }
+
+    private void assertRows(String... rows) {
+        List<BaseMutableData> datas = mAdapter.getDatas();
+        assertEquals(rows.length, datas.size());
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i], datas.get(i).toString());
+        }
+    }
+}
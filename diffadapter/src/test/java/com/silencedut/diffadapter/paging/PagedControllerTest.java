@@ -0,0 +1,128 @@
+package com.silencedut.diffadapter.paging;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.TestData;
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按页替换：先放占位行，加载完成后只替换这一页；过期的加载结果不再生效
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PagedControllerTest {
+
+    private static final int PAGE_SIZE = 3;
+    private static final int PLACEHOLDER_VIEW_ID = 2;
+
+    private final List<PageLoader.Callback<TestData>> mRequests = new ArrayList<>();
+    private DiffAdapter mAdapter;
+    private PagedController<TestData> mController;
+
+    @Before
+    public void setUp() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mAdapter = new DiffAdapter(activity);
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        mController = new PagedController<>(mAdapter, new PageLoader<TestData>() {
+            @Override
+            public void loadPage(int page, int pageSize, @NonNull Callback<TestData> callback) {
+                mRequests.add(callback);
+            }
+        }, PAGE_SIZE, PLACEHOLDER_VIEW_ID);
+    }
+
+    @Test
+    public void firstPageReplacesPlaceholders() {
+        mController.start();
+        ShadowLooper.idleMainLooper();
+        assertEquals(PAGE_SIZE, mAdapter.getItemCount());
+        assertTrue(mAdapter.getDatas().get(0) instanceof PagePlaceholder);
+
+        mRequests.get(0).onPageLoaded(page(0, 1, 2), false);
+        ShadowLooper.idleMainLooper();
+        assertIds(0, 1, 2);
+        assertEquals(1, mController.getLoadedPageCount());
+    }
+
+    @Test
+    public void failedPageRetries() {
+        mController.start();
+        mRequests.get(0).onPageFailed();
+        ShadowLooper.idleMainLooper();
+        assertEquals(0, mController.getLoadedPageCount());
+
+        mController.retry();
+        assertEquals(2, mRequests.size());
+        mRequests.get(1).onPageLoaded(page(5, 6), true);
+        ShadowLooper.idleMainLooper();
+        assertIds(5, 6);
+    }
+
+    @Test
+    public void staleLoadAfterRestartIsIgnored() {
+        mController.start();
+        mController.start();
+        mRequests.get(0).onPageLoaded(page(0, 1, 2), false);
+        ShadowLooper.idleMainLooper();
+        assertEquals(0, mController.getLoadedPageCount());
+
+        mRequests.get(1).onPageLoaded(page(7), true);
+        ShadowLooper.idleMainLooper();
+        assertIds(7);
+    }
+
+    @Test
+    public void replaceToEndFromMiddle() {
+        mAdapter.setDatas(page(0, 1, 2, 3, 4));
+        ShadowLooper.idleMainLooper();
+
+        mAdapter.replaceDatas(2, Integer.MAX_VALUE, Arrays.<BaseMutableData>asList(new TestData(9, "9")));
+        ShadowLooper.idleMainLooper();
+        assertIds(0, 1, 9);
+    }
+
+    private void assertIds(long... ids) {
+        List<Long> shown = new ArrayList<>();
+        for (BaseMutableData data : mAdapter.getDatas()) {
+            shown.add(((TestData) data).id);
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long id : ids) {
+            expected.add(id);
+        }
+        assertEquals(expected, shown);
+    }
+
+    private static List<TestData> page(long... ids) {
+        List<TestData> page = new ArrayList<>();
+        for (long id : ids) {
+            page.add(new TestData(id, String.valueOf(id)));
+        }
+        return page;
+    }
+}
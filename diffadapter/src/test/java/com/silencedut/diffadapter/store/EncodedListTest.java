@@ -0,0 +1,133 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import com.silencedut.diffadapter.TestData;
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SchemaCodec编码解码一致，EncodedList按key哈希查找和修改行
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EncodedListTest {
+
+    @Test
+    public void schemaCodecRoundTrip() {
+        SchemaCodec<Contact> codec = new SchemaCodec<>(Contact.class);
+        RecordWriter writer = new RecordWriter();
+        Contact contact = new Contact(42, "silence", null, true);
+        codec.encode(contact, writer);
+        byte[] bytes = writer.toByteArray();
+
+        Contact decoded = codec.decode(Contact.VIEW_ID,
+                new RecordReader().reset(ByteBuffer.wrap(bytes), 0, bytes.length));
+        assertEquals(42L, decoded.id);
+        assertEquals("silence", decoded.name);
+        assertNull(decoded.unread);
+        assertTrue(decoded.online);
+    }
+
+    @Test
+    public void indexOfItemFindsEncodedAndObjectRows() {
+        EncodedList list = new EncodedList(codecs(), mixedRows(100));
+        assertTrue(list.isEncoded(10));
+        assertFalse(list.isEncoded(11));
+        assertEquals(Contact.VIEW_ID, list.getItemViewId(10));
+
+        assertEquals(10, list.indexOfItem(Contact.VIEW_ID, 10L, 0));
+        assertEquals(11, list.indexOfItem(TestData.VIEW_ID, 11L, 0));
+        assertEquals(-1, list.indexOfItem(TestData.VIEW_ID, 10L, 0));
+        assertEquals(-1, list.indexOfItem(Contact.VIEW_ID, 10L, 11));
+        assertEquals("c10", ((Contact) list.peek(10)).name);
+    }
+
+    @Test
+    public void setReplacesEncodedContent() {
+        EncodedList list = new EncodedList(codecs(), mixedRows(20));
+        EncodedList copy = list.copy();
+        assertTrue(list.isSameItem(4, copy, 4));
+        assertTrue(list.isSameContent(4, copy, 4));
+
+        BaseMutableData old = list.set(4, new Contact(4, "renamed", 3, false));
+        assertEquals("c4", ((Contact) old).name);
+        int index = list.indexOfItem(Contact.VIEW_ID, 4L, 0);
+        assertEquals(4, index);
+        assertEquals("renamed", ((Contact) list.get(index)).name);
+        assertEquals(Integer.valueOf(3), ((Contact) list.get(index)).unread);
+        assertTrue(list.isSameItem(4, copy, 4));
+        assertFalse(list.isSameContent(4, copy, 4));
+        assertEquals("c4", ((Contact) copy.get(4)).name);
+        list.release();
+        copy.release();
+    }
+
+    private static SparseArray<ItemCodec> codecs() {
+        SparseArray<ItemCodec> codecs = new SparseArray<>();
+        codecs.put(Contact.VIEW_ID, new SchemaCodec<>(Contact.class));
+        return codecs;
+    }
+
+    /**
+     * 偶数行是编码的Contact，奇数行是没有codec的TestData
+     */
+    private static List<BaseMutableData> mixedRows(int count) {
+        List<BaseMutableData> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(i % 2 == 0 ? new Contact(i, "c" + i, i, false) : new TestData(i, "t" + i));
+        }
+        return rows;
+    }
+
+    public static class Contact extends BaseMutableData<Contact> {
+
+        static final int VIEW_ID = 2;
+
+        long id;
+        String name;
+        Integer unread;
+        boolean online;
+
+        public Contact() {
+        }
+
+        Contact(long id, String name, Integer unread, boolean online) {
+            this.id = id;
+            this.name = name;
+            this.unread = unread;
+            this.online = online;
+        }
+
+        @NonNull
+        @Override
+        public Object uniqueItemFeature() {
+            return id;
+        }
+
+        @Override
+        public boolean areUISame(@NonNull Contact data) {
+            return name.equals(data.name) && online == data.online;
+        }
+
+        @Override
+        public int getItemViewId() {
+            return VIEW_ID;
+        }
+    }
+}
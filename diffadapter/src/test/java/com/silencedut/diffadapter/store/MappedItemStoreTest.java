@@ -0,0 +1,187 @@
+package com.silencedut.diffadapter.store;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.widget.RecyclerView;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.TestData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 文件存储的读写，以及按索引里的key哈希查找和更新一行
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MappedItemStoreTest {
+
+    private static final int ROWS = 200;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private MappedItemStore<TestData> mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mStore = new MappedItemStore<>(mFolder.newFolder(), "test", new TestCodec());
+        List<TestData> datas = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            datas.add(new TestData(i, "row" + i, i % 7));
+        }
+        mStore.append(datas);
+        awaitSize(ROWS);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+    }
+
+    @Test
+    public void readsBackEncodedRows() {
+        StoreBackedList list = new StoreBackedList(mStore, StoreBackedList.DEFAULT_CACHE_SIZE);
+        assertEquals(ROWS, list.size());
+        TestData data = (TestData) list.get(123);
+        assertEquals(123L, data.id);
+        assertEquals("row123", data.text);
+        assertEquals(123 % 7, data.rank);
+    }
+
+    @Test
+    public void indexOfItemUsesKeyIndex() {
+        StoreBackedList list = new StoreBackedList(mStore, StoreBackedList.DEFAULT_CACHE_SIZE);
+        assertEquals(150, list.indexOfItem(TestData.VIEW_ID, 150L, 0));
+        assertEquals(-1, list.indexOfItem(TestData.VIEW_ID, 150L, 151));
+        assertEquals(-1, list.indexOfItem(TestData.VIEW_ID + 1, 150L, 0));
+        assertEquals(-1, list.indexOfItem(TestData.VIEW_ID, (long) ROWS, 0));
+    }
+
+    @Test
+    public void updateDataWritesThroughStore() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        DiffAdapter adapter = new DiffAdapter(activity);
+        adapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        adapter.setItemStore(mStore);
+        ShadowLooper.idleMainLooper();
+        assertEquals(ROWS, adapter.getItemCount());
+
+        adapter.updateData(new TestData(150, "updated", 1));
+        assertEquals("updated", ((TestData) adapter.getDatas().get(150)).text);
+        awaitWrite();
+        assertEquals("updated", mStore.read(150).text);
+        assertEquals("row149", mStore.read(149).text);
+    }
+
+    @Test
+    public void updateIsVisibleOnlyAfterMainThreadSwap() throws InterruptedException {
+        mStore.update(150, new TestData(150, "updated", 1));
+        // 写线程可能已经写完，但主线程还没有切换offset
+        Thread.sleep(50);
+        assertEquals("row150", mStore.read(150).text);
+
+        awaitWrite();
+        assertEquals("updated", mStore.read(150).text);
+        assertEquals(1, mStore.read(150).rank);
+    }
+
+    @Test
+    public void updateDataNotifiesOnce() {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        DiffAdapter adapter = new DiffAdapter(activity);
+        adapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        adapter.setItemStore(mStore);
+        ShadowLooper.idleMainLooper();
+        final int[] changes = new int[1];
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+                changes[0]++;
+            }
+        });
+
+        adapter.updateData(new TestData(150, "updated", 1));
+        awaitWrite();
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, changes[0]);
+    }
+
+    @Test
+    public void hashCollisionIsNotSameItem() throws InterruptedException {
+        // 和id为0的key哈希相同
+        long collidingId = (1L << 32) | 1L;
+        assertEquals(Long.valueOf(0).hashCode(), Long.valueOf(collidingId).hashCode());
+        mStore.append(new TestData(collidingId, "row0", 0));
+        awaitSize(ROWS + 1);
+
+        StoreBackedList list = new StoreBackedList(mStore, StoreBackedList.DEFAULT_CACHE_SIZE);
+        assertFalse(list.isSameItem(0, list, ROWS));
+        assertTrue(list.isSameItem(7, list, 7));
+        assertFalse(list.isSameContent(0, list, ROWS));
+        assertTrue(list.isSameContent(3, list, 3));
+        assertFalse(list.isSameContent(1, list, 2));
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        for (int i = 0; i < 500 && mStore.size() < size; i++) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+        }
+        assertEquals(size, mStore.size());
+    }
+
+    private void awaitWrite() {
+        for (int i = 0; i < 500 && !"updated".equals(mStore.read(150).text); i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            ShadowLooper.idleMainLooper();
+        }
+    }
+
+    private static final class TestCodec implements ItemCodec<TestData> {
+
+        @Override
+        public void encode(@NonNull TestData data, @NonNull RecordWriter out) {
+            out.putLong(data.id).putString(data.text).putVarInt(data.rank);
+        }
+
+        @NonNull
+        @Override
+        public TestData decode(int viewId, @NonNull RecordReader in) {
+            return new TestData(in.getLong(), in.getString(), in.getVarInt());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.silencedut.diffadapter.trace;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.silencedut.diffadapter.DiffAdapter;
+import com.silencedut.diffadapter.TestData;
+import com.silencedut.diffadapter.data.BaseMutableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 录制一段修改再回放到另一个adapter上，回放后的列表和录制时的列表key、顺序一致
+ *
+ * @author agent
+ * @date 2026/10/19
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TraceRoundTripTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private FragmentActivity mActivity;
+    private ClosingStream mStream;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+        mStream = new ClosingStream();
+    }
+
+    @Test
+    public void replayMatchesRecordedList() throws Exception {
+        DiffAdapter recorded = newAdapter();
+        MutationRecorder recorder = new MutationRecorder(mStream);
+        recorded.setMutationRecorder(recorder);
+
+        recorded.setDatas(Arrays.asList(new TestData(1, "a"), new TestData(2, "b"), new TestData(3, "c")));
+        recorded.addData(new TestData(4, "d"));
+        recorded.insertData(1, Arrays.asList(new TestData(5, "e")));
+        recorded.deleteData((Object) 3L);
+        recorded.updateData(new TestData(2, "b2"));
+        recorded.deleteData(0, 1);
+
+        DiffAdapter replayed = replay(recorder, 6);
+
+        assertSameKeys(recorded.getDatas(), replayed.getDatas());
+        TraceData updated = (TraceData) replayed.getDatas().get(1);
+        assertEquals(Long.valueOf(2).hashCode(), updated.key);
+        assertNotEquals("updated row must have a new content fingerprint",
+                Long.valueOf(2).hashCode() * 31, updated.getContent());
+        TraceData untouched = (TraceData) replayed.getDatas().get(0);
+        assertEquals(Long.valueOf(5).hashCode() * 31, untouched.getContent());
+    }
+
+    @Test
+    public void sortedAddsAreReplayedAtRecordedPositions() throws Exception {
+        DiffAdapter recorded = newAdapter();
+        recorded.setSortedComparator(new Comparator<BaseMutableData>() {
+            @Override
+            public int compare(BaseMutableData o1, BaseMutableData o2) {
+                return ((TestData) o1).rank - ((TestData) o2).rank;
+            }
+        });
+        MutationRecorder recorder = new MutationRecorder(mStream);
+        recorded.setMutationRecorder(recorder);
+
+        recorded.setDatas(Arrays.asList(new TestData(3, "c", 30), new TestData(1, "a", 10), new TestData(2, "b", 20)));
+        recorded.addSortedData(new TestData(4, "d", 15));
+        recorded.addSortedDatas(Arrays.asList(new TestData(1, "a", 40), new TestData(5, "e", 5)));
+
+        DiffAdapter replayed = replay(recorder, 3);
+
+        assertSameKeys(recorded.getDatas(), replayed.getDatas());
+    }
+
+    private DiffAdapter newAdapter() {
+        DiffAdapter adapter = new DiffAdapter(mActivity);
+        adapter.setDiffExecutor(DIRECT);
+        return adapter;
+    }
+
+    private DiffAdapter replay(MutationRecorder recorder, int expectedEvents) throws Exception {
+        assertEquals(expectedEvents, recorder.getEventCount());
+        recorder.close();
+        assertTrue(mStream.closed.await(5, TimeUnit.SECONDS));
+
+        DiffAdapter replayed = newAdapter();
+        TraceReplayer replayer = new TraceReplayer(replayed, new ByteArrayInputStream(mStream.toByteArray()));
+        assertEquals(expectedEvents, replayer.getEventCount());
+        final boolean[] finished = new boolean[1];
+        replayer.start(0, new TraceReplayer.Callback() {
+            @Override
+            public void onFinished(int events, long durationMs) {
+                finished[0] = true;
+            }
+        });
+        for (int i = 0; i < 100 && !finished[0]; i++) {
+            ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(finished[0]);
+        return replayed;
+    }
+
+    private static void assertSameKeys(List<BaseMutableData> expected, List<BaseMutableData> actual) {
+        List<Integer> expectedKeys = new ArrayList<>();
+        for (BaseMutableData data : expected) {
+            expectedKeys.add(data.uniqueItemFeature().hashCode());
+        }
+        List<Integer> actualKeys = new ArrayList<>();
+        for (BaseMutableData data : actual) {
+            actualKeys.add(((TraceData) data).key);
+        }
+        assertEquals(expectedKeys, actualKeys);
+    }
+
+    private static class ClosingStream extends ByteArrayOutputStream {
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            closed.countDown();
+        }
+    }
+}